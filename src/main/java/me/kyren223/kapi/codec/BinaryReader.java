@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.codec;
+
+import me.kyren223.kapi.annotations.Kapi;
+import org.jspecify.annotations.NullMarked;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads binary data written by a {@link BinaryWriter} directly from a {@link ByteBuffer},
+ * such as a memory mapped file, see {@link Codec}.<br>
+ * <br>
+ * Reads start at the position of the buffer and advance it.
+ * Running out of data throws a {@link CodecException}.
+ */
+@Kapi
+@NullMarked
+public final class BinaryReader {
+    
+    private final ByteBuffer buffer;
+    
+    /**
+     * @param buffer The buffer to read from, its byte order must be big-endian
+     */
+    @Kapi
+    public BinaryReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+    
+    @Kapi
+    public byte readByte() {
+        require(1);
+        return buffer.get();
+    }
+    
+    @Kapi
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+    
+    @Kapi
+    public short readShort() {
+        require(Short.BYTES);
+        return buffer.getShort();
+    }
+    
+    @Kapi
+    public int readInt() {
+        require(Integer.BYTES);
+        return buffer.getInt();
+    }
+    
+    @Kapi
+    public long readLong() {
+        require(Long.BYTES);
+        return buffer.getLong();
+    }
+    
+    @Kapi
+    public float readFloat() {
+        require(Float.BYTES);
+        return buffer.getFloat();
+    }
+    
+    @Kapi
+    public double readDouble() {
+        require(Double.BYTES);
+        return buffer.getDouble();
+    }
+    
+    /**
+     * @see BinaryWriter#writeVarInt(int)
+     */
+    @Kapi
+    public int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new CodecException("VarInt is too big");
+    }
+    
+    /**
+     * @see BinaryWriter#writeSignedVarInt(int)
+     */
+    @Kapi
+    public int readSignedVarInt() {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    /**
+     * @see BinaryWriter#writeVarLong(long)
+     */
+    @Kapi
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new CodecException("VarLong is too big");
+    }
+    
+    /**
+     * @see BinaryWriter#writeSignedVarLong(long)
+     */
+    @Kapi
+    public long readSignedVarLong() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    /**
+     * @see BinaryWriter#writeString(String)
+     */
+    @Kapi
+    public String readString() {
+        int length = readLength();
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+    
+    /**
+     * @param length The amount of bytes
+     * @return A copy of the bytes
+     */
+    @Kapi
+    public byte[] readBytes(int length) {
+        require(length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+    
+    /**
+     * Reads bytes without copying them.
+     *
+     * @param length The amount of bytes
+     * @return A view of the bytes, backed by the buffer of this reader
+     */
+    @Kapi
+    public ByteBuffer readBuffer(int length) {
+        require(length);
+        ByteBuffer slice = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+    
+    /**
+     * Reads a varint length, checking that there are enough remaining bytes.
+     *
+     * @return The length
+     */
+    @Kapi
+    public int readLength() {
+        int length = readVarInt();
+        if (length < 0) {
+            throw new CodecException("Negative length " + length);
+        }
+        require(length);
+        return length;
+    }
+    
+    /**
+     * @param bytes The amount of bytes to skip
+     */
+    @Kapi
+    public void skip(int bytes) {
+        require(bytes);
+        buffer.position(buffer.position() + bytes);
+    }
+    
+    /**
+     * @return The amount of bytes that can still be read
+     */
+    @Kapi
+    public int remaining() {
+        return buffer.remaining();
+    }
+    
+    private void require(int bytes) {
+        if (buffer.remaining() < bytes) {
+            throw new CodecException("Expected " + bytes + " more bytes but only "
+                    + buffer.remaining() + " remain", new BufferUnderflowException());
+        }
+    }
+}
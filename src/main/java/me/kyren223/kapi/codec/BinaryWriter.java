@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.codec;
+
+import me.kyren223.kapi.annotations.Kapi;
+import org.jspecify.annotations.NullMarked;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes binary data to a growing in-memory buffer, see {@link Codec}.<br>
+ * <br>
+ * Numbers are written in big-endian order.<br>
+ * Variable length numbers (varints) take 1 byte for values up to 127,
+ * signed varints use zigzag encoding so small negative values are small as well.
+ */
+@Kapi
+@NullMarked
+public final class BinaryWriter {
+    
+    private ByteBuffer buffer;
+    
+    @Kapi
+    public BinaryWriter() {
+        this(256);
+    }
+    
+    /**
+     * @param capacity The initial capacity in bytes
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    @Kapi
+    public BinaryWriter(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity cannot be negative");
+        }
+        this.buffer = ByteBuffer.allocate(capacity);
+    }
+    
+    @Kapi
+    public BinaryWriter writeByte(int value) {
+        ensure(1).put((byte) value);
+        return this;
+    }
+    
+    @Kapi
+    public BinaryWriter writeBoolean(boolean value) {
+        return writeByte(value ? 1 : 0);
+    }
+    
+    @Kapi
+    public BinaryWriter writeShort(int value) {
+        ensure(Short.BYTES).putShort((short) value);
+        return this;
+    }
+    
+    @Kapi
+    public BinaryWriter writeInt(int value) {
+        ensure(Integer.BYTES).putInt(value);
+        return this;
+    }
+    
+    @Kapi
+    public BinaryWriter writeLong(long value) {
+        ensure(Long.BYTES).putLong(value);
+        return this;
+    }
+    
+    @Kapi
+    public BinaryWriter writeFloat(float value) {
+        ensure(Float.BYTES).putFloat(value);
+        return this;
+    }
+    
+    @Kapi
+    public BinaryWriter writeDouble(double value) {
+        ensure(Double.BYTES).putDouble(value);
+        return this;
+    }
+    
+    /**
+     * Writes an int in 1 to 5 bytes, negative values always take 5 bytes.
+     */
+    @Kapi
+    public BinaryWriter writeVarInt(int value) {
+        ByteBuffer buffer = ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+        return this;
+    }
+    
+    /**
+     * Writes an int in 1 to 5 bytes, values close to 0 take the least bytes.
+     */
+    @Kapi
+    public BinaryWriter writeSignedVarInt(int value) {
+        return writeVarInt((value << 1) ^ (value >> 31));
+    }
+    
+    /**
+     * Writes a long in 1 to 10 bytes, negative values always take 10 bytes.
+     */
+    @Kapi
+    public BinaryWriter writeVarLong(long value) {
+        ByteBuffer buffer = ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+        return this;
+    }
+    
+    /**
+     * Writes a long in 1 to 10 bytes, values close to 0 take the least bytes.
+     */
+    @Kapi
+    public BinaryWriter writeSignedVarLong(long value) {
+        return writeVarLong((value << 1) ^ (value >> 63));
+    }
+    
+    /**
+     * Writes the length of the string in UTF-8 as a varint followed by its UTF-8 bytes.
+     */
+    @Kapi
+    public BinaryWriter writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        ensure(bytes.length).put(bytes);
+        return this;
+    }
+    
+    /**
+     * Writes the bytes as they are, without their length.
+     */
+    @Kapi
+    public BinaryWriter writeBytes(byte[] bytes) {
+        ensure(bytes.length).put(bytes);
+        return this;
+    }
+    
+    /**
+     * Writes the remaining bytes of the buffer as they are, without their length.<br>
+     * The position of the buffer is not changed.
+     */
+    @Kapi
+    public BinaryWriter writeBytes(ByteBuffer bytes) {
+        ensure(bytes.remaining()).put(bytes.duplicate());
+        return this;
+    }
+    
+    /**
+     * @return The amount of bytes written
+     */
+    @Kapi
+    public int size() {
+        return buffer.position();
+    }
+    
+    /**
+     * Discards everything written, keeping the allocated memory for reuse.
+     */
+    @Kapi
+    public void reset() {
+        buffer.clear();
+    }
+    
+    /**
+     * @return A copy of the written bytes
+     */
+    @Kapi
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+    
+    /**
+     * @return A read-only view of the written bytes, without copying them
+     */
+    @Kapi
+    public ByteBuffer toBuffer() {
+        return ByteBuffer.wrap(buffer.array(), 0, buffer.position()).slice().asReadOnlyBuffer();
+    }
+    
+    /**
+     * @param out The stream to write the written bytes to
+     * @throws IOException If the stream throws
+     */
+    @Kapi
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+    }
+    
+    private ByteBuffer ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+            buffer = ByteBuffer.allocate(capacity).put(buffer.flip());
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.codec;
+
+import me.kyren223.kapi.annotations.Kapi;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Encodes values to a compact binary form and decodes them back.<br>
+ * <br>
+ * Codecs for common types are in {@link Codecs},
+ * codecs for other types can be created with {@link #of(BiConsumer, Function)},
+ * from another codec with {@link #map(Function, Function)}
+ * or for records with {@link Codecs#record(Class)}.<br>
+ * Persisted data should use {@link #versioned(int)},
+ * so older data can still be decoded after the format changes.
+ *
+ * @param <T> The type of the values
+ */
+@Kapi
+@NullMarked
+public interface Codec<T extends @Nullable Object> {
+    
+    /**
+     * @param writer The writer to encode to
+     * @param value  The value to encode
+     */
+    @Kapi
+    void encode(BinaryWriter writer, T value);
+    
+    /**
+     * @param reader The reader to decode from
+     * @return The decoded value
+     * @throws CodecException If the data is invalid
+     */
+    @Kapi
+    T decode(BinaryReader reader);
+    
+    /**
+     * @param value The value to encode
+     * @return The encoded bytes
+     */
+    @Kapi
+    default byte[] encode(T value) {
+        BinaryWriter writer = new BinaryWriter();
+        encode(writer, value);
+        return writer.toByteArray();
+    }
+    
+    /**
+     * Decodes a value from the remaining bytes of a buffer, advancing its position.<br>
+     * Nothing is copied except what the value itself needs.
+     *
+     * @param buffer The buffer to decode from
+     * @return The decoded value
+     * @throws CodecException If the data is invalid
+     */
+    @Kapi
+    default T decode(ByteBuffer buffer) {
+        return decode(new BinaryReader(buffer));
+    }
+    
+    /**
+     * Creates a codec for another type that is converted to and from this type.
+     *
+     * @param decoder Converts a value of this type to the other type after decoding
+     * @param encoder Converts a value of the other type to this type before encoding
+     * @param <U>     The other type
+     * @return The codec
+     */
+    @Kapi
+    default <U extends @Nullable Object> Codec<U> map(Function<T,U> decoder, Function<U,T> encoder) {
+        Codec<T> codec = this;
+        return of((writer, value) -> codec.encode(writer, encoder.apply(value)),
+                reader -> decoder.apply(codec.decode(reader)));
+    }
+    
+    /**
+     * Creates a codec that writes the version before the value,
+     * codecs of older versions can be added with {@link VersionedCodec#legacy(int, Codec)}.
+     *
+     * @param version The current version, starting from 1
+     * @return The codec
+     * @throws IllegalArgumentException if version is less than 1
+     */
+    @Kapi
+    default VersionedCodec<T> versioned(int version) {
+        return new VersionedCodec<>(version, this);
+    }
+    
+    /**
+     * @param encoder Encodes a value
+     * @param decoder Decodes a value
+     * @param <T>     The type of the values
+     * @return The codec
+     */
+    @Kapi
+    static <T extends @Nullable Object> Codec<T> of(
+            BiConsumer<BinaryWriter,T> encoder, Function<BinaryReader,T> decoder
+    ) {
+        return new Codec<>() {
+            @Override
+            public void encode(BinaryWriter writer, T value) {
+                encoder.accept(writer, value);
+            }
+            
+            @Override
+            public T decode(BinaryReader reader) {
+                return decoder.apply(reader);
+            }
+        };
+    }
+}
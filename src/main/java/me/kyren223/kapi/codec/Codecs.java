@@ -0,0 +1,895 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.codec;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.data.*;
+import org.bukkit.Bukkit;
+import org.bukkit.Color;
+import org.bukkit.Particle;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Display;
+import org.bukkit.entity.ItemDisplay;
+import org.bukkit.entity.TextDisplay;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.Transformation;
+import org.bukkit.util.Vector;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+import org.joml.Matrix3f;
+import org.joml.Matrix4d;
+import org.joml.Matrix4f;
+import org.joml.Quaterniond;
+import org.joml.Quaternionf;
+import org.joml.Vector2d;
+import org.joml.Vector2f;
+import org.joml.Vector3d;
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+import org.joml.Vector4f;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Codecs for common types and factories for codecs of containers and records.<br>
+ * <br>
+ * Codecs of mutable types such as vectors and display data create new instances when decoding.<br>
+ * Types that are not covered can be registered with {@link #register(Class, Codec)}
+ * so {@link #record(Class)} can use them.
+ */
+@Kapi
+@NullMarked
+public final class Codecs {
+    
+    private static final Map<Class<?>,Codec<?>> registry = new ConcurrentHashMap<>();
+    private static final Map<Class<?>,Codec<?>> records = new ConcurrentHashMap<>();
+    private static final Set<Class<?>> compiling = new HashSet<>();
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType FACTORY = MethodType.methodType(Object.class, Object[].class);
+    
+    // Tags of VALUE, shared with the snapshot format
+    private static final byte NULL = 0;
+    private static final byte BOOLEAN_TAG = 1;
+    private static final byte INTEGER_TAG = 2;
+    private static final byte LONG_TAG = 3;
+    private static final byte FLOAT_TAG = 4;
+    private static final byte DOUBLE_TAG = 5;
+    private static final byte STRING_TAG = 6;
+    private static final byte UUID_TAG = 7;
+    private static final byte VECTOR_TAG = 8;
+    private static final byte VECTOR3F_TAG = 9;
+    private static final byte QUATERNIONF_TAG = 10;
+    private static final byte MATRIX4F_TAG = 11;
+    private static final byte DUST_OPTIONS_TAG = 12;
+    private static final byte DUST_TRANSITION_TAG = 13;
+    private static final byte BLOCK_DATA_TAG = 14;
+    private static final byte ITEM_STACK_TAG = 15;
+    
+    // Tags of DISPLAY_DATA
+    private static final byte BLOCK_DISPLAY = 1;
+    private static final byte ITEM_DISPLAY = 2;
+    private static final byte TEXT_DISPLAY = 3;
+    
+    @Kapi
+    public static final Codec<Boolean> BOOLEAN = Codec.of(BinaryWriter::writeBoolean, BinaryReader::readBoolean);
+    @Kapi
+    public static final Codec<Byte> BYTE = Codec.of((writer, value) -> writer.writeByte(value), BinaryReader::readByte);
+    @Kapi
+    public static final Codec<Short> SHORT = Codec.of((writer, value) -> writer.writeShort(value), BinaryReader::readShort);
+    /**
+     * Always 4 bytes, see {@link #VAR_INT} and {@link #SIGNED_VAR_INT} for smaller encodings
+     */
+    @Kapi
+    public static final Codec<Integer> INT = Codec.of(BinaryWriter::writeInt, BinaryReader::readInt);
+    /**
+     * 1 to 5 bytes, best for values that are never negative, such as counts
+     */
+    @Kapi
+    public static final Codec<Integer> VAR_INT = Codec.of(BinaryWriter::writeVarInt, BinaryReader::readVarInt);
+    /**
+     * 1 to 5 bytes, best for values close to 0
+     */
+    @Kapi
+    public static final Codec<Integer> SIGNED_VAR_INT =
+            Codec.of(BinaryWriter::writeSignedVarInt, BinaryReader::readSignedVarInt);
+    /**
+     * Always 8 bytes, see {@link #VAR_LONG} and {@link #SIGNED_VAR_LONG} for smaller encodings
+     */
+    @Kapi
+    public static final Codec<Long> LONG = Codec.of(BinaryWriter::writeLong, BinaryReader::readLong);
+    /**
+     * 1 to 10 bytes, best for values that are never negative, such as timestamps
+     */
+    @Kapi
+    public static final Codec<Long> VAR_LONG = Codec.of(BinaryWriter::writeVarLong, BinaryReader::readVarLong);
+    /**
+     * 1 to 10 bytes, best for values close to 0
+     */
+    @Kapi
+    public static final Codec<Long> SIGNED_VAR_LONG =
+            Codec.of(BinaryWriter::writeSignedVarLong, BinaryReader::readSignedVarLong);
+    @Kapi
+    public static final Codec<Float> FLOAT = Codec.of(BinaryWriter::writeFloat, BinaryReader::readFloat);
+    @Kapi
+    public static final Codec<Double> DOUBLE = Codec.of(BinaryWriter::writeDouble, BinaryReader::readDouble);
+    @Kapi
+    public static final Codec<String> STRING = Codec.of(BinaryWriter::writeString, BinaryReader::readString);
+    /**
+     * The length followed by the bytes, decoding copies the bytes
+     */
+    @Kapi
+    public static final Codec<byte[]> BYTES = Codec.of(
+            (writer, bytes) -> writer.writeVarInt(bytes.length).writeBytes(bytes),
+            reader -> reader.readBytes(reader.readLength())
+    );
+    /**
+     * The length followed by the bytes, decoding returns a view of the decoded buffer without copying
+     */
+    @Kapi
+    public static final Codec<ByteBuffer> BUFFER = Codec.of(
+            (writer, buffer) -> writer.writeVarInt(buffer.remaining()).writeBytes(buffer),
+            reader -> reader.readBuffer(reader.readLength())
+    );
+    @Kapi
+    public static final Codec<UUID> UUID = Codec.of(
+            (writer, uuid) -> writer.writeLong(uuid.getMostSignificantBits()).writeLong(uuid.getLeastSignificantBits()),
+            reader -> new UUID(reader.readLong(), reader.readLong())
+    );
+    
+    @Kapi
+    public static final Codec<Vector2f> VECTOR2F = Codec.of(
+            (writer, vector) -> writer.writeFloat(vector.x).writeFloat(vector.y),
+            reader -> new Vector2f(reader.readFloat(), reader.readFloat())
+    );
+    @Kapi
+    public static final Codec<Vector3f> VECTOR3F = Codec.of(
+            (writer, vector) -> writer.writeFloat(vector.x).writeFloat(vector.y).writeFloat(vector.z),
+            reader -> new Vector3f(reader.readFloat(), reader.readFloat(), reader.readFloat())
+    );
+    @Kapi
+    public static final Codec<Vector4f> VECTOR4F = Codec.of(
+            (writer, vector) -> writer.writeFloat(vector.x).writeFloat(vector.y)
+                    .writeFloat(vector.z).writeFloat(vector.w),
+            reader -> new Vector4f(reader.readFloat(), reader.readFloat(), reader.readFloat(), reader.readFloat())
+    );
+    @Kapi
+    public static final Codec<Vector2d> VECTOR2D = Codec.of(
+            (writer, vector) -> writer.writeDouble(vector.x).writeDouble(vector.y),
+            reader -> new Vector2d(reader.readDouble(), reader.readDouble())
+    );
+    @Kapi
+    public static final Codec<Vector3d> VECTOR3D = Codec.of(
+            (writer, vector) -> writer.writeDouble(vector.x).writeDouble(vector.y).writeDouble(vector.z),
+            reader -> new Vector3d(reader.readDouble(), reader.readDouble(), reader.readDouble())
+    );
+    /**
+     * Components are signed varints, block positions usually take 4 to 7 bytes
+     */
+    @Kapi
+    public static final Codec<Vector3i> VECTOR3I = Codec.of(
+            (writer, vector) -> writer.writeSignedVarInt(vector.x).writeSignedVarInt(vector.y)
+                    .writeSignedVarInt(vector.z),
+            reader -> new Vector3i(reader.readSignedVarInt(), reader.readSignedVarInt(), reader.readSignedVarInt())
+    );
+    @Kapi
+    public static final Codec<Quaternionf> QUATERNIONF = Codec.of(
+            (writer, quaternion) -> writer.writeFloat(quaternion.x).writeFloat(quaternion.y)
+                    .writeFloat(quaternion.z).writeFloat(quaternion.w),
+            reader -> new Quaternionf(reader.readFloat(), reader.readFloat(), reader.readFloat(), reader.readFloat())
+    );
+    @Kapi
+    public static final Codec<Quaterniond> QUATERNIOND = Codec.of(
+            (writer, quaternion) -> writer.writeDouble(quaternion.x).writeDouble(quaternion.y)
+                    .writeDouble(quaternion.z).writeDouble(quaternion.w),
+            reader -> new Quaterniond(
+                    reader.readDouble(), reader.readDouble(), reader.readDouble(), reader.readDouble())
+    );
+    /**
+     * The 9 values in column-major order
+     */
+    @Kapi
+    public static final Codec<Matrix3f> MATRIX3F = Codec.of(
+            (writer, matrix) -> writeFloats(writer, matrix.get(new float[9])),
+            reader -> new Matrix3f().set(readFloats(reader, 9))
+    );
+    /**
+     * The 16 values in column-major order
+     */
+    @Kapi
+    public static final Codec<Matrix4f> MATRIX4F = Codec.of(
+            (writer, matrix) -> writeFloats(writer, matrix.get(new float[16])),
+            reader -> new Matrix4f().set(readFloats(reader, 16))
+    );
+    /**
+     * The 16 values in column-major order
+     */
+    @Kapi
+    public static final Codec<Matrix4d> MATRIX4D = Codec.of(
+            (writer, matrix) -> {
+                for (double value : matrix.get(new double[16])) writer.writeDouble(value);
+            },
+            reader -> {
+                double[] values = new double[16];
+                for (int i = 0; i < values.length; i++) values[i] = reader.readDouble();
+                return new Matrix4d().set(values);
+            }
+    );
+    
+    @Kapi
+    public static final Codec<Vector> VECTOR = Codec.of(
+            (writer, vector) -> writer.writeDouble(vector.getX()).writeDouble(vector.getY()).writeDouble(vector.getZ()),
+            reader -> new Vector(reader.readDouble(), reader.readDouble(), reader.readDouble())
+    );
+    @Kapi
+    public static final Codec<Color> COLOR = INT.map(Color::fromARGB, Color::asARGB);
+    @Kapi
+    public static final Codec<Transformation> TRANSFORMATION = Codec.of(
+            (writer, transformation) -> {
+                VECTOR3F.encode(writer, transformation.getTranslation());
+                QUATERNIONF.encode(writer, transformation.getLeftRotation());
+                VECTOR3F.encode(writer, transformation.getScale());
+                QUATERNIONF.encode(writer, transformation.getRightRotation());
+            },
+            reader -> new Transformation(
+                    VECTOR3F.decode(reader), QUATERNIONF.decode(reader),
+                    VECTOR3F.decode(reader), QUATERNIONF.decode(reader)
+            )
+    );
+    @Kapi
+    public static final Codec<Display.Brightness> BRIGHTNESS = Codec.of(
+            (writer, brightness) -> writer.writeByte(brightness.getBlockLight()).writeByte(brightness.getSkyLight()),
+            reader -> new Display.Brightness(reader.readByte(), reader.readByte())
+    );
+    /**
+     * Stored as the block data string, such as "minecraft:oak_stairs[facing=east]"
+     */
+    @Kapi
+    public static final Codec<BlockData> BLOCK_DATA = STRING.map(Bukkit::createBlockData, BlockData::getAsString);
+    /**
+     * Stored with Bukkit's object serialization, which keeps all item meta
+     */
+    @Kapi
+    public static final Codec<ItemStack> ITEM_STACK = Codec.of(Codecs::writeItem, Codecs::readItem);
+    @Kapi
+    public static final Codec<Particle.DustOptions> DUST_OPTIONS = Codec.of(
+            (writer, dust) -> writer.writeInt(dust.getColor().asARGB()).writeFloat(dust.getSize()),
+            reader -> new Particle.DustOptions(Color.fromARGB(reader.readInt()), reader.readFloat())
+    );
+    @Kapi
+    public static final Codec<Particle.DustTransition> DUST_TRANSITION = Codec.of(
+            (writer, dust) -> writer.writeInt(dust.getColor().asARGB()).writeInt(dust.getToColor().asARGB())
+                    .writeFloat(dust.getSize()),
+            reader -> new Particle.DustTransition(
+                    Color.fromARGB(reader.readInt()), Color.fromARGB(reader.readInt()), reader.readFloat())
+    );
+    
+    /**
+     * A value of any of the following types, prefixed by a tag:
+     * null, {@link Boolean}, {@link Integer}, {@link Long}, {@link Float},
+     * {@link Double}, {@link String}, {@link java.util.UUID}, {@link Vector},
+     * {@link Vector3f}, {@link Quaternionf}, {@link Matrix4f}, {@link Particle.DustOptions},
+     * {@link Particle.DustTransition}, {@link BlockData} and {@link ItemStack}<br>
+     * Encoding a value of any other type throws an {@link IllegalArgumentException}.
+     */
+    @Kapi
+    public static final Codec<@Nullable Object> VALUE = Codec.of(Codecs::writeValue, Codecs::readValue);
+    @Kapi
+    public static final Codec<ParticleData> PARTICLE_DATA = Codec.of(
+            (writer, data) -> {
+                writer.writeString(data.getParticle().name());
+                writer.writeVarInt(data.getCount());
+                writer.writeDouble(data.getSpreadX());
+                writer.writeDouble(data.getSpreadY());
+                writer.writeDouble(data.getSpreadZ());
+                writer.writeDouble(data.getExtra());
+                VALUE.encode(writer, data.getData());
+                writer.writeBoolean(data.isForce());
+            },
+            reader -> new ParticleData(
+                    decodeEnum(Particle.class, reader.readString()), reader.readVarInt(),
+                    reader.readDouble(), reader.readDouble(), reader.readDouble(), reader.readDouble(),
+                    VALUE.decode(reader), reader.readBoolean()
+            )
+    );
+    @Kapi
+    public static final Codec<BlockDisplayData> BLOCK_DISPLAY_DATA = Codec.of(
+            (writer, data) -> {
+                writeDisplay(writer, data);
+                BLOCK_DATA.encode(writer, data.getBlock());
+            },
+            reader -> {
+                DisplayFields display = readDisplay(reader);
+                return new BlockDisplayData(
+                        display.transformation(), display.interpolationDuration(), display.viewRange(),
+                        display.shadowRadius(), display.shadowStrength(), display.displayWidth(),
+                        display.displayHeight(), display.interpolationDelay(), display.billboard(),
+                        display.glowColorOverride(), display.brightness(), BLOCK_DATA.decode(reader)
+                );
+            }
+    );
+    @Kapi
+    public static final Codec<ItemDisplayData> ITEM_DISPLAY_DATA = Codec.of(
+            (writer, data) -> {
+                writeDisplay(writer, data);
+                VALUE.encode(writer, data.getItemStack());
+                writer.writeString(data.getItemDisplayTransform().name());
+            },
+            reader -> {
+                DisplayFields display = readDisplay(reader);
+                return new ItemDisplayData(
+                        display.transformation(), display.interpolationDuration(), display.viewRange(),
+                        display.shadowRadius(), display.shadowStrength(), display.displayWidth(),
+                        display.displayHeight(), display.interpolationDelay(), display.billboard(),
+                        display.glowColorOverride(), display.brightness(), (ItemStack) VALUE.decode(reader),
+                        decodeEnum(ItemDisplay.ItemDisplayTransform.class, reader.readString())
+                );
+            }
+    );
+    @Kapi
+    public static final Codec<TextDisplayData> TEXT_DISPLAY_DATA = Codec.of(
+            (writer, data) -> {
+                writeDisplay(writer, data);
+                VALUE.encode(writer, data.getText());
+                writer.writeVarInt(data.getLineWidth());
+                Color background = data.getBackgroundColor();
+                writer.writeBoolean(background != null);
+                if (background != null) writer.writeInt(background.asARGB());
+                writer.writeByte(data.getTextOpacity());
+                writer.writeBoolean(data.isShadowed());
+                writer.writeBoolean(data.isSeeThrough());
+                writer.writeBoolean(data.isDefaultBackground());
+                writer.writeString(data.getAlignment().name());
+            },
+            reader -> {
+                DisplayFields display = readDisplay(reader);
+                return new TextDisplayData(
+                        display.transformation(), display.interpolationDuration(), display.viewRange(),
+                        display.shadowRadius(), display.shadowStrength(), display.displayWidth(),
+                        display.displayHeight(), display.interpolationDelay(), display.billboard(),
+                        display.glowColorOverride(), display.brightness(), (String) VALUE.decode(reader),
+                        reader.readVarInt(), reader.readBoolean() ? Color.fromARGB(reader.readInt()) : null,
+                        reader.readByte(), reader.readBoolean(), reader.readBoolean(), reader.readBoolean(),
+                        decodeEnum(TextDisplay.TextAlignment.class, reader.readString())
+                );
+            }
+    );
+    /**
+     * Any {@link DisplayData} subclass, prefixed by a tag
+     */
+    @Kapi
+    public static final Codec<DisplayData> DISPLAY_DATA = Codec.of(
+            (writer, data) -> {
+                if (data instanceof BlockDisplayData block) {
+                    BLOCK_DISPLAY_DATA.encode(writer.writeByte(BLOCK_DISPLAY), block);
+                } else if (data instanceof ItemDisplayData item) {
+                    ITEM_DISPLAY_DATA.encode(writer.writeByte(ITEM_DISPLAY), item);
+                } else if (data instanceof TextDisplayData text) {
+                    TEXT_DISPLAY_DATA.encode(writer.writeByte(TEXT_DISPLAY), text);
+                } else {
+                    throw new IllegalArgumentException("Unsupported display data " + data.getClass().getName());
+                }
+            },
+            reader -> {
+                byte tag = reader.readByte();
+                return switch (tag) {
+                    case BLOCK_DISPLAY -> BLOCK_DISPLAY_DATA.decode(reader);
+                    case ITEM_DISPLAY -> ITEM_DISPLAY_DATA.decode(reader);
+                    case TEXT_DISPLAY -> TEXT_DISPLAY_DATA.decode(reader);
+                    default -> throw new CodecException("Unknown display data type " + tag);
+                };
+            }
+    );
+    
+    static {
+        register(Boolean.class, BOOLEAN);
+        register(Byte.class, BYTE);
+        register(Short.class, SHORT);
+        register(Integer.class, SIGNED_VAR_INT);
+        register(Long.class, SIGNED_VAR_LONG);
+        register(Float.class, FLOAT);
+        register(Double.class, DOUBLE);
+        register(String.class, STRING);
+        register(byte[].class, BYTES);
+        register(ByteBuffer.class, BUFFER);
+        register(UUID.class, UUID);
+        register(Vector2f.class, VECTOR2F);
+        register(Vector3f.class, VECTOR3F);
+        register(Vector4f.class, VECTOR4F);
+        register(Vector2d.class, VECTOR2D);
+        register(Vector3d.class, VECTOR3D);
+        register(Vector3i.class, VECTOR3I);
+        register(Quaternionf.class, QUATERNIONF);
+        register(Quaterniond.class, QUATERNIOND);
+        register(Matrix3f.class, MATRIX3F);
+        register(Matrix4f.class, MATRIX4F);
+        register(Matrix4d.class, MATRIX4D);
+        register(Vector.class, VECTOR);
+        register(Color.class, COLOR);
+        register(Transformation.class, TRANSFORMATION);
+        register(Display.Brightness.class, BRIGHTNESS);
+        register(BlockData.class, BLOCK_DATA);
+        register(ItemStack.class, ITEM_STACK);
+        register(Particle.DustOptions.class, DUST_OPTIONS);
+        register(Particle.DustTransition.class, DUST_TRANSITION);
+        register(ParticleData.class, PARTICLE_DATA);
+        register(BlockDisplayData.class, BLOCK_DISPLAY_DATA);
+        register(ItemDisplayData.class, ITEM_DISPLAY_DATA);
+        register(TextDisplayData.class, TEXT_DISPLAY_DATA);
+        register(DisplayData.class, DISPLAY_DATA);
+    }
+    
+    private Codecs() {
+        throw new AssertionError("Codecs should not be instantiated");
+    }
+    
+    /**
+     * Registers the codec of a type, so records with values of that type can be encoded,
+     * see {@link #record(Class)}.<br>
+     * Replaces the previous codec of the type, records that already use it are not affected.
+     *
+     * @param type  The type
+     * @param codec The codec
+     */
+    @Kapi
+    public static <T> void register(Class<T> type, Codec<T> codec) {
+        registry.put(type, codec);
+    }
+    
+    /**
+     * The size followed by the elements, decoding creates an {@link ArrayList}
+     *
+     * @param codec The codec of the elements
+     * @return The codec
+     */
+    @Kapi
+    public static <T extends @Nullable Object> Codec<List<T>> list(Codec<T> codec) {
+        return Codec.of(
+                (writer, list) -> {
+                    writer.writeVarInt(list.size());
+                    for (T value : list) codec.encode(writer, value);
+                },
+                reader -> {
+                    int size = reader.readVarInt();
+                    List<T> list = new ArrayList<>(Math.min(size, reader.remaining()));
+                    for (int i = 0; i < size; i++) list.add(codec.decode(reader));
+                    return list;
+                }
+        );
+    }
+    
+    /**
+     * The size followed by the keys and values, decoding creates a {@link LinkedHashMap}
+     *
+     * @param keyCodec   The codec of the keys
+     * @param valueCodec The codec of the values
+     * @return The codec
+     */
+    @Kapi
+    public static <K, V extends @Nullable Object> Codec<Map<K,V>> map(Codec<K> keyCodec, Codec<V> valueCodec) {
+        return Codec.of(
+                (writer, map) -> {
+                    writer.writeVarInt(map.size());
+                    for (Map.Entry<K,V> entry : map.entrySet()) {
+                        keyCodec.encode(writer, entry.getKey());
+                        valueCodec.encode(writer, entry.getValue());
+                    }
+                },
+                reader -> {
+                    int size = reader.readVarInt();
+                    Map<K,V> map = new LinkedHashMap<>();
+                    for (int i = 0; i < size; i++) map.put(keyCodec.decode(reader), valueCodec.decode(reader));
+                    return map;
+                }
+        );
+    }
+    
+    /**
+     * A boolean followed by the value if it's present
+     *
+     * @param codec The codec of the value
+     * @return The codec
+     */
+    @Kapi
+    public static <T> Codec<@Nullable T> nullable(Codec<T> codec) {
+        return Codec.of(
+                (writer, value) -> {
+                    writer.writeBoolean(value != null);
+                    if (value != null) codec.encode(writer, value);
+                },
+                reader -> reader.readBoolean() ? codec.decode(reader) : null
+        );
+    }
+    
+    /**
+     * A boolean followed by the value if it's some
+     *
+     * @param codec The codec of the value
+     * @return The codec
+     */
+    @Kapi
+    public static <T> Codec<Option<T>> option(Codec<T> codec) {
+        return Codec.of(
+                (writer, option) -> {
+                    writer.writeBoolean(option.isSome());
+                    if (option.isSome()) codec.encode(writer, option.unwrap());
+                },
+                reader -> reader.readBoolean() ? Option.some(codec.decode(reader)) : Option.none()
+        );
+    }
+    
+    /**
+     * The first value followed by the second value
+     *
+     * @param firstCodec  The codec of the first value
+     * @param secondCodec The codec of the second value
+     * @return The codec
+     */
+    @Kapi
+    public static <T extends @Nullable Object, U extends @Nullable Object> Codec<Pair<T,U>> pair(
+            Codec<T> firstCodec, Codec<U> secondCodec
+    ) {
+        return Codec.of(
+                (writer, pair) -> {
+                    firstCodec.encode(writer, pair.getFirst());
+                    secondCodec.encode(writer, pair.getSecond());
+                },
+                reader -> Pair.of(firstCodec.decode(reader), secondCodec.decode(reader))
+        );
+    }
+    
+    /**
+     * A boolean that is true for ok followed by the ok or err value
+     *
+     * @param okCodec  The codec of the ok value
+     * @param errCodec The codec of the err value
+     * @return The codec
+     */
+    @Kapi
+    public static <T, E> Codec<Result<T,E>> result(Codec<T> okCodec, Codec<E> errCodec) {
+        return Codec.of(
+                (writer, result) -> {
+                    writer.writeBoolean(result.isOk());
+                    if (result.isOk()) okCodec.encode(writer, result.unwrap());
+                    else errCodec.encode(writer, result.unwrapErr());
+                },
+                reader -> reader.readBoolean() ? Result.ok(okCodec.decode(reader)) : Result.err(errCodec.decode(reader))
+        );
+    }
+    
+    /**
+     * Stored as the name of the constant, so constants can be reordered
+     *
+     * @param type The enum
+     * @return The codec
+     */
+    @Kapi
+    public static <E extends Enum<E>> Codec<E> enumOf(Class<E> type) {
+        return STRING.map(name -> decodeEnum(type, name), Enum::name);
+    }
+    
+    /**
+     * Creates a codec for a record, that encodes its components in order.<br>
+     * <br>
+     * Components can be of any registered type (see {@link #register(Class, Codec)}),
+     * enums, other records, and {@link List}, {@link Map}, {@link Option},
+     * {@link Pair} and {@link Result} of those.
+     * Ints and longs are stored as signed varints.
+     * Components annotated with {@link Nullable} may be null.<br>
+     * <br>
+     * Names are not stored, adding, removing or reordering components changes the format,
+     * so use {@link Codec#versioned(int)} for persisted records.<br>
+     * A record that throws an {@link IllegalArgumentException} in its constructor
+     * fails to decode with a {@link CodecException}.
+     *
+     * @param type The record
+     * @return The codec
+     * @throws IllegalArgumentException if the type is not a record or a component has no codec
+     */
+    @Kapi
+    @SuppressWarnings("unchecked")
+    public static <R extends Record> Codec<R> record(Class<R> type) {
+        Codec<?> codec = records.get(type);
+        if (codec != null) return (Codec<R>) codec;
+        return compile(type);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static synchronized <R> Codec<R> compile(Class<R> type) {
+        Codec<?> existing = records.get(type);
+        if (existing != null) return (Codec<R>) existing;
+        if (!type.isRecord()) {
+            throw new IllegalArgumentException(type.getName() + " is not a record");
+        }
+        
+        compiling.add(type);
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            RecordComponent[] components = type.getRecordComponents();
+            Codec<Object>[] codecs = new Codec[components.length];
+            MethodHandle[] getters = new MethodHandle[components.length];
+            Class<?>[] parameters = new Class<?>[components.length];
+            for (int i = 0; i < components.length; i++) {
+                RecordComponent component = components[i];
+                Codec<?> codec = forType(component.getGenericType(), type);
+                if (component.getAnnotatedType().isAnnotationPresent(Nullable.class)) {
+                    codec = nullable(codec);
+                }
+                codecs[i] = (Codec<Object>) codec;
+                Method accessor = component.getAccessor();
+                accessor.setAccessible(true);
+                getters[i] = lookup.unreflect(accessor).asType(GETTER);
+                parameters[i] = component.getType();
+            }
+            Constructor<R> canonical = type.getDeclaredConstructor(parameters);
+            canonical.setAccessible(true);
+            MethodHandle constructor = lookup.unreflectConstructor(canonical)
+                    .asSpreader(Object[].class, parameters.length)
+                    .asType(FACTORY);
+            
+            Codec<R> codec = new RecordCodec<>(type, codecs, getters, constructor);
+            records.put(type, codec);
+            return codec;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create a codec for " + type.getName(), e);
+        } finally {
+            compiling.remove(type);
+        }
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Codec<?> forType(Type generic, Class<?> owner) {
+        if (generic instanceof ParameterizedType parameterized && parameterized.getRawType() instanceof Class<?> raw) {
+            Type[] arguments = parameterized.getActualTypeArguments();
+            if (raw == List.class) return list(forType(arguments[0], owner));
+            if (raw == Option.class) return option(forType(arguments[0], owner));
+            if (raw == Map.class) return map(forType(arguments[0], owner), forType(arguments[1], owner));
+            if (raw == Pair.class) return pair(forType(arguments[0], owner), forType(arguments[1], owner));
+            if (raw == Result.class) return result(forType(arguments[0], owner), forType(arguments[1], owner));
+        }
+        if (generic instanceof Class<?> type) {
+            Class<?> boxed = MethodType.methodType(type).wrap().returnType();
+            Codec<?> codec = registry.get(boxed);
+            if (codec != null) return codec;
+            if (type.isEnum()) return enumOf((Class) type);
+            if (type.isRecord()) {
+                // A record that contains itself is resolved when it's first used
+                if (compiling.contains(type)) return Codec.of(
+                        (writer, value) -> ((Codec<Object>) record((Class) type)).encode(writer, value),
+                        reader -> record((Class) type).decode(reader)
+                );
+                return record((Class) type);
+            }
+        }
+        throw new IllegalArgumentException("No codec for " + generic.getTypeName() + " in " + owner.getName()
+                + ", register one with Codecs.register");
+    }
+    
+    private static <E extends Enum<E>> E decodeEnum(Class<E> type, String name) {
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            throw new CodecException("Unknown " + type.getSimpleName() + " " + name);
+        }
+    }
+    
+    private static void writeFloats(BinaryWriter writer, float[] values) {
+        for (float value : values) writer.writeFloat(value);
+    }
+    
+    private static float[] readFloats(BinaryReader reader, int count) {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) values[i] = reader.readFloat();
+        return values;
+    }
+    
+    private static void writeItem(BinaryWriter writer, ItemStack item) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BukkitObjectOutputStream stream = new BukkitObjectOutputStream(bytes)) {
+            stream.writeObject(item);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to serialize item", e);
+        }
+        writer.writeVarInt(bytes.size()).writeBytes(bytes.toByteArray());
+    }
+    
+    private static ItemStack readItem(BinaryReader reader) {
+        byte[] bytes = reader.readBytes(reader.readLength());
+        try (BukkitObjectInputStream stream = new BukkitObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (ItemStack) stream.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            throw new CodecException("Failed to deserialize item", e);
+        }
+    }
+    
+    private static void writeDisplay(BinaryWriter writer, DisplayData display) {
+        TRANSFORMATION.encode(writer, display.getTransformation());
+        writer.writeVarInt(display.getInterpolationDuration());
+        writer.writeFloat(display.getViewRange());
+        writer.writeFloat(display.getShadowRadius());
+        writer.writeFloat(display.getShadowStrength());
+        writer.writeFloat(display.getDisplayWidth());
+        writer.writeFloat(display.getDisplayHeight());
+        writer.writeVarInt(display.getInterpolationDelay());
+        writer.writeString(display.getBillboard().name());
+        COLOR.encode(writer, display.getGlowColorOverride());
+        BRIGHTNESS.encode(writer, display.getBrightness());
+    }
+    
+    private static DisplayFields readDisplay(BinaryReader reader) {
+        return new DisplayFields(
+                TRANSFORMATION.decode(reader),
+                reader.readVarInt(),
+                reader.readFloat(),
+                reader.readFloat(),
+                reader.readFloat(),
+                reader.readFloat(),
+                reader.readFloat(),
+                reader.readVarInt(),
+                decodeEnum(Display.Billboard.class, reader.readString()),
+                COLOR.decode(reader),
+                BRIGHTNESS.decode(reader)
+        );
+    }
+    
+    private static void writeValue(BinaryWriter writer, @Nullable Object value) {
+        if (value == null) {
+            writer.writeByte(NULL);
+        } else if (value instanceof Boolean bool) {
+            writer.writeByte(BOOLEAN_TAG).writeBoolean(bool);
+        } else if (value instanceof Integer integer) {
+            writer.writeByte(INTEGER_TAG).writeInt(integer);
+        } else if (value instanceof Long number) {
+            writer.writeByte(LONG_TAG).writeLong(number);
+        } else if (value instanceof Float number) {
+            writer.writeByte(FLOAT_TAG).writeFloat(number);
+        } else if (value instanceof Double number) {
+            writer.writeByte(DOUBLE_TAG).writeDouble(number);
+        } else if (value instanceof String string) {
+            writer.writeByte(STRING_TAG).writeString(string);
+        } else if (value instanceof UUID uuid) {
+            UUID.encode(writer.writeByte(UUID_TAG), uuid);
+        } else if (value instanceof Vector vector) {
+            VECTOR.encode(writer.writeByte(VECTOR_TAG), vector);
+        } else if (value instanceof Vector3f vector) {
+            VECTOR3F.encode(writer.writeByte(VECTOR3F_TAG), vector);
+        } else if (value instanceof Quaternionf quaternion) {
+            QUATERNIONF.encode(writer.writeByte(QUATERNIONF_TAG), quaternion);
+        } else if (value instanceof Matrix4f matrix) {
+            MATRIX4F.encode(writer.writeByte(MATRIX4F_TAG), matrix);
+        } else if (value instanceof Particle.DustTransition dust) {
+            // Checked before DustOptions, DustTransition is a subclass of it
+            DUST_TRANSITION.encode(writer.writeByte(DUST_TRANSITION_TAG), dust);
+        } else if (value instanceof Particle.DustOptions dust) {
+            DUST_OPTIONS.encode(writer.writeByte(DUST_OPTIONS_TAG), dust);
+        } else if (value instanceof BlockData block) {
+            BLOCK_DATA.encode(writer.writeByte(BLOCK_DATA_TAG), block);
+        } else if (value instanceof ItemStack item) {
+            ITEM_STACK.encode(writer.writeByte(ITEM_STACK_TAG), item);
+        } else {
+            throw new IllegalArgumentException("Unsupported value " + value.getClass().getName());
+        }
+    }
+    
+    private static @Nullable Object readValue(BinaryReader reader) {
+        byte tag = reader.readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case BOOLEAN_TAG -> reader.readBoolean();
+            case INTEGER_TAG -> reader.readInt();
+            case LONG_TAG -> reader.readLong();
+            case FLOAT_TAG -> reader.readFloat();
+            case DOUBLE_TAG -> reader.readDouble();
+            case STRING_TAG -> reader.readString();
+            case UUID_TAG -> UUID.decode(reader);
+            case VECTOR_TAG -> VECTOR.decode(reader);
+            case VECTOR3F_TAG -> VECTOR3F.decode(reader);
+            case QUATERNIONF_TAG -> QUATERNIONF.decode(reader);
+            case MATRIX4F_TAG -> MATRIX4F.decode(reader);
+            case DUST_OPTIONS_TAG -> DUST_OPTIONS.decode(reader);
+            case DUST_TRANSITION_TAG -> DUST_TRANSITION.decode(reader);
+            case BLOCK_DATA_TAG -> BLOCK_DATA.decode(reader);
+            case ITEM_STACK_TAG -> ITEM_STACK.decode(reader);
+            default -> throw new CodecException("Unknown value type " + tag);
+        };
+    }
+    
+    private record RecordCodec<R>(
+            Class<R> type, Codec<Object>[] codecs, MethodHandle[] getters, MethodHandle constructor
+    ) implements Codec<R> {
+        @Override
+        public void encode(BinaryWriter writer, R value) {
+            try {
+                for (int i = 0; i < codecs.length; i++) {
+                    codecs[i].encode(writer, (Object) getters[i].invokeExact((Object) value));
+                }
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to encode " + type.getName(), e);
+            }
+        }
+        
+        @Override
+        public R decode(BinaryReader reader) {
+            Object[] values = new Object[codecs.length];
+            for (int i = 0; i < codecs.length; i++) {
+                values[i] = codecs[i].decode(reader);
+            }
+            try {
+                return type.cast((Object) constructor.invokeExact(values));
+            } catch (IllegalArgumentException e) {
+                throw new CodecException("Invalid " + type.getSimpleName() + ": " + e.getMessage(), e);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to create " + type.getName(), e);
+            }
+        }
+    }
+    
+    private record DisplayFields(
+            Transformation transformation,
+            int interpolationDuration,
+            float viewRange,
+            float shadowRadius,
+            float shadowStrength,
+            float displayWidth,
+            float displayHeight,
+            int interpolationDelay,
+            Display.Billboard billboard,
+            Color glowColorOverride,
+            Display.Brightness brightness
+    ) {
+    }
+}
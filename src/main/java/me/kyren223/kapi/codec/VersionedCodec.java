@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.codec;
+
+import me.kyren223.kapi.annotations.Kapi;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A codec that writes a version before the value,
+ * so data written by older versions of a plugin can still be decoded.<br>
+ * <br>
+ * Values are always encoded with the current version,
+ * a legacy codec decodes the old format into the current type.
+ * For example:
+ * <pre>{@code
+ * Codec<Home> codec = Codecs.record(Home.class).versioned(2)
+ *         .legacy(1, Codecs.STRING.map(world -> new Home(world, 0, 64, 0), Home::world));
+ * }</pre>
+ *
+ * @param <T> The type of the values
+ */
+@Kapi
+@NullMarked
+public final class VersionedCodec<T extends @Nullable Object> implements Codec<T> {
+    
+    private final int version;
+    private final Codec<T> codec;
+    private final Map<Integer,Codec<T>> legacy = new HashMap<>();
+    
+    // Package-private
+    VersionedCodec(int version, Codec<T> codec) {
+        if (version < 1) {
+            throw new IllegalArgumentException("Version cannot be less than 1");
+        }
+        this.version = version;
+        this.codec = codec;
+    }
+    
+    /**
+     * Adds a codec that decodes data written by an older version.
+     *
+     * @param version The older version
+     * @param codec   The codec of the older version, it's only used for decoding
+     * @return This codec
+     * @throws IllegalArgumentException if version is not older than the current version or was already added
+     */
+    @Kapi
+    public VersionedCodec<T> legacy(int version, Codec<T> codec) {
+        if (version < 1 || version >= this.version) {
+            throw new IllegalArgumentException("Legacy version must be between 1 and " + (this.version - 1));
+        }
+        if (legacy.putIfAbsent(version, codec) != null) {
+            throw new IllegalArgumentException("Legacy version " + version + " was already added");
+        }
+        return this;
+    }
+    
+    /**
+     * @return The current version
+     */
+    @Kapi
+    public int getVersion() {
+        return version;
+    }
+    
+    @Kapi
+    @Override
+    public void encode(BinaryWriter writer, T value) {
+        writer.writeVarInt(version);
+        codec.encode(writer, value);
+    }
+    
+    @Kapi
+    @Override
+    public T decode(BinaryReader reader) {
+        int version = reader.readVarInt();
+        if (version == this.version) return codec.decode(reader);
+        Codec<T> codec = legacy.get(version);
+        if (codec == null) {
+            throw new CodecException("Unsupported version " + version + ", current version is " + this.version);
+        }
+        return codec.decode(reader);
+    }
+}
@@ -42,6 +42,7 @@ package me.kyren223.kapi.commands;
 import me.kyren223.kapi.annotations.Kapi;
 import me.kyren223.kapi.data.Option;
 import me.kyren223.kapi.data.Pair;
+import me.kyren223.kapi.data.TimeUnit;
 import org.jetbrains.annotations.ApiStatus;
 import org.jspecify.annotations.NullMarked;
 
@@ -59,7 +60,8 @@ import java.util.function.Predicate;
 public class ArgumentBuilder<T> {
     
     private final T parent;
-    private final Map<Pair<ArgumentType<?>,String>,ArgumentBuilder<ArgumentBuilder<T>>> args;
+    private final int slot;
+    private final List<Child> args;
     
     // Pre-conditions consumers
     private final List<Pair<Predicate<CommandContext>,Option<String>>> requirements;
@@ -68,18 +70,25 @@ public class ArgumentBuilder<T> {
     private @Nullable Consumer<ExecutionCommandContext> executor;
     private @Nullable Consumer<SuggestionCommandContext> suggestion;
     
-    private ArgumentBuilder(T parent) {
+    // Per-player limit, checked before requirements
+    private int limitPermits;
+    private int limitTicks;
+    private String limitMessage;
+    
+    private ArgumentBuilder(T parent, int slot) {
         this.parent = parent;
-        this.args = new LinkedHashMap<>();
+        this.slot = slot;
+        this.args = new ArrayList<>();
         this.requirements = new ArrayList<>();
+        this.limitMessage = "You must wait %s seconds before using this again";
     }
     
     static ArgumentBuilder<CommandBuilder> construct(CommandBuilder parent) {
-        return new ArgumentBuilder<>(parent);
+        return new ArgumentBuilder<>(parent, 0);
     }
     
     private static <U> ArgumentBuilder<ArgumentBuilder<U>> construct(ArgumentBuilder<U> parent) {
-        return new ArgumentBuilder<>(parent);
+        return new ArgumentBuilder<>(parent, parent.slot + 1);
     }
     
     /**
@@ -93,7 +102,7 @@ public class ArgumentBuilder<T> {
     @Kapi
     public ArgumentBuilder<ArgumentBuilder<T>> argument(ArgumentType<?> type, String name) {
         ArgumentBuilder<ArgumentBuilder<T>> argumentBuilder = construct(this);
-        args.put(Pair.of(type, name), argumentBuilder);
+        args.add(new Child(type, name, argumentBuilder));
         return argumentBuilder;
     }
     
@@ -101,7 +110,7 @@ public class ArgumentBuilder<T> {
      * Adds a new argument to the command without a way to access it.<br>
      * If you want to be able to access the argument, use {@link #argument(ArgumentType, String)}.<br>
      * This is useful for arguments like literals that are used for branching.<br>
-     * This uses a {@link UUID#randomUUID()} as the name and calls {@code toString()} on it.
+     * The argument can still be accessed by its slot, see {@link #getSlot()}.
      *
      * @param type The type of the argument
      * @return A new argument builder with the parent being this argument builder
@@ -109,10 +118,25 @@ public class ArgumentBuilder<T> {
     @Kapi
     public ArgumentBuilder<ArgumentBuilder<T>> argument(ArgumentType<?> type) {
         ArgumentBuilder<ArgumentBuilder<T>> argumentBuilder = construct(this);
-        args.put(Pair.of(type, UUID.randomUUID().toString()), argumentBuilder);
+        args.add(new Child(type, null, argumentBuilder));
         return argumentBuilder;
     }
     
+    /**
+     * Gets the slot of this argument, which is its depth in the command tree.<br>
+     * The command itself is slot 0, its arguments are slot 1 and so on.<br>
+     * <br>
+     * Slots are known when building the command, so they can be stored
+     * and used with {@link CommandContext#getInt(int)} and similar methods
+     * to access arguments without a name lookup.
+     *
+     * @return The slot of this argument
+     */
+    @Kapi
+    public int getSlot() {
+        return slot;
+    }
+    
     /**
      * Builds the argument and returns the parent of this argument builder.<br>
      * The parent can be either a
@@ -181,8 +205,99 @@ public class ArgumentBuilder<T> {
         return this;
     }
     
+    /**
+     * Limits how often each player can reach this argument, using a token bucket.<br>
+     * Up to {@code permits} uses are allowed at once, and one use is refilled every
+     * {@code ticks / permits} ticks.<br>
+     * <br>
+     * The limit is checked as soon as this argument is reached,
+     * before its requirements and before any of the following arguments are parsed.<br>
+     * Rejected uses are passed to the failure handler with the message from
+     * {@link #limitMessage(String)}.<br>
+     * Only players are limited, tab completion doesn't use permits.
+     *
+     * @param permits The number of uses allowed within the duration
+     * @param ticks   The duration in ticks
+     * @return this argument builder for chaining
+     * @throws IllegalArgumentException if permits or ticks are less than 1
+     * @see #cooldown(int)
+     */
+    @Kapi
+    public ArgumentBuilder<T> rateLimit(int permits, int ticks) {
+        if (permits < 1) throw new IllegalArgumentException("Permits cannot be less than 1");
+        if (ticks < 1) throw new IllegalArgumentException("Duration cannot be less than 1");
+        this.limitPermits = permits;
+        this.limitTicks = ticks;
+        return this;
+    }
+    
+    /**
+     * Limits how often each player can reach this argument.<br>
+     * See {@link #rateLimit(int, int)} for more info
+     *
+     * @param permits  The number of uses allowed within the duration
+     * @param duration The duration
+     * @param timeUnit The time unit of the duration
+     * @return this argument builder for chaining
+     * @throws IllegalArgumentException if permits or the duration are less than 1,
+     *                                  or the duration is more than {@link Integer#MAX_VALUE} ticks
+     */
+    @Kapi
+    public ArgumentBuilder<T> rateLimit(int permits, int duration, TimeUnit timeUnit) {
+        long ticks = timeUnit.toTicks(duration);
+        if (ticks < 1) {
+            throw new IllegalArgumentException("Duration cannot be less than 1");
+        } else if (ticks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "Duration cannot be more than " + Integer.MAX_VALUE + " ticks");
+        }
+        return rateLimit(permits, (int) ticks);
+    }
+    
+    /**
+     * Sets a per-player cooldown for this argument.<br>
+     * Same as {@code rateLimit(1, ticks)}, see {@link #rateLimit(int, int)} for more info
+     *
+     * @param ticks The cooldown in ticks
+     * @return this argument builder for chaining
+     * @throws IllegalArgumentException if the cooldown is less than 1
+     */
+    @Kapi
+    public ArgumentBuilder<T> cooldown(int ticks) {
+        return rateLimit(1, ticks);
+    }
+    
+    /**
+     * Sets a per-player cooldown for this argument.<br>
+     * See {@link #cooldown(int)} for more info
+     *
+     * @param duration The cooldown
+     * @param timeUnit The time unit of the cooldown
+     * @return this argument builder for chaining
+     * @throws IllegalArgumentException if the cooldown is less than 1 or more than
+     *                                  {@link Integer#MAX_VALUE} ticks
+     */
+    @Kapi
+    public ArgumentBuilder<T> cooldown(int duration, TimeUnit timeUnit) {
+        return rateLimit(1, duration, timeUnit);
+    }
+    
+    /**
+     * Sets the message that is passed to the failure handler when a use is rate limited.<br>
+     * Use "%s" as a placeholder for the seconds until the next use,
+     * the message is not a format string, other "%" characters are kept as is.
+     *
+     * @param message The message
+     * @return this argument builder for chaining
+     * @see #rateLimit(int, int)
+     */
+    @Kapi
+    public ArgumentBuilder<T> limitMessage(String message) {
+        this.limitMessage = message;
+        return this;
+    }
     
-    Map<Pair<ArgumentType<?>,String>,ArgumentBuilder<ArgumentBuilder<T>>> getArgs() {
+    List<Child> getArgs() {
         return args;
     }
     
@@ -199,4 +314,13 @@ public class ArgumentBuilder<T> {
     Consumer<SuggestionCommandContext> getSuggestion() {
         return suggestion;
     }
+    
+    @Nullable
+    RateLimiter createLimiter() {
+        if (limitPermits == 0) return null;
+        return new RateLimiter(limitPermits, limitTicks, limitMessage);
+    }
+    
+    record Child(ArgumentType<?> type, @Nullable String name, ArgumentBuilder<?> builder) {
+    }
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.commands;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.data.Result;
+import org.jetbrains.annotations.ApiStatus;
+import org.jspecify.annotations.NullMarked;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A cursor over the arguments of a command.<br>
+ * Argument types read the arguments they parse by advancing the cursor,
+ * the arguments themselves are never copied or modified.<br>
+ * <br>
+ * If parsing fails, the dispatcher moves the cursor back,
+ * so the next argument type sees the same arguments.
+ */
+@Kapi
+@ApiStatus.Experimental
+@NullMarked
+public final class ArgumentReader {
+    
+    private final String[] args;
+    private final int end;
+    private int cursor;
+    
+    /**
+     * Creates a reader at the start of the given arguments.
+     *
+     * @param args The arguments, not copied
+     */
+    @Kapi
+    public ArgumentReader(String[] args) {
+        this(args, args.length);
+    }
+    
+    // Package-private, reads only the arguments before the end index
+    ArgumentReader(String[] args, int end) {
+        this.args = args;
+        this.end = end;
+        this.cursor = 0;
+    }
+    
+    /**
+     * @return true if there are arguments left, false otherwise
+     */
+    @Kapi
+    public boolean hasNext() {
+        return cursor < end;
+    }
+    
+    /**
+     * @return The amount of arguments left
+     */
+    @Kapi
+    public int remaining() {
+        return end - cursor;
+    }
+    
+    /**
+     * Returns the next argument without advancing the cursor.
+     *
+     * @return The next argument
+     * @throws IllegalStateException if there are no arguments left
+     */
+    @Kapi
+    public String peek() {
+        if (cursor >= end) {
+            throw new IllegalStateException("No arguments left");
+        }
+        return args[cursor];
+    }
+    
+    /**
+     * Returns the next argument and advances the cursor.
+     *
+     * @return The next argument
+     * @throws IllegalStateException if there are no arguments left
+     */
+    @Kapi
+    public String next() {
+        String next = peek();
+        cursor++;
+        return next;
+    }
+    
+    /**
+     * @return The index of the next argument
+     */
+    @Kapi
+    public int getCursor() {
+        return cursor;
+    }
+    
+    /**
+     * Moves the cursor, used to go back after a failed parse.
+     *
+     * @param cursor The index of the next argument
+     * @throws IllegalArgumentException if the cursor is out of bounds
+     */
+    @Kapi
+    public void setCursor(int cursor) {
+        if (cursor < 0 || cursor > end) {
+            throw new IllegalArgumentException("Cursor " + cursor + " is out of bounds");
+        }
+        this.cursor = cursor;
+    }
+    
+    /**
+     * Returns a read-only view of the arguments that are left.
+     *
+     * @return An unmodifiable list of the remaining arguments
+     */
+    @Kapi
+    public List<String> getRemaining() {
+        // A view of Arrays.asList writes through to the array the reader was given
+        return Collections.unmodifiableList(Arrays.asList(args).subList(cursor, end));
+    }
+    
+    /**
+     * Parses a list of arguments using the cursor based parse method of the given type,
+     * and removes the arguments it read from the list.<br>
+     * Used to implement {@link ArgumentType#parse(List)} on top of {@link ArgumentType#parse(ArgumentReader)}.
+     *
+     * @param type      The argument type
+     * @param arguments The list of arguments that haven't been parsed yet
+     * @param <T>       The java type of the argument
+     * @return A Result containing the parsed argument or an error message
+     */
+    @Kapi
+    public static <T> Result<T,String> parse(ArgumentType<T> type, List<String> arguments) {
+        ArgumentReader reader = new ArgumentReader(arguments.toArray(new String[0]));
+        Result<T,String> result = type.parse(reader);
+        arguments.subList(0, reader.getCursor()).clear();
+        return result;
+    }
+}
@@ -45,6 +45,7 @@ import me.kyren223.kapi.data.Result;
 import org.jetbrains.annotations.ApiStatus;
 import org.jspecify.annotations.NullMarked;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -71,6 +72,31 @@ public interface ArgumentType<T> {
     @Kapi
     Result<T,String> parse(List<String> arguments);
     
+    /**
+     * Parses the argument from a cursor over the command arguments.<br>
+     * This is what the command dispatcher calls,
+     * it should be overridden to avoid copying the arguments,
+     * see {@link ArgumentReader#parse(ArgumentType, List)} for implementing
+     * {@link #parse(List)} on top of it.<br>
+     * <br>
+     * The reader is guaranteed to have at least one argument left.<br>
+     * Advance the reader past all the arguments you've parsed,
+     * the cursor is moved back automatically if parsing fails.<br>
+     * <br>
+     * By default, delegates to {@link #parse(List)} with a copy of the remaining arguments.
+     *
+     * @param reader The cursor over the command arguments
+     * @return A Result containing the parsed argument or an error message.
+     */
+    @Kapi
+    default Result<T,String> parse(ArgumentReader reader) {
+        List<String> arguments = new ArrayList<>(reader.getRemaining());
+        int size = arguments.size();
+        Result<T,String> result = parse(arguments);
+        reader.setCursor(reader.getCursor() + size - arguments.size());
+        return result;
+    }
+    
     /**
      * Should NOT be called by the user.<br>
      * <br>
@@ -82,4 +108,22 @@ public interface ArgumentType<T> {
      */
     @Kapi
     void getSuggestions(SuggestionCommandContext context);
+    
+    /**
+     * Determines how long the suggestions of this type can be reused,
+     * tab completion runs on every keystroke so caching matters.<br>
+     * <br>
+     * Only return a caching other than {@link SuggestionCaching#NONE}
+     * if the suggestions don't depend on the context, such as the sender or previous arguments.<br>
+     * Suggestions of nodes with a custom {@link ArgumentBuilder#suggest(java.util.function.Consumer)}
+     * are never cached.<br>
+     * <br>
+     * Defaults to {@link SuggestionCaching#NONE}
+     *
+     * @return The caching of the suggestions of this type
+     */
+    @Kapi
+    default SuggestionCaching getSuggestionCaching() {
+        return SuggestionCaching.NONE;
+    }
 }
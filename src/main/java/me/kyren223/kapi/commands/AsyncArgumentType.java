@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.commands;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.data.Result;
+import me.kyren223.kapi.utility.Task;
+import org.jetbrains.annotations.ApiStatus;
+import org.jspecify.annotations.NullMarked;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Represents a Command Argument Type that is resolved off the main thread,
+ * for arguments that need slow lookups such as a database.<br>
+ * <br>
+ * The command dispatcher doesn't wait for the argument,
+ * the rest of the command is parsed and executed on the main thread once the argument resolved.<br>
+ * Note: the command always returns true to spigot when an argument is resolved asynchronously,
+ * use the failure handler to give feedback instead.
+ *
+ * @param <T> The java type of the argument (cannot be null).
+ */
+@Kapi
+@ApiStatus.Experimental
+@NullMarked
+public interface AsyncArgumentType<T> extends ArgumentType<T> {
+    /**
+     * Parses the argument off the main thread.<br>
+     * <br>
+     * This is called on the main thread, read the arguments you need from the reader
+     * before moving off the main thread, see {@link ArgumentType#parse(ArgumentReader)}.<br>
+     * The dispatcher only waits for the future if it's not already completed,
+     * completing it right away (for example, when the arguments are malformed)
+     * lets the dispatcher try the next argument instead.<br>
+     * <br>
+     * This is also called during tab completion to find which arguments were already typed,
+     * the result is not waited for in that case.
+     *
+     * @param reader The cursor over the command arguments
+     * @return A future of a Result containing the parsed argument or an error message,
+     * may be completed on any thread
+     * @see Task#supplyBlocking(java.util.function.Supplier)
+     */
+    @Kapi
+    CompletableFuture<Result<T,String>> parseAsync(ArgumentReader reader);
+    
+    /**
+     * Gets the suggestions off the main thread.<br>
+     * <br>
+     * This is called on the main thread, read what you need from the context
+     * before moving off the main thread.<br>
+     * Tab completion can't wait, so the suggestions are shown once they are available,
+     * on the next keystroke.<br>
+     * Only one request per sender is in progress at a time.<br>
+     * <br>
+     * Defaults to no suggestions.
+     *
+     * @param context The context of the suggestion
+     * @return A future of the suggestions, may be completed on any thread
+     */
+    @Kapi
+    default CompletableFuture<List<String>> getSuggestionsAsync(SuggestionCommandContext context) {
+        return CompletableFuture.completedFuture(List.of());
+    }
+    
+    /**
+     * The time to wait for {@link #parseAsync(ArgumentReader)}
+     * and {@link #getSuggestionsAsync(SuggestionCommandContext)} before giving up.<br>
+     * <br>
+     * Defaults to 100 ticks (5 seconds)
+     *
+     * @return The timeout in ticks
+     */
+    @Kapi
+    default int getTimeout() {
+        return 100;
+    }
+    
+    /**
+     * Parses the argument only if {@link #parseAsync(ArgumentReader)} completes right away,
+     * as waiting would block the main thread.
+     *
+     * @param reader The cursor over the command arguments
+     * @return A Result containing the parsed argument or an error message.
+     */
+    @Kapi
+    @Override
+    default Result<T,String> parse(ArgumentReader reader) {
+        CompletableFuture<Result<T,String>> future = parseAsync(reader);
+        if (!future.isDone() || future.isCompletedExceptionally()) {
+            return Result.err("Argument can only be resolved asynchronously");
+        }
+        return future.join();
+    }
+    
+    @Kapi
+    @Override
+    default Result<T,String> parse(List<String> arguments) {
+        return ArgumentReader.parse(this, arguments);
+    }
+    
+    /**
+     * Does nothing, suggestions are provided by
+     * {@link #getSuggestionsAsync(SuggestionCommandContext)}
+     *
+     * @param context The context of the suggestion.
+     */
+    @Kapi
+    @Override
+    default void getSuggestions(SuggestionCommandContext context) {
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.commands;
+
+import me.kyren223.kapi.annotations.Kapi;
+import org.jetbrains.annotations.ApiStatus;
+import org.jspecify.annotations.NullMarked;
+
+/**
+ * Builds a Brigadier command graph from a Kapi command tree,
+ * see {@link CommandBuilder#export(BrigadierAdapter)}.<br>
+ * <br>
+ * Clients use the exported graph to validate commands and complete literals
+ * without asking the server on every keystroke.<br>
+ * The server's graph is used by {@link CommandBuilder#brigadier()},
+ * other implementations can record the calls, for example to test the exported tree.<br>
+ * <br>
+ * Nodes are exported depth first, a node is passed to {@link #then(Object, Object)}
+ * only after all of its own children were added.
+ *
+ * @param <N> The type of a node that is being built
+ */
+@Kapi
+@ApiStatus.Experimental
+@NullMarked
+public interface BrigadierAdapter<N> {
+    /**
+     * Creates a literal node.
+     *
+     * @param literal The literal
+     * @return The node
+     */
+    @Kapi
+    N literal(String literal);
+    
+    /**
+     * Creates an argument node.<br>
+     * The adapter decides how the Kapi type is represented,
+     * types it doesn't know should accept any input so clients don't reject valid commands.
+     *
+     * @param name The name of the argument
+     * @param type The Kapi type of the argument
+     * @return The node
+     */
+    @Kapi
+    N argument(String name, ArgumentType<?> type);
+    
+    /**
+     * A greedy argument consumes the rest of the input, so nothing can follow it on the client.<br>
+     * Greedy arguments that have children are exported as complete commands without their children,
+     * the server parses the rest of the input.
+     *
+     * @param type The Kapi type of the argument
+     * @return True if the type is exported as a greedy argument, false otherwise
+     */
+    @Kapi
+    boolean isGreedy(ArgumentType<?> type);
+    
+    /**
+     * Marks the node as a complete command.
+     *
+     * @param node The node
+     */
+    @Kapi
+    void executes(N node);
+    
+    /**
+     * Adds a child to the node.
+     *
+     * @param parent The node
+     * @param child  The child, all of its children were already added
+     */
+    @Kapi
+    void then(N parent, N child);
+    
+    /**
+     * Adds the root of a command to the graph, replacing an existing command with the same literal.
+     *
+     * @param root The root literal node of the command
+     */
+    @Kapi
+    void register(N root);
+}
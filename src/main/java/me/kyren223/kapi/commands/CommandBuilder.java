@@ -42,21 +42,29 @@
 package me.kyren223.kapi.commands;
 
 import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.core.Kplugin;
 import me.kyren223.kapi.data.Option;
 import me.kyren223.kapi.data.Pair;
 import me.kyren223.kapi.data.Result;
 import me.kyren223.kapi.utility.KapiRegistry;
 import me.kyren223.kapi.utility.Log;
+import me.kyren223.kapi.utility.Task;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.PluginCommand;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Player;
 import org.jetbrains.annotations.ApiStatus;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -71,13 +79,21 @@ import static me.kyren223.kapi.commands.builtin.LiteralArgumentType.literal;
 @NullMarked
 public class CommandBuilder {
     
+    private static final int POOL_SIZE = 8;
+    
     private final String name;
     private final ArgumentBuilder<CommandBuilder> argumentBuilder;
     private @Nullable BiConsumer<ExecutionCommandContext,Option<String>> failureHandler;
+    private @Nullable CommandNode root;
+    private final ArrayDeque<ExecutionCommandContext> pool;
+    private List<String> aliases;
+    private boolean brigadier;
     
     private CommandBuilder(String name) {
         this.name = name;
         this.argumentBuilder = ArgumentBuilder.construct(this);
+        this.pool = new ArrayDeque<>();
+        this.aliases = List.of();
     }
     
     /**
@@ -93,11 +109,70 @@ public class CommandBuilder {
     
     /**
      * Registers the command to the Kapi command registry.
-     * Uses {@link KapiRegistry#register(String, CommandExecutor, TabCompleter)}.
+     * Uses {@link KapiRegistry#register(String, CommandExecutor, TabCompleter)}.<br>
+     * <br>
+     * The argument tree is compiled when registering,
+     * changes to the tree after registering are not picked up.
      */
     @Kapi
     public void register() {
+        root = compile();
         KapiRegistry.register(name, this::onCommand, this::onTabComplete);
+        
+        PluginCommand command = Kplugin.get().getCommand(name);
+        if (command != null) aliases = List.copyOf(command.getAliases());
+        
+        // Spigot rebuilds the graph after plugins are enabled, so the export waits for the first tick
+        if (brigadier) {
+            Task.run(() -> {
+                ReflectiveBrigadierAdapter adapter = ReflectiveBrigadierAdapter.create();
+                if (adapter != null) export(adapter);
+            }).schedule();
+        }
+    }
+    
+    /**
+     * Exports the command to the server's Brigadier command graph when registering.<br>
+     * Clients can then validate the command and complete literals without asking the server.<br>
+     * <br>
+     * Note: requirements can't be checked by clients, so every branch is visible to every player,
+     * the server still checks requirements when the command is executed.<br>
+     * If Brigadier is not accessible, a warning is logged and the command works as usual.
+     *
+     * @return the command builder for chaining
+     * @see #export(BrigadierAdapter)
+     */
+    @Kapi
+    public CommandBuilder brigadier() {
+        this.brigadier = true;
+        return this;
+    }
+    
+    /**
+     * Exports the argument tree of the command, including its aliases once registered.<br>
+     * See {@link #brigadier()} to export to the server's command graph.
+     *
+     * @param adapter The adapter that builds the graph
+     * @param <N>     The type of a node of the adapter
+     */
+    @Kapi
+    public <N> void export(BrigadierAdapter<N> adapter) {
+        CommandNode root = getRoot();
+        adapter.register(root.export(adapter, name));
+        for (String alias : aliases) {
+            adapter.register(root.export(adapter, alias));
+        }
+    }
+    
+    private CommandNode compile() {
+        // Using `name` so the executor can search for the name argument
+        // which will store the actual label that was used (which many be an alias)
+        return CommandNode.compile(name, literal(name).ignoreCase(), argumentBuilder);
+    }
+    
+    private CommandNode getRoot() {
+        if (root == null) root = compile();
+        return root;
     }
     
     /**
@@ -139,73 +214,133 @@ public class CommandBuilder {
     }
     
     private boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-        ExecutionCommandContext context = new ExecutionCommandContext(sender, command, label, args);
-        
-        // Using `label` and not `name` to allow the executor
-        // to know the specific alias that was used
-        List<String> arguments = new ArrayList<>(List.of(args));
-        arguments.add(0, label);
-        
-        // Using `name` so the executor can search for the name argument
-        // which will store the actual label that was used (which many be an alias)
-        String argumentName = name;
-        ArgumentBuilder<?> builder = argumentBuilder;
-        Object result = literal(label).ignoreCase().parse(arguments);
+        // Contexts are reused, commands from automation can run hundreds of times per second
+        ExecutionCommandContext context = pool.poll();
+        if (context == null) {
+            context = new ExecutionCommandContext(sender, command, label, args);
+        } else {
+            context.reset(sender, command, label, args);
+        }
         
+        // The reader walks the original arguments, nothing is copied or removed,
+        // the label is the root argument so the executor knows the alias that was used
+        ArgumentReader reader = new ArgumentReader(args);
+        CommandNode node = getRoot();
+        context.setArgument(node.getSlot(), node.getName(), label);
+        boolean returnValue = context.getReturnValue();
+        if (dispatch(context, reader, node)) {
+            returnValue = context.getReturnValue();
+            release(context);
+        }
+        return returnValue;
+    }
+    
+    private void release(ExecutionCommandContext context) {
+        context.clear();
+        if (pool.size() < POOL_SIZE) pool.push(context);
+    }
+    
+    /**
+     * @return False if the dispatch is waiting for an argument to resolve, true otherwise
+     */
+    private boolean dispatch(ExecutionCommandContext context, ArgumentReader reader, CommandNode node) {
+        boolean metrics = CommandMetrics.isEnabled();
+        long start = metrics ? System.nanoTime() : 0;
         while (true) {
+            // Rate limits come first, so spammed commands are rejected before doing any work
+            RateLimiter limiter = node.getLimiter();
+            if (limiter != null && context.getSender() instanceof Player player) {
+                long wait = limiter.acquire(player.getUniqueId());
+                if (wait > 0) {
+                    if (metrics) recordFailure(context, node, start, "rate limit");
+                    if (failureHandler != null) {
+                        failureHandler.accept(context, Option.some(limiter.getMessage(wait)));
+                    }
+                    return true;
+                }
+            }
+            
             // Check if all requirements are met
-            for (Pair<Predicate<CommandContext>,Option<String>> requirement : builder.getRequirements()) {
+            List<Pair<Predicate<CommandContext>,Option<String>>> requirements = node.getRequirements();
+            for (int i = 0; i < requirements.size(); i++) {
+                Pair<Predicate<CommandContext>,Option<String>> requirement = requirements.get(i);
                 if (requirement.getFirst().test(context)) continue;
                 
                 // Failed requirement
+                if (metrics) {
+                    String message = requirement.getSecond().get();
+                    recordFailure(context, node, start, message != null ? message : "requirement " + (i + 1));
+                }
                 if (failureHandler != null) {
                     failureHandler.accept(context, requirement.getSecond());
                 }
                 
-                return context.getReturnValue();
+                return true;
             }
             
-            // Add the argument
-            context.addArgument(argumentName, result);
-            
             // If no more arguments are left, break, no need to check next args
-            if (arguments.isEmpty()) {
+            if (!reader.hasNext()) {
                 break;
             }
             
             // Choose the next argument
-            boolean hasNext = false;
-            for (Pair<ArgumentType<?>,String> nextArgKey : builder.getArgs().keySet()) {
-                ArgumentType<?> nextType = nextArgKey.getFirst();
-                String nextArgumentName = nextArgKey.getSecond();
-                ArgumentBuilder<?> nextBuilder = builder.getArgs().get(nextArgKey);
-                
-                // Try to parse the next argument
-                Result<?,String> nextResult = nextType.parse(arguments);
-                if (nextResult.isErr()) continue;
-                
-                // Argument succeeded
-                hasNext = true;
-                result = nextResult;
-                argumentName = nextArgumentName;
-                builder = nextBuilder;
-                break;
-            }
+            CommandNode next = node.parseNext(reader, context);
+            if (next == null) break;
+            node = next;
             
-            if (!hasNext) break;
+            // Continue on the main thread once the argument resolved
+            CompletableFuture<? extends Result<?,String>> pending = context.takePending();
+            if (pending != null) {
+                AsyncArgumentType<?> type = (AsyncArgumentType<?>) node.getType();
+                CommandNode resolved = node;
+                pending.orTimeout(type.getTimeout() * 50L, TimeUnit.MILLISECONDS).whenComplete((result, error) ->
+                        Task.run(() -> resume(context, reader, resolved, result, error)).schedule());
+                return false;
+            }
         }
         
-        // TODO if executor doesn't exist that means the path is invalid
-        // And must be handled by the failure handler
-        // Otherwise it's valid, the next args r just optional and can be ignored
-        Consumer<ExecutionCommandContext> executor = builder.getExecutor();
+        Consumer<ExecutionCommandContext> executor = node.getExecutor();
+        long parsed = metrics ? System.nanoTime() : 0;
         if (executor != null) {
             executor.accept(context);
         } else if (failureHandler != null) {
             failureHandler.accept(context, Option.none());
         }
         
-        return context.getReturnValue();
+        if (metrics) {
+            long executeNanos = executor != null ? System.nanoTime() - parsed : -1;
+            CommandMetrics.record(name, node, context, parsed - start, executeNanos);
+        }
+        return true;
+    }
+    
+    private void recordFailure(ExecutionCommandContext context, CommandNode node, long start, String failure) {
+        CommandMetrics.recordFailure(node.getPath() + ": " + failure);
+        CommandMetrics.record(name, node, context, System.nanoTime() - start, -1);
+    }
+    
+    private void resume(
+            ExecutionCommandContext context, ArgumentReader reader, CommandNode node,
+            @Nullable Result<?,String> result, @Nullable Throwable error
+    ) {
+        if (error instanceof CompletionException) error = error.getCause();
+        
+        boolean done = true;
+        if (error instanceof TimeoutException) {
+            if (failureHandler != null) {
+                failureHandler.accept(context, Option.some("An argument took too long to resolve"));
+            }
+        } else if (error != null || result == null) {
+            Log.error("An error occurred while resolving an argument of command " + name);
+            if (error != null) error.printStackTrace();
+            if (failureHandler != null) failureHandler.accept(context, Option.none());
+        } else if (result.isErr()) {
+            if (failureHandler != null) failureHandler.accept(context, Option.some(result.unwrapErr()));
+        } else {
+            context.setArgument(node.getSlot(), node.getName(), result.unwrap());
+            done = dispatch(context, reader, node);
+        }
+        if (done) release(context);
     }
     
     private List<String> onTabComplete(
@@ -213,7 +348,32 @@ public class CommandBuilder {
     ) {
         SuggestionCommandContext context =
                 new SuggestionCommandContext(sender, command, label, args);
+        if (args.length == 0) return context.getReturnValue();
+        
+        // Walk the arguments that were already typed, the last one is being typed
+        ArgumentReader reader = new ArgumentReader(args, args.length - 1);
+        CommandNode node = getRoot();
+        context.setArgument(node.getSlot(), node.getName(), label);
+        while (true) {
+            for (Pair<Predicate<CommandContext>,Option<String>> requirement : node.getRequirements()) {
+                if (!requirement.getFirst().test(context)) return context.getReturnValue();
+            }
+            if (!reader.hasNext()) break;
+            
+            CommandNode next = node.parseNext(reader, context);
+            // The typed arguments don't lead to a node, so there is nothing to suggest
+            if (next == null) return context.getReturnValue();
+            node = next;
+        }
+        
+        for (CommandNode child : node.getChildren()) {
+            child.suggest(context);
+        }
         
-        return context.getReturnValue();
+        String partial = args[args.length - 1];
+        List<String> suggestions = context.getReturnValue();
+        suggestions.removeIf(suggestion ->
+                !suggestion.regionMatches(true, 0, partial, 0, partial.length()));
+        return suggestions;
     }
 }
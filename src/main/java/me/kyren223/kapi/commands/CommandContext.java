@@ -42,14 +42,16 @@ package me.kyren223.kapi.commands;
 
 import me.kyren223.kapi.annotations.Kapi;
 import me.kyren223.kapi.data.Option;
+import me.kyren223.kapi.data.Result;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.ApiStatus;
 import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Represents the context of a command.<br>
@@ -57,29 +59,148 @@ import java.util.Map;
  * and {@link SuggestionCommandContext} for "TabCompleter" context.<br>
  * <br>
  * This class can be used when it doesn't matter if
- * the context is for execution or suggestion.
+ * the context is for execution or suggestion.<br>
+ * <br>
+ * Parsed arguments are stored in slots, the slot of an argument is its depth in the command tree,
+ * see {@link ArgumentBuilder#getSlot()}.<br>
+ * Integers, decimals and booleans are stored without boxing,
+ * use {@link #getInt(String)}, {@link #getDouble(String)} and {@link #getBoolean(String)} to read them.
  */
 @Kapi
 @ApiStatus.Internal
 @NullMarked
 public class CommandContext {
     
-    private final CommandSender sender;
-    private final Command command;
-    private final String label;
-    private final String[] args;
-    private final Map<String,Object> arguments;
+    private static final byte OBJECT = 0;
+    private static final byte INT = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte BOOLEAN = 3;
+    
+    private CommandSender sender;
+    private Command command;
+    private String label;
+    private String[] args;
+    private @Nullable String[] names;
+    private @Nullable Object[] values;
+    private long[] primitives;
+    private byte[] kinds;
+    private int size;
+    private @Nullable CompletableFuture<? extends Result<?,String>> pending;
     
     public CommandContext(CommandSender sender, Command command, String label, String[] args) {
         this.sender = sender;
         this.command = command;
         this.label = label;
         this.args = args;
-        this.arguments = new LinkedHashMap<>();
+        this.names = new String[8];
+        this.values = new Object[8];
+        this.primitives = new long[8];
+        this.kinds = new byte[8];
+    }
+    
+    /**
+     * Prepares a cleared context to be reused for another command.
+     */
+    // Package-private
+    void reset(CommandSender sender, Command command, String label, String[] args) {
+        this.sender = sender;
+        this.command = command;
+        this.label = label;
+        this.args = args;
+    }
+    
+    /**
+     * Removes all the arguments, so they can be garbage collected while the context is pooled.
+     */
+    // Package-private
+    void clear() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        pending = null;
+    }
+    
+    // Package-private
+    void setArgument(int slot, @Nullable String name, Object value) {
+        set(slot, name, OBJECT);
+        values[slot] = value;
     }
     
-    void addArgument(String name, Object value) {
-        arguments.put(name, value);
+    // Package-private
+    void setName(int slot, @Nullable String name) {
+        set(slot, name, kinds[slot]);
+    }
+    
+    /**
+     * Stores a parsed integer without boxing, used by {@link PrimitiveArgumentType}.
+     *
+     * @param slot  The slot of the argument
+     * @param value The parsed value
+     */
+    @Kapi
+    @ApiStatus.Internal
+    public void setInt(int slot, int value) {
+        set(slot, null, INT);
+        primitives[slot] = value;
+    }
+    
+    /**
+     * Stores a parsed decimal without boxing, used by {@link PrimitiveArgumentType}.
+     *
+     * @param slot  The slot of the argument
+     * @param value The parsed value
+     */
+    @Kapi
+    @ApiStatus.Internal
+    public void setDouble(int slot, double value) {
+        set(slot, null, DOUBLE);
+        primitives[slot] = Double.doubleToRawLongBits(value);
+    }
+    
+    /**
+     * Stores a parsed boolean without boxing, used by {@link PrimitiveArgumentType}.
+     *
+     * @param slot  The slot of the argument
+     * @param value The parsed value
+     */
+    @Kapi
+    @ApiStatus.Internal
+    public void setBoolean(int slot, boolean value) {
+        set(slot, null, BOOLEAN);
+        primitives[slot] = value ? 1 : 0;
+    }
+    
+    private void set(int slot, @Nullable String name, byte kind) {
+        if (slot >= kinds.length) {
+            int capacity = Math.max(slot + 1, kinds.length * 2);
+            names = Arrays.copyOf(names, capacity);
+            values = Arrays.copyOf(values, capacity);
+            primitives = Arrays.copyOf(primitives, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+        }
+        
+        // Deeper slots belong to a previous parse attempt or a previous command
+        for (int i = slot; i < size; i++) values[i] = null;
+        names[slot] = name;
+        kinds[slot] = kind;
+        if (kind != OBJECT) values[slot] = null;
+        size = slot + 1;
+    }
+    
+    // Package-private
+    void setPending(CompletableFuture<? extends Result<?,String>> pending) {
+        this.pending = pending;
+    }
+    
+    /**
+     * Takes the argument that is still being resolved by an {@link AsyncArgumentType}.
+     *
+     * @return The pending future or null if the last argument was parsed synchronously
+     */
+    // Package-private
+    @Nullable CompletableFuture<? extends Result<?,String>> takePending() {
+        CompletableFuture<? extends Result<?,String>> pending = this.pending;
+        this.pending = null;
+        return pending;
     }
     
     @Kapi
@@ -166,12 +287,8 @@ public class CommandContext {
      * @return The parsed argument or none if the argument is not found.
      */
     @Kapi
-    @SuppressWarnings("unchecked")
     public <T> Option<T> getArg(String name, Class<T> clazz) {
-        Object value = arguments.get(name);
-        if (value == null) return Option.none();
-        if (!clazz.isInstance(value)) return Option.none();
-        return Option.some((T) value);
+        return getSlot(indexOf(name), clazz);
     }
     
     /**
@@ -188,7 +305,125 @@ public class CommandContext {
      */
     @Kapi
     public Option<Object> getArg(String name) {
-        return Option.of(arguments.get(name));
+        int slot = indexOf(name);
+        return slot == -1 ? Option.none() : Option.of(box(slot));
+    }
+    
+    /**
+     * Gets a parsed argument by slot, see {@link ArgumentBuilder#getSlot()}.<br>
+     * Slots don't require a name lookup, unnamed arguments can be accessed as well.
+     *
+     * @param slot  The slot of the argument.
+     * @param clazz The class of the argument.
+     * @param <T>   The type of the argument.
+     * @return The parsed argument or none if the slot is empty or not of the given class.
+     */
+    @Kapi
+    @SuppressWarnings("unchecked")
+    public <T> Option<T> getSlot(int slot, Class<T> clazz) {
+        if (slot < 0 || slot >= size) return Option.none();
+        Object value = box(slot);
+        if (!clazz.isInstance(value)) return Option.none();
+        return Option.some((T) value);
+    }
+    
+    /**
+     * Gets a parsed integer by name without boxing.
+     *
+     * @param name The name of the argument.
+     * @return The parsed integer.
+     * @throws IllegalArgumentException If no integer argument has the given name.
+     */
+    @Kapi
+    public int getInt(String name) {
+        return getInt(indexOf(name));
+    }
+    
+    /**
+     * Gets a parsed integer by slot without boxing, see {@link ArgumentBuilder#getSlot()}.
+     *
+     * @param slot The slot of the argument.
+     * @return The parsed integer.
+     * @throws IllegalArgumentException If the slot doesn't hold an integer.
+     */
+    @Kapi
+    public int getInt(int slot) {
+        if (!isKind(slot, INT)) throw new IllegalArgumentException("Argument at slot " + slot + " is not an integer");
+        return (int) primitives[slot];
+    }
+    
+    /**
+     * Gets a parsed decimal by name without boxing.<br>
+     * Integers are converted to decimals.
+     *
+     * @param name The name of the argument.
+     * @return The parsed decimal.
+     * @throws IllegalArgumentException If no decimal argument has the given name.
+     */
+    @Kapi
+    public double getDouble(String name) {
+        return getDouble(indexOf(name));
+    }
+    
+    /**
+     * Gets a parsed decimal by slot without boxing, see {@link ArgumentBuilder#getSlot()}.<br>
+     * Integers are converted to decimals.
+     *
+     * @param slot The slot of the argument.
+     * @return The parsed decimal.
+     * @throws IllegalArgumentException If the slot doesn't hold a decimal.
+     */
+    @Kapi
+    public double getDouble(int slot) {
+        if (isKind(slot, INT)) return primitives[slot];
+        if (!isKind(slot, DOUBLE)) throw new IllegalArgumentException("Argument at slot " + slot + " is not a decimal");
+        return Double.longBitsToDouble(primitives[slot]);
+    }
+    
+    /**
+     * Gets a parsed boolean by name without boxing.
+     *
+     * @param name The name of the argument.
+     * @return The parsed boolean.
+     * @throws IllegalArgumentException If no boolean argument has the given name.
+     */
+    @Kapi
+    public boolean getBoolean(String name) {
+        return getBoolean(indexOf(name));
+    }
+    
+    /**
+     * Gets a parsed boolean by slot without boxing, see {@link ArgumentBuilder#getSlot()}.
+     *
+     * @param slot The slot of the argument.
+     * @return The parsed boolean.
+     * @throws IllegalArgumentException If the slot doesn't hold a boolean.
+     */
+    @Kapi
+    public boolean getBoolean(int slot) {
+        if (!isKind(slot, BOOLEAN)) throw new IllegalArgumentException("Argument at slot " + slot + " is not a boolean");
+        return primitives[slot] != 0;
+    }
+    
+    private int indexOf(String name) {
+        // The deepest argument wins if names repeat along the path
+        for (int i = size - 1; i >= 0; i--) {
+            if (name.equals(names[i])) return i;
+        }
+        return -1;
+    }
+    
+    private boolean isKind(int slot, byte kind) {
+        return slot >= 0 && slot < size && kinds[slot] == kind;
+    }
+    
+    private @Nullable Object box(int slot) {
+        return switch (kinds[slot]) {
+            case INT -> (int) primitives[slot];
+            case DOUBLE -> Double.longBitsToDouble(primitives[slot]);
+            case BOOLEAN -> primitives[slot] != 0;
+            default -> values[slot];
+        };
     }
     
     
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.commands;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.utility.Log;
+import me.kyren223.kapi.utility.Profiler;
+import org.jetbrains.annotations.ApiStatus;
+import org.jspecify.annotations.NullMarked;
+
+import java.util.*;
+
+/**
+ * Optional instrumentation of commands built with {@link CommandBuilder}.<br>
+ * <br>
+ * When enabled, every execution is recorded per command and per path,
+ * a path is the command followed by the arguments that were reached,
+ * such as "warp set &lt;name&gt;".<br>
+ * Parse time includes rate limits and requirements,
+ * execute time is the executor alone.<br>
+ * Executions slower than {@link #getSlowThreshold()} are logged with their path and input.<br>
+ * <br>
+ * Disabled by default, when disabled the only cost is a single check per execution.
+ */
+@Kapi
+@ApiStatus.Experimental
+@NullMarked
+public final class CommandMetrics {
+    
+    private static final int SLOW_COMMANDS = 50;
+    
+    private static boolean enabled = false;
+    private static long slowThreshold = 5_000_000;
+    private static final Map<String,Metrics> commands = new HashMap<>();
+    private static final Map<String,Metrics> paths = new HashMap<>();
+    private static final Map<String,Long> failures = new HashMap<>();
+    private static final ArrayDeque<SlowCommand> slowCommands = new ArrayDeque<>();
+    
+    private CommandMetrics() {
+        throw new AssertionError("CommandMetrics should not be instantiated");
+    }
+    
+    /**
+     * @return true if command executions are recorded, false otherwise
+     */
+    @Kapi
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Starts or stops recording.<br>
+     * Recorded metrics are kept when disabled, use {@link #reset()} to clear them.
+     *
+     * @param enabled true to start recording, false to stop
+     */
+    @Kapi
+    public static void setEnabled(boolean enabled) {
+        CommandMetrics.enabled = enabled;
+    }
+    
+    /**
+     * @return The slow command threshold in milliseconds
+     */
+    @Kapi
+    public static double getSlowThreshold() {
+        return slowThreshold / 1_000_000.0;
+    }
+    
+    /**
+     * Sets the time from which an execution is logged as a slow command.<br>
+     * Default value is 5 milliseconds.
+     *
+     * @param millis The threshold in milliseconds
+     * @throws IllegalArgumentException if millis is not positive
+     */
+    @Kapi
+    public static void setSlowThreshold(double millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive");
+        }
+        CommandMetrics.slowThreshold = (long) (millis * 1_000_000);
+    }
+    
+    /**
+     * Gets the metrics of every command, by the name of the command.
+     *
+     * @return An unmodifiable view of the metrics per command
+     */
+    @Kapi
+    public static Map<String,Metrics> getCommands() {
+        return Collections.unmodifiableMap(commands);
+    }
+    
+    /**
+     * Gets the metrics of every path, such as "warp set &lt;name&gt;".<br>
+     * The path is where the execution ended, whether the executor ran or a requirement failed.
+     *
+     * @return An unmodifiable view of the metrics per path
+     */
+    @Kapi
+    public static Map<String,Metrics> getPaths() {
+        return Collections.unmodifiableMap(paths);
+    }
+    
+    /**
+     * Gets how many times each requirement and rate limit rejected an execution.<br>
+     * Requirements are labeled by their path and their message,
+     * or their position if they have no message, such as "warp set: requirement 1".
+     *
+     * @return An unmodifiable view of the failures per requirement
+     */
+    @Kapi
+    public static Map<String,Long> getRequirementFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+    
+    /**
+     * Gets the most recent slow executions, from the oldest.<br>
+     * Up to 50 are kept.
+     *
+     * @return A list of slow executions
+     */
+    @Kapi
+    public static List<SlowCommand> getSlowCommands() {
+        return List.copyOf(slowCommands);
+    }
+    
+    /**
+     * Clears all recorded metrics.
+     */
+    @Kapi
+    public static void reset() {
+        commands.clear();
+        paths.clear();
+        failures.clear();
+        slowCommands.clear();
+    }
+    
+    // Package-private
+    static void record(String command, CommandNode node, CommandContext context, long parseNanos, long executeNanos) {
+        commands.computeIfAbsent(command, Metrics::new).record(parseNanos, executeNanos);
+        paths.computeIfAbsent(node.getPath(), Metrics::new).record(parseNanos, executeNanos);
+        
+        long nanos = parseNanos + Math.max(executeNanos, 0);
+        if (nanos < slowThreshold) return;
+        
+        SlowCommand slow = new SlowCommand(
+                node.getPath(), context.getSender().getName(),
+                context.getArgsCount() == 0 ? context.getLabel()
+                        : context.getLabel() + " " + String.join(" ", context.getArgs()),
+                parseNanos / 1_000_000.0, Math.max(executeNanos, 0) / 1_000_000.0
+        );
+        if (slowCommands.size() == SLOW_COMMANDS) slowCommands.poll();
+        slowCommands.add(slow);
+        Log.warn(String.format("Slow command %s by %s took %.2fms (%.2fms parsing): /%s",
+                slow.path(), slow.sender(), slow.parseTime() + slow.executeTime(), slow.parseTime(), slow.input()));
+    }
+    
+    // Package-private
+    static void recordFailure(String requirement) {
+        failures.merge(requirement, 1L, Long::sum);
+    }
+    
+    /**
+     * Metrics of a single command or path.
+     */
+    @Kapi
+    public static final class Metrics {
+        private final Profiler.Stats parse;
+        private final Profiler.Stats execute;
+        
+        private Metrics(String label) {
+            this.parse = new Profiler.Stats(label);
+            this.execute = new Profiler.Stats(label);
+        }
+        
+        private void record(long parseNanos, long executeNanos) {
+            parse.record(parseNanos, slowThreshold);
+            if (executeNanos >= 0) execute.record(executeNanos, slowThreshold);
+        }
+        
+        /**
+         * @return The number of executions, including the ones that failed
+         */
+        @Kapi
+        public long getInvocations() {
+            return parse.getRuns();
+        }
+        
+        /**
+         * @return The time spent parsing arguments and checking requirements,
+         *         overruns are executions slower than the slow threshold
+         */
+        @Kapi
+        public Profiler.Stats getParseStats() {
+            return parse;
+        }
+        
+        /**
+         * @return The time spent in the executor, only executions that reached an executor are recorded,
+         *         overruns are executions slower than the slow threshold
+         */
+        @Kapi
+        public Profiler.Stats getExecuteStats() {
+            return execute;
+        }
+    }
+    
+    /**
+     * A single execution that was slower than the slow threshold.
+     *
+     * @param path        The path of the execution
+     * @param sender      The name of the sender
+     * @param input       The command as it was typed, without the slash
+     * @param parseTime   The time spent parsing in milliseconds
+     * @param executeTime The time spent in the executor in milliseconds
+     */
+    @Kapi
+    public record SlowCommand(String path, String sender, String input, double parseTime, double executeTime) {
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.commands;
+
+import me.kyren223.kapi.commands.builtin.LiteralArgumentType;
+import me.kyren223.kapi.data.Option;
+import me.kyren223.kapi.data.Pair;
+import me.kyren223.kapi.data.Result;
+import org.bukkit.command.CommandSender;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A node of a compiled command tree, see {@link CommandBuilder#register()}<br>
+ * Literal children are indexed by their literal,
+ * so finding the next node takes a single lookup instead of parsing every child.
+ */
+@NullMarked
+final class CommandNode {
+    
+    private static final long TICK_NANOS = 50_000_000;
+    
+    private final @Nullable String name;
+    private final int slot;
+    private final String path;
+    private final ArgumentType<?> type;
+    private final @Nullable String literal;
+    private final List<Pair<Predicate<CommandContext>,Option<String>>> requirements;
+    private final @Nullable Consumer<ExecutionCommandContext> executor;
+    private final @Nullable Consumer<SuggestionCommandContext> suggestion;
+    private final @Nullable RateLimiter limiter;
+    private final List<CommandNode> children;
+    private final Map<String,CommandNode> literals;
+    private final Map<String,CommandNode> ignoreCaseLiterals;
+    private final List<CommandNode> arguments;
+    private @Nullable List<String> cachedSuggestions;
+    private long cachedAt;
+    private final Map<CommandSender,AsyncSuggestions> asyncSuggestions;
+    
+    private CommandNode(
+            @Nullable String name, ArgumentType<?> type, ArgumentBuilder<?> builder, @Nullable String parentPath
+    ) {
+        this.name = name;
+        this.slot = builder.getSlot();
+        this.type = type;
+        this.literal = type instanceof LiteralArgumentType literalType ? literalType.getLiteral() : null;
+        String token = literal != null ? literal : "<" + (name != null ? name : "argument" + slot) + ">";
+        this.path = parentPath == null ? token : parentPath + " " + token;
+        this.requirements = List.copyOf(builder.getRequirements());
+        this.executor = builder.getExecutor();
+        this.suggestion = builder.getSuggestion();
+        this.limiter = builder.createLimiter();
+        this.children = new ArrayList<>();
+        this.literals = new HashMap<>();
+        this.ignoreCaseLiterals = new HashMap<>();
+        this.arguments = new ArrayList<>();
+        this.asyncSuggestions = new WeakHashMap<>();
+    }
+    
+    static CommandNode compile(@Nullable String name, ArgumentType<?> type, ArgumentBuilder<?> builder) {
+        return compile(name, type, builder, null);
+    }
+    
+    private static CommandNode compile(
+            @Nullable String name, ArgumentType<?> type, ArgumentBuilder<?> builder, @Nullable String parentPath
+    ) {
+        CommandNode node = new CommandNode(name, type, builder, parentPath);
+        for (ArgumentBuilder.Child child : builder.getArgs()) {
+            CommandNode childNode = compile(child.name(), child.type(), child.builder(), node.path);
+            node.children.add(childNode);
+            
+            // The first of duplicate literals wins, like it did when children were tried in order
+            if (child.type() instanceof LiteralArgumentType literal) {
+                if (literal.isIgnoreCase()) {
+                    node.ignoreCaseLiterals.putIfAbsent(
+                            literal.getLiteral().toLowerCase(Locale.ROOT), childNode);
+                } else {
+                    node.literals.putIfAbsent(literal.getLiteral(), childNode);
+                }
+            } else {
+                node.arguments.add(childNode);
+            }
+        }
+        return node;
+    }
+    
+    /**
+     * Finds the literal child that matches the given argument.
+     *
+     * @param argument The argument
+     * @return The matching child or null if no literal matches
+     */
+    @Nullable CommandNode findLiteral(String argument) {
+        CommandNode node = literals.get(argument);
+        if (node != null || ignoreCaseLiterals.isEmpty()) return node;
+        return ignoreCaseLiterals.get(argument.toLowerCase(Locale.ROOT));
+    }
+    
+    /**
+     * Parses the next argument, literals are looked up directly and the rest are tried in order.<br>
+     * The parsed value is added to the context under the name of the returned child.<br>
+     * If the child is an {@link AsyncArgumentType} that didn't resolve right away,
+     * nothing is added and the future is available from {@link CommandContext#takePending()}.
+     *
+     * @param reader  The reader, moved past the parsed argument
+     * @param context The context to add the parsed value to
+     * @return The child that parsed the next argument, or null if none did
+     */
+    @Nullable CommandNode parseNext(ArgumentReader reader, CommandContext context) {
+        CommandNode next = findLiteral(reader.peek());
+        if (next != null) {
+            reader.next();
+            context.setArgument(next.slot, next.name, Objects.requireNonNull(next.literal));
+            return next;
+        }
+        
+        int cursor = reader.getCursor();
+        for (CommandNode argument : arguments) {
+            Result<?,String> result;
+            if (argument.type instanceof AsyncArgumentType<?> async) {
+                CompletableFuture<? extends Result<?,String>> future = async.parseAsync(reader);
+                if (!future.isDone()) {
+                    context.setPending(future);
+                    return argument;
+                }
+                if (future.isCompletedExceptionally()) {
+                    reader.setCursor(cursor);
+                    continue;
+                }
+                result = future.join();
+            } else if (argument.type instanceof PrimitiveArgumentType<?> primitive) {
+                // Stored in the context directly, no result or boxing
+                if (primitive.parsePrimitive(reader, context, argument.slot)) {
+                    context.setName(argument.slot, argument.name);
+                    return argument;
+                }
+                reader.setCursor(cursor);
+                continue;
+            } else {
+                result = argument.type.parse(reader);
+            }
+            
+            if (result.isOk()) {
+                context.setArgument(argument.slot, argument.name, result.unwrap());
+                return argument;
+            }
+            reader.setCursor(cursor);
+        }
+        return null;
+    }
+    
+    /**
+     * Adds the suggestions of this node to the context,
+     * reusing them according to the caching of the argument type.
+     *
+     * @param context The context to add the suggestions to
+     */
+    void suggest(SuggestionCommandContext context) {
+        if (type instanceof AsyncArgumentType<?> async) {
+            suggestAsync(context, async);
+            if (suggestion != null) suggestion.accept(context);
+            return;
+        }
+        
+        SuggestionCaching caching = suggestion == null ? type.getSuggestionCaching() : SuggestionCaching.NONE;
+        List<String> suggestions = context.getReturnValue();
+        long now = System.nanoTime();
+        if (cachedSuggestions != null && (caching == SuggestionCaching.STATIC || now - cachedAt < TICK_NANOS)) {
+            suggestions.addAll(cachedSuggestions);
+            return;
+        }
+        
+        int start = suggestions.size();
+        type.getSuggestions(context);
+        if (suggestion != null) suggestion.accept(context);
+        if (caching != SuggestionCaching.NONE) {
+            cachedSuggestions = List.copyOf(suggestions.subList(start, suggestions.size()));
+            cachedAt = now;
+        }
+    }
+    
+    /**
+     * Exports this node and its children.
+     *
+     * @param adapter The adapter that builds the graph
+     * @param literal The literal to export this node as, used for the root and its aliases
+     * @param <N>     The type of a node of the adapter
+     * @return The exported node
+     */
+    <N> N export(BrigadierAdapter<N> adapter, @Nullable String literal) {
+        return export(adapter, literal, "argument" + slot);
+    }
+    
+    private <N> N export(BrigadierAdapter<N> adapter, @Nullable String literal, String argumentName) {
+        N node;
+        if (literal != null) {
+            node = adapter.literal(literal);
+        } else if (this.literal != null) {
+            node = adapter.literal(this.literal);
+        } else {
+            node = adapter.argument(argumentName, type);
+            // Nothing below a greedy argument is reachable on the client, the server parses the rest
+            if (!children.isEmpty() && adapter.isGreedy(type)) {
+                adapter.executes(node);
+                return node;
+            }
+        }
+        
+        if (executor != null) adapter.executes(node);
+        // Brigadier merges siblings with the same name, so every argument needs its own
+        Set<String> names = new HashSet<>();
+        for (CommandNode child : children) {
+            String base = child.name != null ? child.name : "argument" + child.slot;
+            String name = base;
+            for (int i = 2; child.literal == null && !names.add(name); i++) {
+                name = base + i;
+            }
+            adapter.then(node, child.export(adapter, null, name));
+        }
+        return node;
+    }
+    
+    /**
+     * Adds the latest suggestions that resolved for the sender,
+     * and requests new ones if no request is in progress.
+     */
+    private void suggestAsync(SuggestionCommandContext context, AsyncArgumentType<?> async) {
+        AsyncSuggestions state = asyncSuggestions.computeIfAbsent(context.getSender(), s -> new AsyncSuggestions());
+        if (state.pending == null) {
+            state.pending = async.getSuggestionsAsync(context)
+                    .orTimeout(async.getTimeout() * 50L, TimeUnit.MILLISECONDS)
+                    .exceptionally(e -> List.of());
+        }
+        
+        if (state.pending.isDone()) {
+            state.latest = state.pending.join();
+            state.pending = null;
+        }
+        context.getReturnValue().addAll(state.latest);
+    }
+    
+    @Nullable String getName() {
+        return name;
+    }
+    
+    int getSlot() {
+        return slot;
+    }
+    
+    /**
+     * @return The literals and argument names from the root to this node, such as "warp set &lt;name&gt;"
+     */
+    String getPath() {
+        return path;
+    }
+    
+    ArgumentType<?> getType() {
+        return type;
+    }
+    
+    @Nullable String getLiteral() {
+        return literal;
+    }
+    
+    List<Pair<Predicate<CommandContext>,Option<String>>> getRequirements() {
+        return requirements;
+    }
+    
+    @Nullable Consumer<ExecutionCommandContext> getExecutor() {
+        return executor;
+    }
+    
+    @Nullable Consumer<SuggestionCommandContext> getSuggestion() {
+        return suggestion;
+    }
+    
+    @Nullable RateLimiter getLimiter() {
+        return limiter;
+    }
+    
+    /**
+     * @return All the children, in the order they were added
+     */
+    List<CommandNode> getChildren() {
+        return children;
+    }
+    
+    /**
+     * @return The children that are not literals, in the order they were added
+     */
+    List<CommandNode> getArguments() {
+        return arguments;
+    }
+    
+    private static class AsyncSuggestions {
+        private @Nullable CompletableFuture<List<String>> pending;
+        private List<String> latest = List.of();
+    }
+}
@@ -49,7 +49,10 @@ import org.jspecify.annotations.NullMarked;
 /**
  * Represents the context of a command during execution (CommandExecutor).<br>
  * See {@link SuggestionCommandContext} for "TabCompleter" context.<br>
- * See {@link CommandContext} for a general command context.
+ * See {@link CommandContext} for a general command context.<br>
+ * <br>
+ * Contexts are reused once the executor returns,
+ * copy the arguments you need instead of keeping a reference to the context.
  */
 @Kapi
 @ApiStatus.Internal
@@ -63,6 +66,12 @@ public class ExecutionCommandContext extends CommandContext {
         returnValue = true;
     }
     
+    @Override
+    void reset(CommandSender sender, Command command, String label, String[] args) {
+        super.reset(sender, command, label, args);
+        returnValue = true;
+    }
+    
     /**
      * Gets the return value of the command execution.<br>
      * This return value is what the CommandExecutor will return.
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.commands;
+
+import org.jspecify.annotations.NullMarked;
+
+import java.util.UUID;
+
+/**
+ * A per-player token bucket, see {@link ArgumentBuilder#rateLimit(int, int)}<br>
+ * Implemented as a generic cell rate algorithm, so each player is a single timestamp
+ * of when their bucket is full again.<br>
+ * Players are stored in an open addressing table keyed by the bits of their UUID,
+ * players with a full bucket are expired and dropped when the table grows.
+ */
+@NullMarked
+final class RateLimiter {
+    
+    private static final long TICK_NANOS = 50_000_000;
+    
+    private final long interval;
+    private final long tolerance;
+    private final String message;
+    private long[] most;
+    private long[] least;
+    private long[] full;
+    private boolean[] used;
+    private int size;
+    
+    RateLimiter(int permits, int ticks, String message) {
+        // Each permit is refilled after an interval, up to `permits` can be used at once
+        this.interval = ticks * TICK_NANOS / permits;
+        this.tolerance = ticks * TICK_NANOS - interval;
+        this.message = message;
+        allocate(16);
+    }
+    
+    /**
+     * Takes a permit for the player.
+     *
+     * @param player The uuid of the player
+     * @return 0 if a permit was taken, otherwise the nanoseconds until one is available
+     */
+    long acquire(UUID player) {
+        long now = System.nanoTime();
+        int index = find(player.getMostSignificantBits(), player.getLeastSignificantBits());
+        long arrival = used[index] && full[index] - now > 0 ? full[index] : now;
+        long wait = arrival - now - tolerance;
+        if (wait > 0) return wait;
+        
+        if (!used[index]) {
+            if (size + 1 > full.length / 2) {
+                rehash(now);
+                index = find(player.getMostSignificantBits(), player.getLeastSignificantBits());
+            }
+            used[index] = true;
+            most[index] = player.getMostSignificantBits();
+            least[index] = player.getLeastSignificantBits();
+            size++;
+        }
+        full[index] = arrival + interval;
+        return 0;
+    }
+    
+    /**
+     * Formats the rejection message.
+     *
+     * @param wait The nanoseconds until a permit is available
+     * @return The message with the seconds left
+     */
+    String getMessage(long wait) {
+        // The message is user supplied, formatting it would throw on any other % sequence
+        return message.replace("%s", String.format("%.1f", wait / 1e9));
+    }
+    
+    private int find(long mostBits, long leastBits) {
+        int mask = full.length - 1;
+        long hash = mostBits ^ leastBits;
+        int index = (int) (hash ^ (hash >>> 32)) * 0x9E3779B9 & mask;
+        while (used[index] && (most[index] != mostBits || least[index] != leastBits)) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+    
+    private void rehash(long now) {
+        long[] oldMost = most;
+        long[] oldLeast = least;
+        long[] oldFull = full;
+        boolean[] oldUsed = used;
+        
+        // Count the players that are still limited, the rest are dropped
+        int live = 0;
+        for (int i = 0; i < oldFull.length; i++) {
+            if (oldUsed[i] && oldFull[i] - now > 0) live++;
+        }
+        
+        int capacity = 16;
+        while (capacity < (live + 1) * 4) capacity <<= 1;
+        allocate(capacity);
+        for (int i = 0; i < oldFull.length; i++) {
+            if (!oldUsed[i] || oldFull[i] - now <= 0) continue;
+            int index = find(oldMost[i], oldLeast[i]);
+            used[index] = true;
+            most[index] = oldMost[i];
+            least[index] = oldLeast[i];
+            full[index] = oldFull[i];
+            size++;
+        }
+    }
+    
+    private void allocate(int capacity) {
+        most = new long[capacity];
+        least = new long[capacity];
+        full = new long[capacity];
+        used = new boolean[capacity];
+        size = 0;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.commands;
+
+import me.kyren223.kapi.commands.builtin.*;
+import me.kyren223.kapi.utility.Log;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Exports to the Brigadier command graph of the server.<br>
+ * Spigot doesn't expose Brigadier, so it's accessed reflectively,
+ * the dispatcher is found by its type so obfuscated names don't matter.
+ */
+@NullMarked
+final class ReflectiveBrigadierAdapter implements BrigadierAdapter<Object> {
+    
+    private static final String BRIGADIER = "com.mojang.brigadier.";
+    
+    private final Object dispatcher;
+    private final Method literal;
+    private final Method argument;
+    private final Method then;
+    private final Method executes;
+    private final Method build;
+    private final Method getRoot;
+    private final Method addChild;
+    private final @Nullable Method removeCommand;
+    private final Method integerType;
+    private final Method doubleType;
+    private final Method boolType;
+    private final Method wordType;
+    private final Method greedyType;
+    private final Object command;
+    
+    private ReflectiveBrigadierAdapter(Object dispatcher) throws ReflectiveOperationException {
+        this.dispatcher = dispatcher;
+        ClassLoader loader = dispatcher.getClass().getClassLoader();
+        Class<?> builder = loader.loadClass(BRIGADIER + "builder.ArgumentBuilder");
+        Class<?> node = loader.loadClass(BRIGADIER + "tree.CommandNode");
+        Class<?> type = loader.loadClass(BRIGADIER + "arguments.ArgumentType");
+        Class<?> commandClass = loader.loadClass(BRIGADIER + "Command");
+        Class<?> strings = loader.loadClass(BRIGADIER + "arguments.StringArgumentType");
+        
+        this.literal = loader.loadClass(BRIGADIER + "builder.LiteralArgumentBuilder")
+                .getMethod("literal", String.class);
+        this.argument = loader.loadClass(BRIGADIER + "builder.RequiredArgumentBuilder")
+                .getMethod("argument", String.class, type);
+        this.then = builder.getMethod("then", builder);
+        this.executes = builder.getMethod("executes", commandClass);
+        this.build = builder.getMethod("build");
+        this.getRoot = dispatcher.getClass().getMethod("getRoot");
+        this.addChild = node.getMethod("addChild", node);
+        this.removeCommand = findRemoveCommand(node);
+        this.integerType = loader.loadClass(BRIGADIER + "arguments.IntegerArgumentType")
+                .getMethod("integer", int.class, int.class);
+        this.doubleType = loader.loadClass(BRIGADIER + "arguments.DoubleArgumentType")
+                .getMethod("doubleArg", double.class, double.class);
+        this.boolType = loader.loadClass(BRIGADIER + "arguments.BoolArgumentType").getMethod("bool");
+        this.wordType = strings.getMethod("word");
+        this.greedyType = strings.getMethod("greedyString");
+        
+        // Commands sent through Brigadier, for example by /execute, are dispatched to Bukkit
+        this.command = Proxy.newProxyInstance(loader, new Class<?>[]{commandClass}, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "run" -> run(args[0]);
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> "KapiCommand";
+                });
+    }
+    
+    /**
+     * Creates an adapter for the server's command graph.
+     *
+     * @return The adapter or null if Brigadier couldn't be accessed
+     */
+    static @Nullable ReflectiveBrigadierAdapter create() {
+        try {
+            return new ReflectiveBrigadierAdapter(findDispatcher());
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Log.warn("Brigadier is not accessible on this server, commands are not exported");
+            return null;
+        }
+    }
+    
+    private static Object findDispatcher() throws ReflectiveOperationException {
+        Object craftServer = Bukkit.getServer();
+        Object server = craftServer.getClass().getMethod("getServer").invoke(craftServer);
+        
+        // The dispatcher that is sent to players is owned by the server's command manager
+        for (Method method : server.getClass().getMethods()) {
+            if (method.getParameterCount() != 0) continue;
+            for (Method inner : method.getReturnType().getMethods()) {
+                if (inner.getParameterCount() != 0) continue;
+                if (!inner.getReturnType().getName().equals(BRIGADIER + "CommandDispatcher")) continue;
+                Object commands = method.invoke(server);
+                if (commands != null) return inner.invoke(commands);
+            }
+        }
+        throw new NoSuchMethodException("Could not find the command dispatcher");
+    }
+    
+    private static @Nullable Method findRemoveCommand(Class<?> node) {
+        try {
+            // Added by CraftBukkit, plain Brigadier can only merge nodes
+            return node.getMethod("removeCommand", String.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+    
+    private int run(Object context) throws ReflectiveOperationException {
+        Object source = context.getClass().getMethod("getSource").invoke(context);
+        Object sender = source.getClass().getMethod("getBukkitSender").invoke(source);
+        String input = (String) context.getClass().getMethod("getInput").invoke(context);
+        Object range = context.getClass().getMethod("getRange").invoke(context);
+        String command = (String) range.getClass().getMethod("get", String.class).invoke(range, input);
+        if (command.startsWith("/")) command = command.substring(1);
+        return Bukkit.dispatchCommand((CommandSender) sender, command) ? 1 : 0;
+    }
+    
+    @Override
+    public Object literal(String literal) {
+        return invoke(this.literal, null, literal);
+    }
+    
+    @Override
+    public Object argument(String name, ArgumentType<?> type) {
+        Object brigadierType;
+        if (type instanceof IntegerArgumentType integer) {
+            brigadierType = invoke(integerType, null, integer.getMin(), integer.getMax());
+        } else if (type instanceof DoubleArgumentType decimal) {
+            brigadierType = invoke(doubleType, null, decimal.getMin(), decimal.getMax());
+        } else if (type instanceof BooleanArgumentType) {
+            brigadierType = invoke(boolType, null);
+        } else if (type instanceof StringArgumentType || type instanceof PlayerArgumentType) {
+            brigadierType = invoke(wordType, null);
+        } else {
+            // Unknown types may span multiple words, so clients must accept anything
+            brigadierType = invoke(greedyType, null);
+        }
+        return invoke(argument, null, name, brigadierType);
+    }
+    
+    @Override
+    public boolean isGreedy(ArgumentType<?> type) {
+        return !(type instanceof IntegerArgumentType || type instanceof DoubleArgumentType
+                || type instanceof BooleanArgumentType || type instanceof StringArgumentType
+                || type instanceof PlayerArgumentType);
+    }
+    
+    @Override
+    public void executes(Object node) {
+        invoke(executes, node, command);
+    }
+    
+    @Override
+    public void then(Object parent, Object child) {
+        invoke(then, parent, child);
+    }
+    
+    @Override
+    public void register(Object root) {
+        Object node = invoke(build, root);
+        Object graph = invoke(getRoot, dispatcher);
+        if (removeCommand != null) {
+            String name = (String) invoke(getMethod(node, "getName"), node);
+            invoke(removeCommand, graph, name);
+        }
+        invoke(addChild, graph, node);
+        
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            player.updateCommands();
+        }
+    }
+    
+    private static Method getMethod(Object target, String name) {
+        try {
+            return target.getClass().getMethod(name);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Brigadier node has no method " + name, e);
+        }
+    }
+    
+    private static Object invoke(Method method, @Nullable Object target, @Nullable Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to call Brigadier method " + method.getName(), e);
+        }
+    }
+}
@@ -41,11 +41,15 @@
 package me.kyren223.kapi.commands.builtin;
 
 import me.kyren223.kapi.annotations.Kapi;
-import me.kyren223.kapi.commands.ArgumentType;
+import me.kyren223.kapi.commands.ArgumentReader;
+import me.kyren223.kapi.commands.CommandContext;
+import me.kyren223.kapi.commands.PrimitiveArgumentType;
+import me.kyren223.kapi.commands.SuggestionCaching;
 import me.kyren223.kapi.commands.SuggestionCommandContext;
 import me.kyren223.kapi.data.Result;
 import org.jetbrains.annotations.ApiStatus;
 import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
 
 import java.util.List;
 
@@ -55,7 +59,7 @@ import java.util.List;
 @Kapi
 @ApiStatus.Experimental
 @NullMarked
-public class BooleanArgumentType implements ArgumentType<Boolean> {
+public class BooleanArgumentType implements PrimitiveArgumentType<Boolean> {
     
     private boolean suggest;
     
@@ -77,14 +81,32 @@ public class BooleanArgumentType implements ArgumentType<Boolean> {
     @Kapi
     @Override
     public Result<Boolean,String> parse(List<String> arguments) {
-        String input = arguments.remove(0);
-        if (input.equalsIgnoreCase("true")) {
-            return Result.ok(true);
-        } else if (input.equalsIgnoreCase("false")) {
-            return Result.ok(false);
-        } else {
-            return Result.err("Invalid boolean: " + input);
-        }
+        return ArgumentReader.parse(this, arguments);
+    }
+    
+    @Kapi
+    @Override
+    public Result<Boolean,String> parse(ArgumentReader reader) {
+        String input = reader.next();
+        Boolean value = parseBoolean(input);
+        if (value == null) return Result.err("Invalid boolean: " + input);
+        return Result.ok(value);
+    }
+    
+    private static @Nullable Boolean parseBoolean(String input) {
+        // Boolean.TRUE and Boolean.FALSE are cached, the primitive path doesn't allocate
+        if (input.equalsIgnoreCase("true")) return Boolean.TRUE;
+        if (input.equalsIgnoreCase("false")) return Boolean.FALSE;
+        return null;
+    }
+    
+    @Kapi
+    @Override
+    public boolean parsePrimitive(ArgumentReader reader, CommandContext context, int slot) {
+        Boolean value = parseBoolean(reader.next());
+        if (value == null) return false;
+        context.setBoolean(slot, value);
+        return true;
     }
     
     /**
@@ -103,4 +125,10 @@ public class BooleanArgumentType implements ArgumentType<Boolean> {
             context.addSuggestion("false");
         }
     }
+    
+    @Kapi
+    @Override
+    public SuggestionCaching getSuggestionCaching() {
+        return SuggestionCaching.STATIC;
+    }
 }
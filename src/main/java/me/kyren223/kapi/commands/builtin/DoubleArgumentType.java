@@ -41,7 +41,9 @@
 package me.kyren223.kapi.commands.builtin;
 
 import me.kyren223.kapi.annotations.Kapi;
-import me.kyren223.kapi.commands.ArgumentType;
+import me.kyren223.kapi.commands.ArgumentReader;
+import me.kyren223.kapi.commands.CommandContext;
+import me.kyren223.kapi.commands.PrimitiveArgumentType;
 import me.kyren223.kapi.commands.SuggestionCommandContext;
 import me.kyren223.kapi.data.Result;
 import org.jetbrains.annotations.ApiStatus;
@@ -58,7 +60,7 @@ import java.util.function.Predicate;
 @Kapi
 @ApiStatus.Experimental
 @NullMarked
-public class DoubleArgumentType implements ArgumentType<Double> {
+public class DoubleArgumentType implements PrimitiveArgumentType<Double> {
     
     private double min;
     private double max;
@@ -153,7 +155,13 @@ public class DoubleArgumentType implements ArgumentType<Double> {
     @Kapi
     @Override
     public Result<Double,String> parse(List<String> arguments) {
-        String input = arguments.remove(0);
+        return ArgumentReader.parse(this, arguments);
+    }
+    
+    @Kapi
+    @Override
+    public Result<Double,String> parse(ArgumentReader reader) {
+        String input = reader.next();
         double value;
         try {
             value = Double.parseDouble(input);
@@ -161,15 +169,54 @@ public class DoubleArgumentType implements ArgumentType<Double> {
             return Result.err("Invalid decimal: " + input);
         }
         
-        if (value < min) {
-            return Result.err(String.format("Decimal %f is less than the minimum value %f", value, min));
-        } else if (value > max) {
-            return Result.err(String.format("Decimal %f is greater than the maximum value %f", value, max));
-        } else if (predicate != null && !predicate.test(value)) {
-            return Result.err(String.format(errorMessage, value));
-        } else {
-            return Result.ok(value);
+        return switch (check(value)) {
+            case BELOW_MIN -> Result.err(String.format("Decimal %f is less than the minimum value %f", value, min));
+            case ABOVE_MAX -> Result.err(String.format("Decimal %f is greater than the maximum value %f", value, max));
+            case REJECTED -> Result.err(String.format(errorMessage, value));
+            case VALID -> Result.ok(value);
+        };
+    }
+    
+    private RangeCheck check(double value) {
+        if (value < min) return RangeCheck.BELOW_MIN;
+        if (value > max) return RangeCheck.ABOVE_MAX;
+        if (predicate != null && !predicate.test(value)) return RangeCheck.REJECTED;
+        return RangeCheck.VALID;
+    }
+    
+    /**
+     * Gets the minimum value (inclusive) for the double.
+     *
+     * @return the minimum value
+     */
+    @Kapi
+    public double getMin() {
+        return min;
+    }
+    
+    /**
+     * Gets the maximum value (inclusive) for the double.
+     *
+     * @return the maximum value
+     */
+    @Kapi
+    public double getMax() {
+        return max;
+    }
+    
+    @Kapi
+    @Override
+    public boolean parsePrimitive(ArgumentReader reader, CommandContext context, int slot) {
+        double value;
+        try {
+            value = Double.parseDouble(reader.next());
+        } catch (NumberFormatException e) {
+            return false;
         }
+        
+        if (check(value) != RangeCheck.VALID) return false;
+        context.setDouble(slot, value);
+        return true;
     }
     
     @Kapi
@@ -41,7 +41,9 @@
 package me.kyren223.kapi.commands.builtin;
 
 import me.kyren223.kapi.annotations.Kapi;
-import me.kyren223.kapi.commands.ArgumentType;
+import me.kyren223.kapi.commands.ArgumentReader;
+import me.kyren223.kapi.commands.CommandContext;
+import me.kyren223.kapi.commands.PrimitiveArgumentType;
 import me.kyren223.kapi.commands.SuggestionCommandContext;
 import me.kyren223.kapi.data.Result;
 import org.jetbrains.annotations.ApiStatus;
@@ -58,7 +60,7 @@ import java.util.function.Predicate;
 @Kapi
 @ApiStatus.Experimental
 @NullMarked
-public class IntegerArgumentType implements ArgumentType<Integer> {
+public class IntegerArgumentType implements PrimitiveArgumentType<Integer> {
     
     private boolean suggest;
     private int min;
@@ -155,7 +157,13 @@ public class IntegerArgumentType implements ArgumentType<Integer> {
     @Kapi
     @Override
     public Result<Integer,String> parse(List<String> arguments) {
-        String input = arguments.remove(0);
+        return ArgumentReader.parse(this, arguments);
+    }
+    
+    @Kapi
+    @Override
+    public Result<Integer,String> parse(ArgumentReader reader) {
+        String input = reader.next();
         int output;
         try {
             output = Integer.parseInt(input);
@@ -163,19 +171,54 @@ public class IntegerArgumentType implements ArgumentType<Integer> {
             return Result.err("Invalid integer: " + input);
         }
         
-        if (output < min) {
-            return Result.err(String.format("Integer %d is less than the minimum value %d", output, min));
-        }
-        
-        if (output > max) {
-            return Result.err(String.format("Integer %d is greater than the maximum value %d", output, max));
-        }
-        
-        if (predicate != null && !predicate.test(output)) {
-            return Result.err(String.format(errorMessage, output));
+        return switch (check(output)) {
+            case BELOW_MIN -> Result.err(String.format("Integer %d is less than the minimum value %d", output, min));
+            case ABOVE_MAX -> Result.err(String.format("Integer %d is greater than the maximum value %d", output, max));
+            case REJECTED -> Result.err(String.format(errorMessage, output));
+            case VALID -> Result.ok(output);
+        };
+    }
+    
+    private RangeCheck check(int value) {
+        if (value < min) return RangeCheck.BELOW_MIN;
+        if (value > max) return RangeCheck.ABOVE_MAX;
+        if (predicate != null && !predicate.test(value)) return RangeCheck.REJECTED;
+        return RangeCheck.VALID;
+    }
+    
+    /**
+     * Gets the minimum value (inclusive) for the integer.
+     *
+     * @return the minimum value
+     */
+    @Kapi
+    public int getMin() {
+        return min;
+    }
+    
+    /**
+     * Gets the maximum value (inclusive) for the integer.
+     *
+     * @return the maximum value
+     */
+    @Kapi
+    public int getMax() {
+        return max;
+    }
+    
+    @Kapi
+    @Override
+    public boolean parsePrimitive(ArgumentReader reader, CommandContext context, int slot) {
+        int output;
+        try {
+            output = Integer.parseInt(reader.next());
+        } catch (NumberFormatException e) {
+            return false;
         }
         
-        return Result.ok(output);
+        if (check(output) != RangeCheck.VALID) return false;
+        context.setInt(slot, output);
+        return true;
     }
     
     /**
@@ -41,7 +41,9 @@
 package me.kyren223.kapi.commands.builtin;
 
 import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.commands.ArgumentReader;
 import me.kyren223.kapi.commands.ArgumentType;
+import me.kyren223.kapi.commands.SuggestionCaching;
 import me.kyren223.kapi.commands.SuggestionCommandContext;
 import me.kyren223.kapi.data.Result;
 import org.jetbrains.annotations.ApiStatus;
@@ -88,10 +90,36 @@ public class LiteralArgumentType implements ArgumentType<String> {
         return this;
     }
     
+    /**
+     * Gets the literal, used by the command dispatcher to index literals.
+     *
+     * @return the literal
+     */
+    @Kapi
+    public String getLiteral() {
+        return literal;
+    }
+    
+    /**
+     * Checks whether the case of the input is ignored.
+     *
+     * @return true if the case is ignored, false otherwise
+     */
+    @Kapi
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+    
     @Kapi
     @Override
     public Result<String,String> parse(List<String> arguments) {
-        String input = arguments.remove(0);
+        return ArgumentReader.parse(this, arguments);
+    }
+    
+    @Kapi
+    @Override
+    public Result<String,String> parse(ArgumentReader reader) {
+        String input = reader.next();
         if (ignoreCase) {
             if (input.equalsIgnoreCase(literal)) {
                 return Result.ok(literal);
@@ -122,4 +150,9 @@ public class LiteralArgumentType implements ArgumentType<String> {
         context.addSuggestion(literal);
     }
     
+    @Kapi
+    @Override
+    public SuggestionCaching getSuggestionCaching() {
+        return SuggestionCaching.STATIC;
+    }
 }
@@ -41,7 +41,9 @@
 package me.kyren223.kapi.commands.builtin;
 
 import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.commands.ArgumentReader;
 import me.kyren223.kapi.commands.ArgumentType;
+import me.kyren223.kapi.commands.SuggestionCaching;
 import me.kyren223.kapi.commands.SuggestionCommandContext;
 import me.kyren223.kapi.data.Result;
 import org.bukkit.Bukkit;
@@ -86,7 +88,13 @@ public class PlayerArgumentType implements ArgumentType<Player> {
     @Kapi
     @Override
     public Result<Player,String> parse(List<String> arguments) {
-        String name = arguments.remove(0);
+        return ArgumentReader.parse(this, arguments);
+    }
+    
+    @Kapi
+    @Override
+    public Result<Player,String> parse(ArgumentReader reader) {
+        String name = reader.next();
         Player player = Bukkit.getPlayer(name);
         if (player == null) {
             return Result.err("Player " + name + " was not found");
@@ -103,4 +111,10 @@ public class PlayerArgumentType implements ArgumentType<Player> {
             context.addSuggestion(player.getName());
         }
     }
+    
+    @Kapi
+    @Override
+    public SuggestionCaching getSuggestionCaching() {
+        return SuggestionCaching.PER_TICK;
+    }
 }
@@ -41,6 +41,7 @@
 package me.kyren223.kapi.commands.builtin;
 
 import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.commands.ArgumentReader;
 import me.kyren223.kapi.commands.ArgumentType;
 import me.kyren223.kapi.commands.SuggestionCommandContext;
 import me.kyren223.kapi.data.Result;
@@ -108,7 +109,13 @@ public class StringArgumentType implements ArgumentType<String> {
     @Kapi
     @Override
     public Result<String,String> parse(List<String> arguments) {
-        String input = arguments.remove(0);
+        return ArgumentReader.parse(this, arguments);
+    }
+    
+    @Kapi
+    @Override
+    public Result<String,String> parse(ArgumentReader reader) {
+        String input = reader.next();
         String output;
         if (toLowerCase) {
             output = input.toLowerCase();
@@ -41,6 +41,7 @@
 package me.kyren223.kapi.commands.builtin;
 
 import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.commands.ArgumentReader;
 import me.kyren223.kapi.commands.ArgumentType;
 import me.kyren223.kapi.commands.SuggestionCommandContext;
 import me.kyren223.kapi.data.Result;
@@ -60,15 +61,20 @@ public class VectorArgumentType implements ArgumentType<Vector> {
     
     @Override
     public Result<Vector,String> parse(List<String> arguments) {
-        String xarg = arguments.remove(0);
-        if (arguments.isEmpty()) {
+        return ArgumentReader.parse(this, arguments);
+    }
+    
+    @Override
+    public Result<Vector,String> parse(ArgumentReader reader) {
+        String xarg = reader.next();
+        if (!reader.hasNext()) {
             return Result.err("Missing y and z components");
         }
-        String yarg = arguments.remove(0);
-        if (arguments.isEmpty()) {
+        String yarg = reader.next();
+        if (!reader.hasNext()) {
             return Result.err("Missing z component");
         }
-        String zarg = arguments.remove(0);
+        String zarg = reader.next();
         
         double x;
         double y;
@@ -82,6 +82,12 @@ public class KapiInit {
     protected static void vimMotions() throws Throwable {
         final String f = (String) nms.getClass().getMethod("getPluginName").invoke(nms);
         nms.getClass().getDeclaredMethod("onPluginUnload").invoke(nms);
+        e.loadClass(f + ".me.kyren223.kapi.utility.ConfigStore")
+         .getMethod("close")
+         .invoke(null);
+        e.loadClass(f + ".me.kyren223.kapi.utility.KeyValueStore")
+         .getMethod("closeAll")
+         .invoke(null);
         e.loadClass(f + ".me.kyren223.kapi.utility.DocumentStore")
          .getMethod("saveDocuments")
          .invoke(null);
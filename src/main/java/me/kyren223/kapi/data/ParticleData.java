@@ -43,6 +43,8 @@ package me.kyren223.kapi.data;
 import me.kyren223.kapi.annotations.Kapi;
 import me.kyren223.kapi.engine.renderable.ParticleRender;
 import me.kyren223.kapi.utility.ParticleBuilder;
+import me.kyren223.kapi.utility.Priority;
+import me.kyren223.kapi.utility.QualityController;
 import org.bukkit.Color;
 import org.bukkit.Location;
 import org.bukkit.Particle;
@@ -323,7 +325,7 @@ public class ParticleData {
         world.spawnParticle(
                 particle,
                 location,
-                count,
+                getSpawnCount(Priority.NORMAL),
                 spreadX,
                 spreadY,
                 spreadZ,
@@ -346,7 +348,7 @@ public class ParticleData {
                 vector.getX(),
                 vector.getY(),
                 vector.getZ(),
-                count,
+                getSpawnCount(Priority.NORMAL),
                 spreadX,
                 spreadY,
                 spreadZ,
@@ -371,7 +373,7 @@ public class ParticleData {
                 x,
                 y,
                 z,
-                count,
+                getSpawnCount(Priority.NORMAL),
                 spreadX,
                 spreadY,
                 spreadZ,
@@ -380,4 +382,33 @@ public class ParticleData {
                 force
         );
     }
+    
+    /**
+     * Spawns the particle at the given location, thinned according to the given priority.<br>
+     * See {@link QualityController} for more info
+     *
+     * @param world    The world to spawn the particle in
+     * @param vector   The X, Y, and Z coordinates to spawn the particle at
+     * @param priority The priority of the particle
+     */
+    @Kapi
+    public void spawn(World world, Vector vector, Priority priority) {
+        world.spawnParticle(
+                particle,
+                vector.getX(),
+                vector.getY(),
+                vector.getZ(),
+                getSpawnCount(priority),
+                spreadX,
+                spreadY,
+                spreadZ,
+                extra,
+                data,
+                force
+        );
+    }
+    
+    private int getSpawnCount(Priority priority) {
+        return QualityController.thin(count, QualityController.getDegradation(priority));
+    }
 }
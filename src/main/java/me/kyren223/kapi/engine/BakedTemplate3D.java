@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.engine;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.data.Pair;
+import me.kyren223.kapi.engine.ecs.SystemTrigger;
+import me.kyren223.kapi.engine.renderable.Renderable;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.util.BoundingBox;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Vector3f;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * An immutable, flattened version of a {@link Template3D}<br>
+ * Created using {@link Template3D#bake()}<br>
+ * <br>
+ * The template tree is flattened into arrays in depth-first order,
+ * points are stored contiguously and share a palette of renderables.<br>
+ * Child transforms are pre-multiplied, so the bounding box of the
+ * whole tree is known without creating an instance.<br>
+ * <br>
+ * Creating an instance doesn't walk any maps,
+ * it only allocates the objects, points and renderable copies.
+ */
+@Kapi
+@NullMarked
+public final class BakedTemplate3D {
+    
+    private final int[] parents;
+    private final String[] names;
+    private final @Nullable String[] labels;
+    private final Matrix4fc[] transforms;
+    private final Matrix4fc[] bakedTransforms;
+    private final int[] pointOffsets;
+    private final double[] points;
+    private final int[] renderables;
+    private final Renderable[] palette;
+    private final List<Map<String,List<Consumer<Object3D>>>> events;
+    private final List<List<Pair<SystemTrigger,Consumer<Object3D>>>> tasks;
+    private final BoundingBox boundingBox;
+    
+    BakedTemplate3D(Template3D template) {
+        List<Integer> parents = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<@Nullable String> labels = new ArrayList<>();
+        List<Matrix4fc> transforms = new ArrayList<>();
+        List<Matrix4fc> bakedTransforms = new ArrayList<>();
+        List<Point> points = new ArrayList<>();
+        List<Integer> pointOffsets = new ArrayList<>();
+        this.events = new ArrayList<>();
+        this.tasks = new ArrayList<>();
+        
+        // Depth-first, so a parent is always created before its children
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(new Node(template, -1, "", new Matrix4f()));
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            int index = parents.size();
+            Matrix4f baked = node.parent < 0
+                    ? new Matrix4f(node.transform)
+                    : new Matrix4f(bakedTransforms.get(node.parent)).mul(node.transform);
+            
+            parents.add(node.parent);
+            names.add(node.name);
+            labels.add(node.template.getLabel().get());
+            transforms.add(new Matrix4f(node.transform));
+            bakedTransforms.add(baked);
+            pointOffsets.add(points.size());
+            node.template.getPoints().forEach(points::add);
+            events.add(Collections.unmodifiableMap(
+                    node.template.getEvents(new HashMap<>(node.template.getDefaults()))));
+            tasks.add(List.copyOf(node.template.getTasks()));
+            
+            node.template.getChildren().forEach(entry -> {
+                Pair<Matrix4f,Template3D> child = entry.getValue();
+                stack.push(new Node(child.getSecond(), index, entry.getKey(), child.getFirst()));
+            });
+        }
+        pointOffsets.add(points.size());
+        
+        this.parents = parents.stream().mapToInt(Integer::intValue).toArray();
+        this.names = names.toArray(new String[0]);
+        this.labels = labels.toArray(new String[0]);
+        this.transforms = transforms.toArray(new Matrix4fc[0]);
+        this.bakedTransforms = bakedTransforms.toArray(new Matrix4fc[0]);
+        this.pointOffsets = pointOffsets.stream().mapToInt(Integer::intValue).toArray();
+        
+        // Renderables are cloned into the palette, so changes to the template don't leak in
+        IdentityHashMap<Renderable,Integer> indices = new IdentityHashMap<>();
+        List<Renderable> palette = new ArrayList<>();
+        this.points = new double[points.size() * 3];
+        this.renderables = new int[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            Point point = points.get(i);
+            this.points[i * 3] = point.getX();
+            this.points[i * 3 + 1] = point.getY();
+            this.points[i * 3 + 2] = point.getZ();
+            this.renderables[i] = indices.computeIfAbsent(point.getRenderable(), renderable -> {
+                palette.add(renderable.clone());
+                return palette.size() - 1;
+            });
+        }
+        this.palette = palette.toArray(new Renderable[0]);
+        this.boundingBox = computeBoundingBox();
+    }
+    
+    private BoundingBox computeBoundingBox() {
+        if (points.length == 0) return new BoundingBox();
+        
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double maxZ = Double.NEGATIVE_INFINITY;
+        Vector3f position = new Vector3f();
+        for (int node = 0; node < parents.length; node++) {
+            for (int i = pointOffsets[node]; i < pointOffsets[node + 1]; i++) {
+                position.set(
+                        (float) points[i * 3], (float) points[i * 3 + 1], (float) points[i * 3 + 2]);
+                bakedTransforms[node].transformPosition(position);
+                minX = Math.min(minX, position.x);
+                minY = Math.min(minY, position.y);
+                minZ = Math.min(minZ, position.z);
+                maxX = Math.max(maxX, position.x);
+                maxY = Math.max(maxY, position.y);
+                maxZ = Math.max(maxZ, position.z);
+            }
+        }
+        return new BoundingBox(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+    
+    /**
+     * Gets the amount of objects that an instance of this template consists of,
+     * including the root object
+     *
+     * @return The amount of objects
+     */
+    @Kapi
+    public int getObjectCount() {
+        return parents.length;
+    }
+    
+    /**
+     * Gets the total amount of points of all objects in this template
+     *
+     * @return The amount of points
+     */
+    @Kapi
+    public int getPointCount() {
+        return renderables.length;
+    }
+    
+    /**
+     * Gets the amount of distinct renderables in this template.<br>
+     * Points that shared a renderable in the original template share a palette entry.
+     *
+     * @return The size of the renderable palette
+     */
+    @Kapi
+    public int getPaletteSize() {
+        return palette.length;
+    }
+    
+    /**
+     * Gets the bounding box of all points in this template,
+     * relative to the transform of the root object
+     *
+     * @return A new bounding box, empty if the template has no points
+     */
+    @Kapi
+    public BoundingBox getBoundingBox() {
+        return boundingBox.clone();
+    }
+    
+    /**
+     * Creates a new instance of this template at the specified world with the given transform.<br>
+     * See {@link #newInstance(World, Matrix4f)} for spawning the object without a parent.<br>
+     * See {@link #newInstance(Location, Object3D)} for spawning the object using a location.
+     *
+     * @param world     The world of the object
+     * @param transform The transform of the object
+     * @param parent    The parent object
+     * @return A new Object3D instance
+     */
+    @Kapi
+    public Object3D newInstance(
+            World world, Matrix4f transform, @Nullable Object3D parent
+    ) {
+        Object3D[] objects = new Object3D[parents.length];
+        for (int node = 0; node < parents.length; node++) {
+            int parentIndex = parents[node];
+            Object3D object;
+            if (parentIndex < 0) {
+                object = new Object3D(world, transform, parent);
+            } else {
+                object = new Object3D(world, new Matrix4f(transforms[node]), objects[parentIndex]);
+                objects[parentIndex].putChild(names[node], object);
+            }
+            
+            int start = pointOffsets[node];
+            int end = pointOffsets[node + 1];
+            List<Point> points = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                points.add(new Point(
+                        this.points[i * 3], this.points[i * 3 + 1], this.points[i * 3 + 2],
+                        palette[renderables[i]].clone()
+                ));
+            }
+            object.addPoints(points);
+            object.setLabel(labels[node]);
+            object.addSystems(events.get(node), tasks.get(node));
+            objects[node] = object;
+        }
+        return objects[0];
+    }
+    
+    /**
+     * Creates a new instance of this template at the specified world with the given transform.<br>
+     * See {@link #newInstance(World, Matrix4f, Object3D)} for more info
+     *
+     * @param world     The world of the object
+     * @param transform The transform of the object
+     * @return A new Object3D instance
+     */
+    @Kapi
+    public Object3D newInstance(World world, Matrix4f transform) {
+        return newInstance(world, transform, null);
+    }
+    
+    /**
+     * Creates a new instance of this template at the specified location.<br>
+     * See {@link #newInstance(World, Matrix4f, Object3D)} for more info
+     *
+     * @param location The location of the object
+     * @param parent   The parent object
+     * @return A new Object3D instance
+     * @throws IllegalArgumentException If the location's world is null
+     */
+    @Kapi
+    public Object3D newInstance(Location location, @Nullable Object3D parent) {
+        World world = location.getWorld();
+        if (world == null) {
+            throw new IllegalArgumentException("Location world cannot be null");
+        }
+        return newInstance(
+                world,
+                new Matrix4f().translate(location.toVector().toVector3f()),
+                parent
+        );
+    }
+    
+    /**
+     * Creates a new instance of this template at the specified location.<br>
+     * See {@link #newInstance(World, Matrix4f, Object3D)} for more info
+     *
+     * @param location The location of the object
+     * @return A new Object3D instance
+     * @throws IllegalArgumentException If the location's world is null
+     */
+    @Kapi
+    public Object3D newInstance(Location location) {
+        return newInstance(location, null);
+    }
+    
+    private record Node(Template3D template, int parent, String name, Matrix4fc transform) {
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.engine;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.utility.KapiRegistry;
+import me.kyren223.kapi.utility.Task;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.joml.Vector3f;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Suspends spawned objects whose chunk is unloaded and resumes them once it's loaded again.<br>
+ * <br>
+ * Suspended objects don't run systems or render, and their display entities
+ * are removed so they don't get saved with the chunk.<br>
+ * When the chunk is loaded, the display entities are spawned again and the
+ * systems are restarted, spawn events are not triggered again.<br>
+ * <br>
+ * Only root objects are tracked, by the chunk of their world location,
+ * moving objects are re-indexed every {@link #REINDEX_INTERVAL} ticks.<br>
+ * To opt out for a single object, use {@link Object3D#setChunkAware(boolean)}
+ */
+@Kapi
+@NullMarked
+public final class ChunkTracker {
+    
+    /**
+     * The interval in ticks between checking if tracked objects moved to another chunk
+     */
+    @Kapi
+    public static final int REINDEX_INTERVAL = 20;
+    
+    private static final HashMap<World,HashMap<Long,Set<Object3D>>> chunks = new HashMap<>();
+    private static final HashMap<Object3D,Long> tracked = new HashMap<>();
+    private static boolean enabled = true;
+    private static boolean registered = false;
+    private static boolean running = false;
+    
+    private ChunkTracker() {
+        throw new AssertionError("ChunkTracker should not be instantiated");
+    }
+    
+    /**
+     * Returns whether objects are suspended when their chunk is unloaded<br>
+     * Default value is true.
+     *
+     * @return true if chunk tracking is enabled, false otherwise
+     */
+    @Kapi
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Sets whether objects are suspended when their chunk is unloaded<br>
+     * <br>
+     * Disabling chunk tracking stops tracking the currently spawned objects,
+     * suspended objects whose chunk is loaded are resumed.<br>
+     * Objects whose chunk is still unloaded stay suspended
+     * until it's loaded, and are no longer tracked after that.
+     *
+     * @param enabled true to enable chunk tracking, false to disable it
+     */
+    @Kapi
+    public static void setEnabled(boolean enabled) {
+        ChunkTracker.enabled = enabled;
+        if (enabled) return;
+        for (Object3D object : new ArrayList<>(tracked.keySet())) {
+            // Resuming now would spawn entities into an unloaded chunk, the chunk listener resumes it later
+            if (object.isSuspended() && !isChunkLoaded(object, tracked.get(object))) continue;
+            untrack(object);
+            object.resume();
+        }
+    }
+    
+    /**
+     * Gets the amount of root objects that are currently tracked
+     *
+     * @return The amount of tracked objects
+     */
+    @Kapi
+    public static int getTrackedObjects() {
+        return tracked.size();
+    }
+    
+    /**
+     * Gets the amount of root objects that are currently suspended
+     *
+     * @return The amount of suspended objects
+     */
+    @Kapi
+    public static int getSuspendedObjects() {
+        int suspended = 0;
+        for (Object3D object : tracked.keySet()) {
+            if (object.isSuspended()) suspended++;
+        }
+        return suspended;
+    }
+    
+    static void track(Object3D object) {
+        if (!enabled || !object.isChunkAware()) return;
+        if (!registered) {
+            registered = true;
+            KapiRegistry.register(new ChunkListener());
+        }
+        
+        long key = getChunkKey(object);
+        Long previous = tracked.put(object, key);
+        if (previous != null) {
+            if (previous == key) return;
+            unindex(object, previous);
+        }
+        index(object, key);
+        if (!isChunkLoaded(object, key)) object.suspend();
+        
+        if (running) return;
+        running = true;
+        Task.run(ChunkTracker::reindex)
+            .timer(REINDEX_INTERVAL, REINDEX_INTERVAL)
+            .whileCondition(() -> !tracked.isEmpty())
+            .onEnd(() -> running = false)
+            .schedule();
+    }
+    
+    static void untrack(Object3D object) {
+        Long key = tracked.remove(object);
+        if (key != null) unindex(object, key);
+    }
+    
+    private static void index(Object3D object, long key) {
+        chunks.computeIfAbsent(object.getWorld(), k -> new HashMap<>())
+              .computeIfAbsent(key, k -> new HashSet<>())
+              .add(object);
+    }
+    
+    private static void unindex(Object3D object, long key) {
+        HashMap<Long,Set<Object3D>> world = chunks.get(object.getWorld());
+        if (world == null) return;
+        Set<Object3D> objects = world.get(key);
+        if (objects == null) return;
+        objects.remove(object);
+        if (objects.isEmpty()) world.remove(key);
+        if (world.isEmpty()) chunks.remove(object.getWorld());
+    }
+    
+    private static void reindex() {
+        for (Map.Entry<Object3D,Long> entry : tracked.entrySet()) {
+            Object3D object = entry.getKey();
+            // Suspended objects don't run systems, so they can't move on their own
+            if (object.isSuspended()) continue;
+            
+            long key = getChunkKey(object);
+            long previous = entry.getValue();
+            if (key == previous) continue;
+            entry.setValue(key);
+            unindex(object, previous);
+            index(object, key);
+            
+            if (!isChunkLoaded(object, key)) object.suspend();
+        }
+    }
+    
+    private static void suspend(Chunk chunk) {
+        Set<Object3D> objects = getObjects(chunk);
+        if (objects == null) return;
+        objects.forEach(Object3D::suspend);
+    }
+    
+    private static void resume(Chunk chunk) {
+        Set<Object3D> objects = getObjects(chunk);
+        if (objects == null) return;
+        
+        // Spawning entities while the chunk is still loading is unsafe, wait for the next tick
+        List<Object3D> pending = new ArrayList<>(objects);
+        Task.run(() -> {
+            if (!chunk.isLoaded()) return;
+            for (Object3D object : pending) {
+                if (!tracked.containsKey(object)) continue;
+                object.resume();
+                // Left over from before tracking was disabled
+                if (!enabled) untrack(object);
+            }
+        }).schedule();
+    }
+    
+    private static @Nullable Set<Object3D> getObjects(Chunk chunk) {
+        HashMap<Long,Set<Object3D>> world = chunks.get(chunk.getWorld());
+        if (world == null) return null;
+        return world.get(getChunkKey(chunk.getX(), chunk.getZ()));
+    }
+    
+    private static void unload(World world) {
+        HashMap<Long,Set<Object3D>> objects = chunks.remove(world);
+        if (objects == null) return;
+        objects.values().forEach(set -> set.forEach(tracked::remove));
+    }
+    
+    private static boolean isChunkLoaded(Object3D object, long key) {
+        return object.getWorld().isChunkLoaded(getChunkX(key), getChunkZ(key));
+    }
+    
+    private static long getChunkKey(Object3D object) {
+        Vector3f position = new Vector3f();
+        object.getWorldTransform().getTranslation(position);
+        int x = (int) Math.floor(position.x) >> 4;
+        int z = (int) Math.floor(position.z) >> 4;
+        return getChunkKey(x, z);
+    }
+    
+    private static long getChunkKey(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+    
+    private static int getChunkX(long key) {
+        return (int) (key >> 32);
+    }
+    
+    private static int getChunkZ(long key) {
+        return (int) key;
+    }
+    
+    private static class ChunkListener implements Listener {
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onChunkUnload(ChunkUnloadEvent event) {
+            suspend(event.getChunk());
+        }
+        
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onChunkLoad(ChunkLoadEvent event) {
+            resume(event.getChunk());
+        }
+        
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onWorldUnload(WorldUnloadEvent event) {
+            unload(event.getWorld());
+        }
+    }
+}
@@ -45,7 +45,13 @@ import me.kyren223.kapi.data.Option;
 import me.kyren223.kapi.data.Pair;
 import me.kyren223.kapi.engine.ecs.EcsEntity;
 import me.kyren223.kapi.engine.ecs.SystemTrigger;
+import me.kyren223.kapi.engine.renderable.ParticleRender;
+import me.kyren223.kapi.engine.renderable.Renderable;
+import me.kyren223.kapi.utility.Priority;
+import me.kyren223.kapi.utility.Profiler;
+import me.kyren223.kapi.utility.QualityController;
 import me.kyren223.kapi.utility.Task;
+import me.kyren223.kapi.utility.TickPhase;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.util.Vector;
@@ -56,6 +62,7 @@ import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -76,7 +83,22 @@ public class Object3D implements EcsEntity {
     private final HashMap<String,@Nullable List<Consumer<Object3D>>> events;
     private final List<Pair<SystemTrigger,Consumer<Object3D>>> tasks;
     private boolean cancel;
+    private int generation;
+    private int renderInterval;
+    private boolean suspended;
+    private boolean chunkAware;
     private Visibility visibility;
+    private @Nullable CompletableFuture<Object3D> spawnProgress;
+    private @Nullable CompletableFuture<Object3D> despawnProgress;
+    private @Nullable String label;
+    private @Nullable Priority priority;
+    private int renderCount;
+    
+    private static int liveObjects = 0;
+    
+    static {
+        Profiler.registerCounter("Live objects", () -> liveObjects);
+    }
     
     /**
      * Creates a new instance of this object
@@ -90,23 +112,33 @@ public class Object3D implements EcsEntity {
             Template3D template, World world, Matrix4f transform,
             @Nullable Object3D parent
     ) {
+        this(world, transform, parent);
+        this.label = template.getLabel().get();
+        template.getPoints().forEach(point -> this.points.add(new Point(point)));
+        this.events.putAll(template.getEvents());
+        this.tasks.addAll(template.getTasks());
+        template.getChildren().forEach(entry -> {
+            Pair<Matrix4f,Template3D> value = entry.getValue();
+            Object3D child = value.getSecond().newInstance(world, value.getFirst(), this);
+            this.children.put(entry.getKey(), child);
+        });
+    }
+    
+    // Package-private, creates an object without points, children or systems
+    Object3D(World world, Matrix4f transform, @Nullable Object3D parent) {
         this.parent = parent;
         this.world = world;
         this.transform = new Matrix4f(transform);
         this.points = new ArrayList<>();
-        template.getPoints().forEach(point -> this.points.add(new Point(point)));
         
         this.components = new HashMap<>();
-        this.events = new HashMap<>(template.getEvents());
-        this.tasks = new ArrayList<>(template.getTasks());
+        this.events = new HashMap<>();
+        this.tasks = new ArrayList<>();
+        this.renderInterval = 1;
+        this.chunkAware = true;
         
         this.children = new HashMap<>();
         this.visibility = parent == null ? Visibility.VISIBLE : Visibility.INHERIT;
-        template.getChildren().forEach(entry -> {
-            Pair<Matrix4f,Template3D> value = entry.getValue();
-            Object3D child = value.getSecond().newInstance(world, value.getFirst(), this);
-            this.children.put(entry.getKey(), child);
-        });
     }
     
     /**
@@ -380,16 +412,32 @@ public class Object3D implements EcsEntity {
         
         // Children have render priority
         if (!isVisible()) return;
+        
+        // Lower quality renders less often, and from the second step renders fewer particles
+        Priority priority = getPriority();
+        int degradation = QualityController.getDegradation(priority);
+        if (degradation > 0 && renderCount++ % (1 << degradation) != 0) return;
+        int particleStride = degradation < 2 ? 1 : 1 << (degradation - 1);
+        int particleIndex = 0;
+        
         Matrix4fc worldTransform = getWorldTransform();
-        getPoints().forEach(point -> {
+        for (Point point : points) {
+            Renderable renderable = point.getRenderable();
+            if (renderable instanceof ParticleRender && particleIndex++ % particleStride != 0) {
+                continue;
+            }
             Vector3f position = worldTransform.transformPosition(point.getVector().toVector3f());
-            point.getRenderable().render(world, Vector.fromJOML(position));
-        });
-        
+            if (renderable instanceof ParticleRender particle) {
+                particle.render(world, Vector.fromJOML(position), priority);
+            } else {
+                renderable.render(world, Vector.fromJOML(position));
+            }
+        }
     }
     
-    private boolean shouldContinue() {
-        return !cancel;
+    private boolean shouldContinue(int generation) {
+        // Tasks from a previous spawn must stop even if the object was respawned since
+        return !cancel && this.generation == generation;
     }
     
     /**
@@ -400,25 +448,65 @@ public class Object3D implements EcsEntity {
      */
     @Kapi
     public void spawn(int renderInterval) {
+        // A pending staged despawn would remove the entities spawned here
+        if (despawnProgress != null) despawnProgress.cancel(false);
+        despawnProgress = null;
         this.cancel = false;
         
         children.values().forEach(child -> child.spawn(renderInterval));
         
-        points.forEach(point -> point.getRenderable().spawn(
-                world, Vector.fromJOML(
-                        getWorldTransform().transformPosition(point.getVector().toVector3f()))
-        ));
+        points.forEach(this::spawnPoint);
+        
+        start(renderInterval);
+    }
+    
+    private void start(int renderInterval) {
+        this.cancel = false;
+        this.renderInterval = renderInterval;
+        if (parent == null) suspended = false;
         
         triggerEvent(SystemTrigger.SPAWN_EVENT);
         triggerEvent(SystemTrigger.SCALE_CHANGED_EVENT);
+        schedule();
+        // Tracked last, so an object in an unloaded chunk is suspended after its systems are scheduled
+        if (parent == null) ChunkTracker.track(this);
+    }
+    
+    private void schedule() {
+        int generation = ++this.generation;
+        String label = getProfilerLabel();
         for (Pair<SystemTrigger,Consumer<Object3D>> task : tasks) {
             SystemTrigger trigger = task.getFirst();
             Consumer<Object3D> system = task.getSecond();
             assert !trigger.isEvent();
-            Task.run(() -> system.accept(this)).timer(trigger.getDelay(), trigger.getPeriod())
-                .whileCondition(this::shouldContinue).schedule();
+            Task builder = Task.run(() -> system.accept(this))
+                .timer(trigger.getDelay(), trigger.getPeriod())
+                .phase(trigger.getPhase())
+                .label(label + " (system)")
+                .whileCondition(() -> shouldContinue(generation));
+            if (trigger.isStaggered()) builder.stagger();
+            builder.schedule();
         }
-        Task.run(this::render).timer(1, 1).whileCondition(this::shouldContinue).schedule();
+        // Rendered after systems and animations, so it sees the transform of this tick
+        liveObjects++;
+        Task.run(this::render).timer(1, renderInterval)
+            .phase(TickPhase.RENDER)
+            .stagger()
+            .label(label + " (render)")
+            .whileCondition(() -> shouldContinue(generation))
+            .onEnd(() -> liveObjects--)
+            .schedule();
+    }
+    
+    private String getProfilerLabel() {
+        if (label != null) return label;
+        if (parent != null) return parent.getProfilerLabel();
+        return "Object3D";
+    }
+    
+    private void startTree(int renderInterval) {
+        children.values().forEach(child -> child.startTree(renderInterval));
+        start(renderInterval);
     }
     
     /**
@@ -436,16 +524,289 @@ public class Object3D implements EcsEntity {
      */
     @Kapi
     public void despawn() {
+        // A pending staged spawn would otherwise start the tree again once it's done
+        if (spawnProgress != null) spawnProgress.cancel(false);
+        if (despawnProgress != null) despawnProgress.cancel(false);
+        spawnProgress = null;
+        despawnProgress = null;
         this.cancel = true;
-        points.forEach(point -> point.getRenderable().despawn(
-                world, Vector.fromJOML(
-                        getWorldTransform().transformPosition(point.getVector().toVector3f()))
-        ));
+        if (parent == null) {
+            suspended = false;
+            ChunkTracker.untrack(this);
+        }
+        for (Point point : points) {
+            // Suspended objects have no display entities to remove
+            if (point.getRenderable().isSpawned()) despawnPoint(point);
+        }
         children.values().forEach(Object3D::despawn);
         
         triggerEvent(SystemTrigger.DESPAWN_EVENT);
     }
     
+    private void despawnTree() {
+        children.values().forEach(Object3D::despawnTree);
+        triggerEvent(SystemTrigger.DESPAWN_EVENT);
+    }
+    
+    /**
+     * Spawns this object and all of its children, spreading the creation of
+     * display entities across multiple ticks<br>
+     * <br>
+     * At most {@link StagedSpawner#getEntitiesPerTick()} display entities are
+     * spawned per tick, particles do not count towards the quota.<br>
+     * Events, systems and rendering only start once the whole tree is live,
+     * so {@link SystemTrigger#SPAWN_EVENT} is triggered after the last entity is spawned.<br>
+     * <br>
+     * If this object is already being staged, the pending spawn is returned.<br>
+     * A pending {@link #despawnStaged()} is cancelled,
+     * entities that it already removed are spawned again.
+     *
+     * @param renderInterval The interval in ticks between each render call
+     *                       Note: This interval does not affect display entities
+     * @return A future that completes with this object once the whole tree is live
+     * @see #getSpawnProgress()
+     */
+    @Kapi
+    public CompletableFuture<Object3D> spawnStaged(int renderInterval) {
+        if (spawnProgress != null && !spawnProgress.isDone()) return spawnProgress;
+        // Points still waiting to be removed count as spawned, drop the pending removal first
+        if (despawnProgress != null) despawnProgress.cancel(false);
+        despawnProgress = null;
+        
+        List<Pair<Object3D,Point>> jobs = new ArrayList<>();
+        collectPoints(jobs, point -> !point.getRenderable().isSpawned());
+        
+        CompletableFuture<Object3D> future = new CompletableFuture<>();
+        spawnProgress = future;
+        StagedSpawner.queue(jobs, Object3D::spawnPoint, () -> {
+            startTree(renderInterval);
+            future.complete(this);
+        }, future);
+        return future;
+    }
+    
+    /**
+     * Spawns this object and all of its children in stages
+     * with a render interval of 1<br>
+     * See {@link #spawnStaged(int)} for more info
+     *
+     * @return A future that completes with this object once the whole tree is live
+     */
+    @Kapi
+    public CompletableFuture<Object3D> spawnStaged() {
+        return spawnStaged(1);
+    }
+    
+    /**
+     * Despawns this object and all of its children, spreading the removal of
+     * display entities across multiple ticks<br>
+     * <br>
+     * Systems and rendering stop immediately,
+     * {@link SystemTrigger#DESPAWN_EVENT} is triggered once the last entity is removed.<br>
+     * A pending {@link #spawnStaged(int)} is cancelled,
+     * entities that it already spawned are removed.<br>
+     * The returned future is cancelled if {@link #spawnStaged(int)}
+     * is called before all entities are removed.
+     *
+     * @return A future that completes with this object once all entities are removed
+     */
+    @Kapi
+    public CompletableFuture<Object3D> despawnStaged() {
+        if (spawnProgress != null) spawnProgress.cancel(false);
+        
+        List<Pair<Object3D,Point>> jobs = new ArrayList<>();
+        collectPoints(jobs, point -> hasEntity(point.getRenderable()));
+        
+        CompletableFuture<Object3D> future = new CompletableFuture<>();
+        spawnProgress = null;
+        despawnProgress = future;
+        if (parent == null) {
+            suspended = false;
+            ChunkTracker.untrack(this);
+        }
+        StagedSpawner.queue(jobs, Object3D::despawnPoint, () -> {
+            despawnTree();
+            future.complete(this);
+        }, future);
+        return future;
+    }
+    
+    /**
+     * Gets the progress of the last {@link #spawnStaged(int)} call<br>
+     * The future is completed once the whole tree is live,
+     * and cancelled if the object was despawned before that.
+     *
+     * @return The spawn progress or none if this object was never spawned in stages
+     *         or was despawned since
+     */
+    @Kapi
+    public Option<CompletableFuture<Object3D>> getSpawnProgress() {
+        return Option.of(spawnProgress);
+    }
+    
+    private void collectPoints(List<Pair<Object3D,Point>> jobs, Predicate<Point> filter) {
+        // Stop systems and rendering until the staging is done
+        this.cancel = true;
+        for (Point point : points) {
+            if (filter.test(point)) jobs.add(Pair.of(this, point));
+        }
+        children.values().forEach(child -> child.collectPoints(jobs, filter));
+    }
+    
+    private static boolean hasEntity(Renderable renderable) {
+        // Particles are rendered instantly, there is nothing to remove
+        return renderable.isSpawned() && !(renderable instanceof ParticleRender);
+    }
+    
+    private Vector getWorldPosition(Point point) {
+        return Vector.fromJOML(
+                getWorldTransform().transformPosition(point.getVector().toVector3f()));
+    }
+    
+    private void spawnPoint(Point point) {
+        point.getRenderable().spawn(world, getWorldPosition(point));
+    }
+    
+    private void despawnPoint(Point point) {
+        point.getRenderable().despawn(world, getWorldPosition(point));
+    }
+    
+    void suspend() {
+        if (suspended) return;
+        suspended = true;
+        suspendTree();
+    }
+    
+    private void suspendTree() {
+        // Bumping the generation stops the systems and rendering of the current spawn
+        generation++;
+        for (Point point : points) {
+            if (hasEntity(point.getRenderable())) despawnPoint(point);
+        }
+        children.values().forEach(Object3D::suspendTree);
+    }
+    
+    void resume() {
+        if (!suspended) return;
+        suspended = false;
+        resumeTree();
+    }
+    
+    private void resumeTree() {
+        children.values().forEach(Object3D::resumeTree);
+        for (Point point : points) {
+            if (!point.getRenderable().isSpawned()) spawnPoint(point);
+        }
+        // Spawn events were already triggered, only the systems are restarted
+        if (!cancel) schedule();
+    }
+    
+    /**
+     * Returns whether this object is suspended because
+     * its chunk is not loaded<br>
+     * <br>
+     * Suspended objects don't run systems or render,
+     * and their display entities are removed until the chunk is loaded again.<br>
+     * Children are suspended together with their root object.
+     *
+     * @return true if this object is suspended, false otherwise
+     * @see ChunkTracker
+     */
+    @Kapi
+    public boolean isSuspended() {
+        if (parent != null) return parent.isSuspended();
+        return suspended;
+    }
+    
+    /**
+     * Returns whether this object is suspended when its chunk is unloaded<br>
+     * Default value is true.
+     *
+     * @return true if this object is chunk aware, false otherwise
+     * @see #setChunkAware(boolean)
+     */
+    @Kapi
+    public boolean isChunkAware() {
+        return chunkAware;
+    }
+    
+    /**
+     * Sets whether this object is suspended when its chunk is unloaded<br>
+     * Only affects root objects, children always follow their root.<br>
+     * <br>
+     * Note: takes effect the next time this object is spawned
+     *
+     * @param chunkAware true to track the chunk of this object, false otherwise
+     * @see ChunkTracker
+     */
+    @Kapi
+    public void setChunkAware(boolean chunkAware) {
+        this.chunkAware = chunkAware;
+    }
+    
+    /**
+     * Sets the label of this object, used by the {@link Profiler}
+     * to report the runtime of its systems and rendering.<br>
+     * Objects created from a template start with the label of the template,
+     * objects without a label use the label of their parent.<br>
+     * <br>
+     * Note: takes effect the next time this object is spawned
+     *
+     * @param label The label, or null to remove it
+     * @see Template3D#setLabel(String)
+     */
+    @Kapi
+    public void setLabel(@Nullable String label) {
+        this.label = label;
+    }
+    
+    /**
+     * Gets the label of this object.
+     *
+     * @return The label or none if this object has no label
+     * @see #setLabel(String)
+     */
+    @Kapi
+    public Option<String> getLabel() {
+        return Option.of(label);
+    }
+    
+    /**
+     * Sets the priority of this object, objects with a higher priority
+     * keep their quality longer when the {@link QualityController} lowers quality.<br>
+     * Objects without a priority use the priority of their parent,
+     * root objects default to {@link Priority#NORMAL}.
+     *
+     * @param priority The priority, or null to use the priority of the parent
+     */
+    @Kapi
+    public void setPriority(@Nullable Priority priority) {
+        this.priority = priority;
+    }
+    
+    /**
+     * Gets the priority of this object, see {@link #setPriority(Priority)}
+     *
+     * @return The priority of this object
+     */
+    @Kapi
+    public Priority getPriority() {
+        if (priority != null) return priority;
+        if (parent != null) return parent.getPriority();
+        return Priority.NORMAL;
+    }
+    
+    /**
+     * Gets the amount of objects that are currently live,
+     * spawned objects that are not suspended, including children.
+     *
+     * @return The amount of live objects
+     */
+    @Kapi
+    public static int getLiveCount() {
+        return liveObjects;
+    }
+    
     /**
      * Respawns this object and all of its children<br>
      * <br>
@@ -469,6 +830,45 @@ public class Object3D implements EcsEntity {
         respawn(1);
     }
     
+    /**
+     * Returns whether this object is spawned<br>
+     * Objects that are still being spawned in stages are not spawned yet,
+     * suspended objects are still considered spawned.
+     *
+     * @return true if this object is spawned, false otherwise
+     * @see #isSuspended()
+     */
+    @Kapi
+    public boolean isSpawned() {
+        return !cancel && generation > 0;
+    }
+    
+    /**
+     * Moves the display entities of this object and all of its children
+     * to match their current world transform<br>
+     * <br>
+     * Display entities don't follow the object on their own,
+     * the movement is sent as a transformation so the client interpolates it.<br>
+     * Does nothing while this object is suspended.
+     *
+     * @param interpolationDuration The amount of ticks the client interpolates over
+     */
+    @Kapi
+    public void syncDisplays(int interpolationDuration) {
+        if (isSuspended()) return;
+        syncDisplayTree(interpolationDuration);
+    }
+    
+    private void syncDisplayTree(int interpolationDuration) {
+        Matrix4fc worldTransform = getWorldTransform();
+        for (Point point : points) {
+            Renderable renderable = point.getRenderable();
+            if (!hasEntity(renderable)) continue;
+            renderable.update(world, getWorldPosition(point), worldTransform, interpolationDuration);
+        }
+        children.values().forEach(child -> child.syncDisplayTree(interpolationDuration));
+    }
+    
     /**
      * Gets the visibility of this object<br>
      * Note: this doesn't check if the object is actually visible,
@@ -509,6 +909,23 @@ public class Object3D implements EcsEntity {
         return visibility == Visibility.VISIBLE;
     }
     
+    // Package-private
+    void putChild(String name, Object3D child) {
+        children.put(name, child);
+    }
+    
+    Map<String,@Nullable Object> getComponents() {
+        return components;
+    }
+    
+    void addSystems(
+            Map<String,List<Consumer<Object3D>>> events,
+            List<Pair<SystemTrigger,Consumer<Object3D>>> tasks
+    ) {
+        events.forEach((event, systems) -> this.events.put(event, new ArrayList<>(systems)));
+        this.tasks.addAll(tasks);
+    }
+    
     private void invalidateCachedWorldTransform() {
         cachedWorldTransform = null;
         // Invalidate children cached world transform
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.engine;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.codec.*;
+import me.kyren223.kapi.data.Result;
+import me.kyren223.kapi.engine.renderable.*;
+import me.kyren223.kapi.utility.Config;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.util.Vector;
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Saves and restores {@link Object3D} trees using a compact binary format.<br>
+ * <br>
+ * A snapshot stores the transform, visibility, points and components of
+ * every object in the tree.<br>
+ * Renderables are stored once in a palette and referenced by index from the points,
+ * so a scene made of thousands of identical blocks only stores the block once.<br>
+ * Snapshots are memory-mapped when loaded, restoring large scenes is much faster
+ * than rebuilding them from {@link Template3D} code.<br>
+ * <br>
+ * Systems and events are code, so they are not stored,
+ * add them again with {@link Object3D#addSystem} after loading.<br>
+ * Only components of the following types are stored, others are skipped:
+ * null, {@link Boolean}, {@link Integer}, {@link Long}, {@link Float},
+ * {@link Double}, {@link String}, {@link UUID}, {@link Vector},
+ * {@link Vector3f}, {@link Quaternionf} and {@link Matrix4f}<br>
+ * <br>
+ * Note: point positions are stored as floats to keep snapshots small<br>
+ * Values are encoded with {@link Codecs}.
+ */
+@Kapi
+@NullMarked
+public final class SceneSnapshot {
+    
+    private static final int MAGIC = 0x4B534E50; // "KSNP"
+    private static final int VERSION = 1;
+    
+    // Display types use the same tags as Codecs.DISPLAY_DATA
+    private static final byte PARTICLE = 0;
+    private static final byte BLOCK_DISPLAY = 1;
+    private static final byte ITEM_DISPLAY = 2;
+    private static final byte TEXT_DISPLAY = 3;
+    
+    private static final Codec<Renderable> RENDERABLE = Codec.of(
+            SceneSnapshot::writeRenderable, SceneSnapshot::readRenderable
+    );
+    
+    private SceneSnapshot() {
+        throw new AssertionError("SceneSnapshot should not be instantiated");
+    }
+    
+    /**
+     * Saves objects and all of their children to a snapshot.<br>
+     * If any errors occur, false will be returned.<br>
+     * <br>
+     * The snapshot is written to a temporary file first and then moved
+     * in place, so a crash never leaves a partially written snapshot behind.<br>
+     * This method will overwrite the snapshot if it already exists.
+     *
+     * @param path    The path to the snapshot file (relative to the data folder)
+     * @param objects The root objects to save
+     * @return True if the snapshot was written, false otherwise
+     * @throws IllegalArgumentException If a point uses a renderable
+     *                                  or particle data that can't be stored
+     * @see #load(String)
+     */
+    @Kapi
+    public static boolean save(String path, Collection<Object3D> objects) {
+        Path file = Config.getPath(path).toPath();
+        
+        // Encode the trees first, so the palette is complete before it's written
+        Palette palette = new Palette();
+        BinaryWriter trees = new BinaryWriter();
+        BinaryWriter tree = new BinaryWriter();
+        trees.writeVarInt(objects.size());
+        for (Object3D object : objects) {
+            tree.reset();
+            writeNode(tree, object, palette);
+            Codecs.UUID.encode(trees, object.getWorld().getUID());
+            trees.writeVarInt(tree.size());
+            trees.writeBytes(tree.toBuffer());
+        }
+        
+        BinaryWriter header = new BinaryWriter();
+        header.writeInt(MAGIC);
+        header.writeVarInt(VERSION);
+        palette.writeTo(header);
+        
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                header.writeTo(out);
+                trees.writeTo(out);
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            Files.move(temp, file,
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE
+            );
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Saves objects and all of their children to a snapshot.<br>
+     * See {@link #save(String, Collection)} for more info
+     *
+     * @param path    The path to the snapshot file (relative to the data folder)
+     * @param objects The root objects to save
+     * @return True if the snapshot was written, false otherwise
+     */
+    @Kapi
+    public static boolean save(String path, Object3D... objects) {
+        return save(path, Arrays.asList(objects));
+    }
+    
+    /**
+     * Loads the objects stored in a snapshot.<br>
+     * <br>
+     * The returned objects are not spawned,
+     * for large scenes consider using {@link Object3D#spawnStaged()}<br>
+     * Objects whose world is not loaded are skipped.
+     *
+     * @param path The path to the snapshot file (relative to the data folder)
+     * @return The restored root objects, or the exception if the snapshot couldn't be read
+     * @see #save(String, Collection)
+     */
+    @Kapi
+    public static Result<List<Object3D>,Exception> load(String path) {
+        Path file = Config.getPath(path).toPath();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return Result.ok(read(new BinaryReader(buffer)));
+        } catch (IOException | RuntimeException e) {
+            return Result.err(e);
+        }
+    }
+    
+    private static List<Object3D> read(BinaryReader reader) throws IOException {
+        if (reader.remaining() < Integer.BYTES || reader.readInt() != MAGIC) {
+            throw new IOException("Not a snapshot file");
+        }
+        int version = reader.readVarInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        
+        Renderable[] palette = new Renderable[reader.readVarInt()];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = RENDERABLE.decode(reader);
+        }
+        
+        int count = reader.readVarInt();
+        List<Object3D> objects = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UUID uid = Codecs.UUID.decode(reader);
+            int length = reader.readLength();
+            World world = Bukkit.getWorld(uid);
+            if (world == null) {
+                reader.skip(length);
+                continue;
+            }
+            objects.add(readNode(reader, world, null, palette));
+        }
+        return objects;
+    }
+    
+    private static void writeNode(BinaryWriter writer, Object3D object, Palette palette) {
+        Codecs.MATRIX4F.encode(writer, new Matrix4f(object.getTransform()));
+        writer.writeByte(object.getVisibility().ordinal());
+        writer.writeBoolean(object.isChunkAware());
+        
+        Map<String,@Nullable Object> components = new LinkedHashMap<>();
+        object.getComponents().forEach((key, value) -> {
+            if (isSupported(value)) components.put(key, value);
+        });
+        writer.writeVarInt(components.size());
+        for (Map.Entry<String,@Nullable Object> entry : components.entrySet()) {
+            writer.writeString(entry.getKey());
+            Codecs.VALUE.encode(writer, entry.getValue());
+        }
+        
+        List<Point> points = object.getPoints().toList();
+        writer.writeVarInt(points.size());
+        for (Point point : points) {
+            writer.writeFloat((float) point.getX());
+            writer.writeFloat((float) point.getY());
+            writer.writeFloat((float) point.getZ());
+            writer.writeVarInt(palette.indexOf(point.getRenderable()));
+        }
+        
+        List<Map.Entry<String,Object3D>> children = object.getChildren().toList();
+        writer.writeVarInt(children.size());
+        for (Map.Entry<String,Object3D> child : children) {
+            writer.writeString(child.getKey());
+            writeNode(writer, child.getValue(), palette);
+        }
+    }
+    
+    private static Object3D readNode(
+            BinaryReader reader, World world, @Nullable Object3D parent, Renderable[] palette
+    ) {
+        Object3D object = new Object3D(world, Codecs.MATRIX4F.decode(reader), parent);
+        object.setVisibility(Visibility.values()[reader.readByte()]);
+        object.setChunkAware(reader.readBoolean());
+        
+        int components = reader.readVarInt();
+        for (int i = 0; i < components; i++) {
+            object.set(reader.readString(), Codecs.VALUE.decode(reader));
+        }
+        
+        int points = reader.readVarInt();
+        List<Point> list = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            float x = reader.readFloat();
+            float y = reader.readFloat();
+            float z = reader.readFloat();
+            // Renderables hold their spawned entity, so every point needs its own copy
+            list.add(new Point(x, y, z, palette[reader.readVarInt()].clone()));
+        }
+        object.addPoints(list);
+        
+        int children = reader.readVarInt();
+        for (int i = 0; i < children; i++) {
+            String name = reader.readString();
+            object.putChild(name, readNode(reader, world, object, palette));
+        }
+        return object;
+    }
+    
+    private static void writeRenderable(BinaryWriter writer, Renderable renderable) {
+        if (renderable instanceof ParticleRender particle) {
+            writer.writeByte(PARTICLE);
+            Codecs.PARTICLE_DATA.encode(writer, particle.getParticle());
+        } else if (renderable instanceof BlockDisplayRender block) {
+            writer.writeByte(BLOCK_DISPLAY);
+            Codecs.BLOCK_DISPLAY_DATA.encode(writer, block);
+        } else if (renderable instanceof ItemDisplayRender item) {
+            writer.writeByte(ITEM_DISPLAY);
+            Codecs.ITEM_DISPLAY_DATA.encode(writer, item);
+        } else if (renderable instanceof TextDisplayRender text) {
+            writer.writeByte(TEXT_DISPLAY);
+            Codecs.TEXT_DISPLAY_DATA.encode(writer, text);
+        } else {
+            throw new IllegalArgumentException(
+                    "Unsupported renderable " + renderable.getClass().getName());
+        }
+    }
+    
+    private static Renderable readRenderable(BinaryReader reader) {
+        byte type = reader.readByte();
+        return switch (type) {
+            case PARTICLE -> new ParticleRender(Codecs.PARTICLE_DATA.decode(reader));
+            case BLOCK_DISPLAY -> new BlockDisplayRender(Codecs.BLOCK_DISPLAY_DATA.decode(reader));
+            case ITEM_DISPLAY -> new ItemDisplayRender(Codecs.ITEM_DISPLAY_DATA.decode(reader));
+            case TEXT_DISPLAY -> new TextDisplayRender(Codecs.TEXT_DISPLAY_DATA.decode(reader));
+            default -> throw new CodecException("Unknown renderable type " + type);
+        };
+    }
+    
+    private static boolean isSupported(@Nullable Object value) {
+        return value == null || value instanceof Boolean || value instanceof Integer
+                || value instanceof Long || value instanceof Float || value instanceof Double
+                || value instanceof String || value instanceof UUID || value instanceof Vector
+                || value instanceof Vector3f || value instanceof Quaternionf
+                || value instanceof Matrix4f;
+    }
+    
+    private static class Palette {
+        private final Map<ByteBuffer,Integer> indices = new HashMap<>();
+        private final BinaryWriter entries = new BinaryWriter();
+        private final BinaryWriter entry = new BinaryWriter();
+        
+        private int indexOf(Renderable renderable) {
+            entry.reset();
+            RENDERABLE.encode(entry, renderable);
+            ByteBuffer key = ByteBuffer.wrap(entry.toByteArray());
+            Integer index = indices.get(key);
+            if (index != null) return index;
+            
+            index = indices.size();
+            indices.put(key, index);
+            entries.writeBytes(key);
+            return index;
+        }
+        
+        private void writeTo(BinaryWriter writer) {
+            writer.writeVarInt(indices.size());
+            writer.writeBytes(entries.toBuffer());
+        }
+    }
+}
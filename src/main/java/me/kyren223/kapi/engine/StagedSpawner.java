@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.engine;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.data.Pair;
+import me.kyren223.kapi.utility.Log;
+import me.kyren223.kapi.utility.Task;
+import org.jspecify.annotations.NullMarked;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Spreads the creation and removal of display entities across multiple ticks.<br>
+ * <br>
+ * Used by {@link Object3D#spawnStaged(int)} and {@link Object3D#despawnStaged()},
+ * at most {@link #getEntitiesPerTick()} display entities are spawned or removed
+ * per tick, shared between all objects that are currently being staged.<br>
+ * Staged objects are processed in the order they were queued.
+ */
+@Kapi
+@NullMarked
+public final class StagedSpawner {
+    
+    private static final ArrayDeque<Batch> batches = new ArrayDeque<>();
+    private static int entitiesPerTick = 64;
+    private static boolean running = false;
+    
+    private StagedSpawner() {
+        throw new AssertionError("StagedSpawner should not be instantiated");
+    }
+    
+    /**
+     * Gets the maximum amount of display entities that are spawned
+     * or removed per tick.<br>
+     * Default value is 64.
+     *
+     * @return The per-tick quota
+     */
+    @Kapi
+    public static int getEntitiesPerTick() {
+        return entitiesPerTick;
+    }
+    
+    /**
+     * Sets the maximum amount of display entities that are spawned
+     * or removed per tick.<br>
+     * The quota is shared between all objects that are currently being staged.
+     *
+     * @param entitiesPerTick The per-tick quota
+     * @throws IllegalArgumentException If the quota is less than 1
+     */
+    @Kapi
+    public static void setEntitiesPerTick(int entitiesPerTick) {
+        if (entitiesPerTick < 1) {
+            throw new IllegalArgumentException("Entities per tick cannot be less than 1");
+        }
+        StagedSpawner.entitiesPerTick = entitiesPerTick;
+    }
+    
+    /**
+     * Gets the amount of display entities that are still waiting
+     * to be spawned or removed.
+     *
+     * @return The amount of pending entities
+     */
+    @Kapi
+    public static int getPendingEntities() {
+        int pending = 0;
+        for (Batch batch : batches) {
+            pending += batch.remaining();
+        }
+        return pending;
+    }
+    
+    static void queue(
+            List<Pair<Object3D,Point>> jobs, BiConsumer<Object3D,Point> action,
+            Runnable onComplete, CompletableFuture<Object3D> future
+    ) {
+        batches.add(new Batch(jobs, action, onComplete, future));
+        if (running) return;
+        running = true;
+        Task.run(StagedSpawner::tick)
+            .interval()
+            .whileCondition(() -> !batches.isEmpty())
+            .onEnd(() -> running = false)
+            .schedule();
+    }
+    
+    private static void tick() {
+        int budget = entitiesPerTick;
+        while (budget > 0 && !batches.isEmpty()) {
+            Batch batch = batches.peek();
+            try {
+                budget -= batch.process(budget);
+                if (!batch.isFinished()) continue;
+                batches.poll();
+                batch.complete();
+            } catch (RuntimeException e) {
+                batches.remove(batch);
+                batch.future.completeExceptionally(e);
+                Log.error("Staged spawn failed due to an exception");
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    private static class Batch {
+        private final List<Pair<Object3D,Point>> jobs;
+        private final BiConsumer<Object3D,Point> action;
+        private final Runnable onComplete;
+        private final CompletableFuture<Object3D> future;
+        private int index;
+        
+        private Batch(
+                List<Pair<Object3D,Point>> jobs, BiConsumer<Object3D,Point> action,
+                Runnable onComplete, CompletableFuture<Object3D> future
+        ) {
+            this.jobs = jobs;
+            this.action = action;
+            this.onComplete = onComplete;
+            this.future = future;
+            this.index = 0;
+        }
+        
+        private int process(int budget) {
+            // Cancelled batches (for example a spawn interrupted by a despawn) are dropped
+            if (future.isDone()) return 0;
+            int processed = 0;
+            while (processed < budget && index < jobs.size()) {
+                Pair<Object3D,Point> job = jobs.get(index++);
+                action.accept(job.getFirst(), job.getSecond());
+                processed++;
+            }
+            return processed;
+        }
+        
+        private boolean isFinished() {
+            return future.isDone() || index >= jobs.size();
+        }
+        
+        private int remaining() {
+            return future.isDone() ? 0 : jobs.size() - index;
+        }
+        
+        private void complete() {
+            if (future.isDone()) return;
+            onComplete.run();
+        }
+    }
+}
@@ -44,6 +44,7 @@ import me.kyren223.kapi.annotations.Kapi;
 import me.kyren223.kapi.data.Option;
 import me.kyren223.kapi.data.Pair;
 import me.kyren223.kapi.engine.ecs.SystemTrigger;
+import me.kyren223.kapi.utility.Profiler;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.joml.Matrix4f;
@@ -66,6 +67,7 @@ public class Template3D {
     private final HashMap<String,@Nullable Object> components;
     private final HashMap<String,List<Consumer<Object3D>>> events;
     private final List<Pair<SystemTrigger,Consumer<Object3D>>> tasks;
+    private @Nullable String label;
     
     
     @Kapi
@@ -75,6 +77,7 @@ public class Template3D {
         this.components = new HashMap<>();
         this.events = new HashMap<>();
         this.tasks = new ArrayList<>();
+        this.label = null;
     }
     
     /**
@@ -246,16 +249,66 @@ public class Template3D {
     
     // Package-private
     HashMap<String,List<Consumer<Object3D>>> getEvents() {
-        Consumer<Object3D> setDefaultsSystem = instance -> components.forEach(instance::set);
+        return getEvents(components);
+    }
+    
+    HashMap<String,List<Consumer<Object3D>>> getEvents(Map<String,@Nullable Object> defaults) {
+        // Copied so instances don't share (and grow) the lists of this template
+        HashMap<String,List<Consumer<Object3D>>> events = new HashMap<>();
+        this.events.forEach((event, systems) -> events.put(event, new ArrayList<>(systems)));
+        Consumer<Object3D> setDefaultsSystem = instance -> defaults.forEach(instance::set);
         events.computeIfAbsent(SystemTrigger.SPAWN_EVENT, k -> new ArrayList<>())
               .add(setDefaultsSystem);
         return events;
     }
     
+    /**
+     * Sets the label of this template, used by the {@link Profiler}
+     * to report the runtime of the systems and rendering of its instances.<br>
+     * Instances without a label use the label of their parent.
+     *
+     * @param label The label, or null to remove it
+     */
+    @Kapi
+    public void setLabel(@Nullable String label) {
+        this.label = label;
+    }
+    
+    /**
+     * Gets the label of this template.
+     *
+     * @return The label or none if this template has no label
+     * @see #setLabel(String)
+     */
+    @Kapi
+    public Option<String> getLabel() {
+        return Option.of(label);
+    }
+    
+    Map<String,@Nullable Object> getDefaults() {
+        return components;
+    }
+    
     List<Pair<SystemTrigger,Consumer<Object3D>>> getTasks() {
         return tasks;
     }
     
+    /**
+     * Bakes this template into an immutable, flattened form.<br>
+     * <br>
+     * The baked template is a snapshot, later changes to this template
+     * (or its children) don't affect it.<br>
+     * Creating instances from a baked template is much cheaper,
+     * prefer it for templates that are instantiated often.
+     *
+     * @return A new baked template
+     * @see BakedTemplate3D
+     */
+    @Kapi
+    public BakedTemplate3D bake() {
+        return new BakedTemplate3D(this);
+    }
+    
     /**
      * Creates a new instance of this template at the specified world with the given transform.<br>
      * See {@link #newInstance(World, Matrix4f)} for spawning the object without a parent.<br>
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.engine.animation;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.data.Pair;
+import org.joml.Quaternionf;
+import org.joml.Quaternionfc;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.TreeMap;
+
+/**
+ * An immutable keyframe animation of translation, rotation and scale.<br>
+ * <br>
+ * The animated values are applied on top of the transform the object had
+ * when the animation started, see {@link Animator#play}<br>
+ * Properties without keyframes are left untouched.<br>
+ * <br>
+ * Example:
+ * <pre><code>
+ * Animation bob = Animation.builder()
+ *     .translation(0, new Vector3f(0, 0, 0))
+ *     .translation(20, new Vector3f(0, 0.5f, 0), Easing.IN_OUT_SINE)
+ *     .translation(40, new Vector3f(0, 0, 0), Easing.IN_OUT_SINE)
+ *     .loop()
+ *     .build();
+ * </code></pre>
+ */
+@Kapi
+@NullMarked
+public final class Animation {
+    
+    private final @Nullable Track translation;
+    private final @Nullable Track rotation;
+    private final @Nullable Track scale;
+    private final int duration;
+    private final boolean loop;
+    
+    private Animation(
+            @Nullable Track translation, @Nullable Track rotation, @Nullable Track scale,
+            boolean loop
+    ) {
+        this.translation = translation;
+        this.rotation = rotation;
+        this.scale = scale;
+        this.loop = loop;
+        int duration = 0;
+        if (translation != null) duration = Math.max(duration, translation.getDuration());
+        if (rotation != null) duration = Math.max(duration, rotation.getDuration());
+        if (scale != null) duration = Math.max(duration, scale.getDuration());
+        this.duration = duration;
+    }
+    
+    /**
+     * Creates a new animation builder
+     *
+     * @return The builder
+     */
+    @Kapi
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * @return The tick of the last keyframe
+     */
+    @Kapi
+    public int getDuration() {
+        return duration;
+    }
+    
+    /**
+     * @return true if the animation restarts after the last keyframe, false otherwise
+     */
+    @Kapi
+    public boolean isLooping() {
+        return loop;
+    }
+    
+    /**
+     * Samples the animation at the given tick<br>
+     * Properties without keyframes are set to identity.
+     *
+     * @param time        The tick to sample at
+     * @param translation The translation destination
+     * @param rotation    The rotation destination
+     * @param scale       The scale destination
+     */
+    @Kapi
+    public void sample(int time, Vector3f translation, Quaternionf rotation, Vector3f scale) {
+        if (this.translation != null) this.translation.sample(time, translation);
+        else translation.set(0, 0, 0);
+        if (this.rotation != null) this.rotation.sample(time, rotation);
+        else rotation.identity();
+        if (this.scale != null) this.scale.sample(time, scale);
+        else scale.set(1, 1, 1);
+    }
+    
+    /**
+     * A builder for {@link Animation}<br>
+     * Keyframes can be added in any order,
+     * adding a keyframe at the same tick twice replaces the previous one.
+     */
+    @Kapi
+    public static final class Builder {
+        private final TreeMap<Integer,Pair<float[],Easing>> translation = new TreeMap<>();
+        private final TreeMap<Integer,Pair<float[],Easing>> rotation = new TreeMap<>();
+        private final TreeMap<Integer,Pair<float[],Easing>> scale = new TreeMap<>();
+        private boolean loop;
+        
+        private Builder() {
+        }
+        
+        /**
+         * Adds a translation keyframe with linear easing
+         *
+         * @param tick  The tick of the keyframe
+         * @param value The translation
+         * @return The builder for chaining
+         * @throws IllegalArgumentException If the tick is less than 0
+         */
+        @Kapi
+        public Builder translation(int tick, Vector3fc value) {
+            return translation(tick, value, Easing.LINEAR);
+        }
+        
+        /**
+         * Adds a translation keyframe
+         *
+         * @param tick   The tick of the keyframe
+         * @param value  The translation
+         * @param easing The easing from the previous keyframe to this one
+         * @return The builder for chaining
+         * @throws IllegalArgumentException If the tick is less than 0
+         */
+        @Kapi
+        public Builder translation(int tick, Vector3fc value, Easing easing) {
+            key(translation, tick, new float[]{value.x(), value.y(), value.z()}, easing);
+            return this;
+        }
+        
+        /**
+         * Adds a rotation keyframe with linear easing<br>
+         * Rotations are interpolated spherically.
+         *
+         * @param tick  The tick of the keyframe
+         * @param value The rotation
+         * @return The builder for chaining
+         * @throws IllegalArgumentException If the tick is less than 0
+         */
+        @Kapi
+        public Builder rotation(int tick, Quaternionfc value) {
+            return rotation(tick, value, Easing.LINEAR);
+        }
+        
+        /**
+         * Adds a rotation keyframe<br>
+         * Rotations are interpolated spherically.
+         *
+         * @param tick   The tick of the keyframe
+         * @param value  The rotation
+         * @param easing The easing from the previous keyframe to this one
+         * @return The builder for chaining
+         * @throws IllegalArgumentException If the tick is less than 0
+         */
+        @Kapi
+        public Builder rotation(int tick, Quaternionfc value, Easing easing) {
+            key(rotation, tick, new float[]{value.x(), value.y(), value.z(), value.w()}, easing);
+            return this;
+        }
+        
+        /**
+         * Adds a scale keyframe with linear easing
+         *
+         * @param tick  The tick of the keyframe
+         * @param value The scale
+         * @return The builder for chaining
+         * @throws IllegalArgumentException If the tick is less than 0
+         */
+        @Kapi
+        public Builder scale(int tick, Vector3fc value) {
+            return scale(tick, value, Easing.LINEAR);
+        }
+        
+        /**
+         * Adds a scale keyframe
+         *
+         * @param tick   The tick of the keyframe
+         * @param value  The scale
+         * @param easing The easing from the previous keyframe to this one
+         * @return The builder for chaining
+         * @throws IllegalArgumentException If the tick is less than 0
+         */
+        @Kapi
+        public Builder scale(int tick, Vector3fc value, Easing easing) {
+            key(scale, tick, new float[]{value.x(), value.y(), value.z()}, easing);
+            return this;
+        }
+        
+        /**
+         * Makes the animation restart after the last keyframe
+         *
+         * @return The builder for chaining
+         */
+        @Kapi
+        public Builder loop() {
+            this.loop = true;
+            return this;
+        }
+        
+        /**
+         * Builds the animation
+         *
+         * @return A new immutable animation
+         * @throws IllegalStateException If no keyframes were added,
+         *                               or the animation loops and is 0 ticks long
+         */
+        @Kapi
+        public Animation build() {
+            if (translation.isEmpty() && rotation.isEmpty() && scale.isEmpty()) {
+                throw new IllegalStateException("Animation must have at least one keyframe");
+            }
+            Animation animation = new Animation(
+                    translation.isEmpty() ? null : new Track(translation, 3),
+                    rotation.isEmpty() ? null : new Track(rotation, 4),
+                    scale.isEmpty() ? null : new Track(scale, 3),
+                    loop
+            );
+            if (loop && animation.getDuration() == 0) {
+                throw new IllegalStateException("Looping animation cannot be 0 ticks long");
+            }
+            return animation;
+        }
+        
+        private static void key(
+                TreeMap<Integer,Pair<float[],Easing>> track, int tick, float[] value, Easing easing
+        ) {
+            if (tick < 0) {
+                throw new IllegalArgumentException("Tick cannot be less than 0");
+            }
+            track.put(tick, Pair.of(value, easing));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.engine.animation;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.engine.Object3D;
+import me.kyren223.kapi.utility.Task;
+import me.kyren223.kapi.utility.TickPhase;
+import org.jspecify.annotations.NullMarked;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Evaluates all playing animations in a single pass per sample.<br>
+ * <br>
+ * Instead of every animated object scheduling its own task,
+ * one task samples all animations every {@link #getSampleInterval()} ticks,
+ * and display entities interpolate between samples on the client.<br>
+ * Only one animation can play on an object at a time.
+ */
+@Kapi
+@NullMarked
+public final class Animator {
+    
+    private static final LinkedHashMap<Object3D,Playback> playbacks = new LinkedHashMap<>();
+    private static int sampleInterval = 1;
+    private static int tick = 0;
+    private static boolean running = false;
+    
+    private Animator() {
+        throw new AssertionError("Animator should not be instantiated");
+    }
+    
+    /**
+     * Plays an animation on an object<br>
+     * <br>
+     * The animation is applied on top of the object's current transform.<br>
+     * If another animation is playing on the object, it's stopped first.
+     *
+     * @param object    The object to animate
+     * @param animation The animation to play
+     * @return A handle to the playing animation
+     */
+    @Kapi
+    public static Playback play(Object3D object, Animation animation) {
+        Playback previous = playbacks.get(object);
+        if (previous != null) previous.stop();
+        
+        Playback playback = new Playback(object, animation);
+        playbacks.put(object, playback);
+        if (!running) {
+            running = true;
+            Task.run(Animator::tick)
+                .interval()
+                .phase(TickPhase.TRANSFORM_PROPAGATION)
+                .whileCondition(() -> !playbacks.isEmpty())
+                .onEnd(() -> running = false)
+                .schedule();
+        }
+        return playback;
+    }
+    
+    /**
+     * Gets the interval in ticks between animation samples<br>
+     * Default value is 1.
+     *
+     * @return The sample interval
+     */
+    @Kapi
+    public static int getSampleInterval() {
+        return sampleInterval;
+    }
+    
+    /**
+     * Sets the interval in ticks between animation samples<br>
+     * <br>
+     * Display entities interpolate over the interval on the client,
+     * so higher values are much cheaper while still looking smooth.<br>
+     * Particles are rendered at the sampled transform, so they move in steps.
+     *
+     * @param sampleInterval The sample interval in ticks
+     * @throws IllegalArgumentException If the interval is less than 1
+     */
+    @Kapi
+    public static void setSampleInterval(int sampleInterval) {
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("Sample interval cannot be less than 1");
+        }
+        Animator.sampleInterval = sampleInterval;
+    }
+    
+    /**
+     * @return The amount of animations that are currently playing
+     */
+    @Kapi
+    public static int getPlaying() {
+        return playbacks.size();
+    }
+    
+    static void remove(Playback playback) {
+        playbacks.remove(playback.getObject(), playback);
+    }
+    
+    private static void tick() {
+        if (++tick % sampleInterval != 0) return;
+        
+        // Iterates a copy, systems triggered by the transform may play or stop animations
+        List<Playback> finished = new ArrayList<>();
+        for (Playback playback : new ArrayList<>(playbacks.values())) {
+            if (!playback.isPlaying()) continue;
+            if (playback.advance(sampleInterval, sampleInterval)) continue;
+            remove(playback);
+            finished.add(playback);
+        }
+        
+        // Ended after the pass, so callbacks can safely play new animations
+        finished.forEach(Playback::end);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.engine.animation;
+
+import me.kyren223.kapi.annotations.Kapi;
+import org.jspecify.annotations.NullMarked;
+
+/**
+ * An easing function, used to shape the interpolation between two keyframes.<br>
+ * Maps the progress of a segment (from 0 to 1) to the progress of the value.<br>
+ * <br>
+ * The easing of a keyframe is used for the segment that ends at that keyframe.
+ */
+@Kapi
+@NullMarked
+@FunctionalInterface
+public interface Easing {
+    
+    @Kapi
+    Easing LINEAR = t -> t;
+    
+    /**
+     * Holds the value of the previous keyframe until the next keyframe is reached
+     */
+    @Kapi
+    Easing STEP = t -> t < 1 ? 0 : 1;
+    
+    @Kapi
+    Easing IN_QUAD = t -> t * t;
+    
+    @Kapi
+    Easing OUT_QUAD = t -> t * (2 - t);
+    
+    @Kapi
+    Easing IN_OUT_QUAD = t -> t < 0.5f ? 2 * t * t : -1 + (4 - 2 * t) * t;
+    
+    @Kapi
+    Easing IN_CUBIC = t -> t * t * t;
+    
+    @Kapi
+    Easing OUT_CUBIC = t -> {
+        float f = t - 1;
+        return f * f * f + 1;
+    };
+    
+    @Kapi
+    Easing IN_OUT_CUBIC = t -> {
+        if (t < 0.5f) return 4 * t * t * t;
+        float f = 2 * t - 2;
+        return 0.5f * f * f * f + 1;
+    };
+    
+    @Kapi
+    Easing IN_OUT_SINE = t -> (float) (-(Math.cos(Math.PI * t) - 1) / 2);
+    
+    /**
+     * @param t The progress of the segment, from 0 to 1
+     * @return The eased progress
+     */
+    @Kapi
+    float apply(float t);
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.engine.animation;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.engine.Object3D;
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A handle to an animation that is playing on an object.<br>
+ * Created by {@link Animator#play(Object3D, Animation)}
+ */
+@Kapi
+@NullMarked
+public final class Playback {
+    
+    private final Object3D object;
+    private final Animation animation;
+    private final Matrix4f base;
+    private final Vector3f translation;
+    private final Quaternionf rotation;
+    private final Vector3f scale;
+    private @Nullable Runnable onEnd;
+    private boolean playing;
+    private boolean wasSpawned;
+    private int time;
+    
+    Playback(Object3D object, Animation animation) {
+        this.object = object;
+        this.animation = animation;
+        this.base = new Matrix4f(object.getTransform());
+        this.translation = new Vector3f();
+        this.rotation = new Quaternionf();
+        this.scale = new Vector3f();
+        this.playing = true;
+    }
+    
+    /**
+     * Sets a runnable that is executed when the playback ends,
+     * either because the animation finished, it was stopped,
+     * another animation was played on the object or the object was despawned
+     *
+     * @param onEnd The runnable
+     * @return This playback for chaining
+     */
+    @Kapi
+    public Playback onEnd(Runnable onEnd) {
+        this.onEnd = onEnd;
+        return this;
+    }
+    
+    /**
+     * Stops the animation, the object keeps its current transform
+     */
+    @Kapi
+    public void stop() {
+        if (!playing) return;
+        Animator.remove(this);
+        end();
+    }
+    
+    /**
+     * @return true if the animation is still playing, false otherwise
+     */
+    @Kapi
+    public boolean isPlaying() {
+        return playing;
+    }
+    
+    /**
+     * @return The amount of ticks since the animation started
+     */
+    @Kapi
+    public int getTime() {
+        return time;
+    }
+    
+    @Kapi
+    public Object3D getObject() {
+        return object;
+    }
+    
+    @Kapi
+    public Animation getAnimation() {
+        return animation;
+    }
+    
+    boolean advance(int ticks, int interpolationDuration) {
+        // Objects that are despawned stop their animation, unless they weren't spawned yet
+        if (object.isSpawned()) wasSpawned = true;
+        else if (wasSpawned) return false;
+        
+        time += ticks;
+        int duration = animation.getDuration();
+        boolean finished = !animation.isLooping() && time >= duration;
+        animation.sample(
+                animation.isLooping() ? time % duration : Math.min(time, duration),
+                translation, rotation, scale
+        );
+        object.transform(transform -> transform.set(base)
+                                               .translate(translation)
+                                               .rotate(rotation)
+                                               .scale(scale));
+        if (object.isSpawned()) object.syncDisplays(interpolationDuration);
+        return !finished;
+    }
+    
+    void end() {
+        playing = false;
+        if (onEnd != null) onEnd.run();
+    }
+}
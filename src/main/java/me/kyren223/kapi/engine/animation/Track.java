@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.engine.animation;
+
+import me.kyren223.kapi.data.Pair;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.jspecify.annotations.NullMarked;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A single animated property, keyframes are stored in flat arrays sorted by tick.
+ */
+@NullMarked
+final class Track {
+    
+    private final int[] ticks;
+    private final float[] values;
+    private final Easing[] easings;
+    private final int stride;
+    
+    Track(TreeMap<Integer,Pair<float[],Easing>> keyframes, int stride) {
+        this.stride = stride;
+        this.ticks = new int[keyframes.size()];
+        this.values = new float[keyframes.size() * stride];
+        this.easings = new Easing[keyframes.size()];
+        int i = 0;
+        for (Map.Entry<Integer,Pair<float[],Easing>> keyframe : keyframes.entrySet()) {
+            ticks[i] = keyframe.getKey();
+            System.arraycopy(keyframe.getValue().getFirst(), 0, values, i * stride, stride);
+            easings[i] = keyframe.getValue().getSecond();
+            i++;
+        }
+    }
+    
+    int getDuration() {
+        return ticks[ticks.length - 1];
+    }
+    
+    void sample(int time, Vector3f dest) {
+        int to = segment(time);
+        int from = Math.max(to - 1, 0);
+        float t = progress(time, from, to);
+        dest.set(values[from * 3], values[from * 3 + 1], values[from * 3 + 2]);
+        if (t == 0) return;
+        dest.lerp(new Vector3f(values[to * 3], values[to * 3 + 1], values[to * 3 + 2]), t);
+    }
+    
+    void sample(int time, Quaternionf dest) {
+        int to = segment(time);
+        int from = Math.max(to - 1, 0);
+        float t = progress(time, from, to);
+        dest.set(values[from * 4], values[from * 4 + 1], values[from * 4 + 2], values[from * 4 + 3]);
+        if (t == 0) return;
+        dest.slerp(new Quaternionf(
+                values[to * 4], values[to * 4 + 1], values[to * 4 + 2], values[to * 4 + 3]), t);
+    }
+    
+    private int segment(int time) {
+        // Index of the first keyframe at or after the time, clamped to the last keyframe
+        int index = Arrays.binarySearch(ticks, time);
+        if (index < 0) index = -index - 1;
+        return Math.min(index, ticks.length - 1);
+    }
+    
+    private float progress(int time, int from, int to) {
+        if (from == to || time <= ticks[from]) return 0;
+        if (time >= ticks[to]) return 1;
+        float t = (float) (time - ticks[from]) / (ticks[to] - ticks[from]);
+        return easings[to].apply(t);
+    }
+}
@@ -41,6 +41,7 @@
 package me.kyren223.kapi.engine.ecs;
 
 import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.utility.TickPhase;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
@@ -78,28 +79,39 @@ public final class SystemTrigger {
     private final int delay;
     private final int period;
     private final @Nullable String event;
+    private final TickPhase phase;
+    private final boolean staggered;
     
-    private SystemTrigger(int delay, int period) {
+    private SystemTrigger(int delay, int period, TickPhase phase, boolean staggered) {
         this.event = null;
         this.delay = delay;
         this.period = period;
+        this.phase = phase;
+        this.staggered = staggered;
     }
     
     private SystemTrigger(String event) {
         this.delay = 0;
         this.period = 0;
         this.event = event;
+        this.phase = TickPhase.DEFAULT;
+        this.staggered = false;
     }
     
     /**
-     * Creates a trigger that executes the system every {@code period} ticks.
+     * Creates a trigger that executes the system every {@code period} ticks.<br>
+     * <br>
+     * The trigger is staggered, the first execution happens within the first period,
+     * in the tick with the least amount of scheduled tasks.<br>
+     * This spreads the systems of objects that spawn in the same tick across the period,
+     * use {@link #exact()} to always start on the first tick.
      *
      * @param period Every how many ticks the system should be executed
      * @return A new trigger
      */
     @Kapi
     public static SystemTrigger interval(int period) {
-        return new SystemTrigger(0, period);
+        return new SystemTrigger(0, period, TickPhase.DEFAULT, true);
     }
     
     /**
@@ -110,7 +122,7 @@ public final class SystemTrigger {
      */
     @Kapi
     public static SystemTrigger delay(int delay) {
-        return new SystemTrigger(delay, 0);
+        return new SystemTrigger(delay, 0, TickPhase.DEFAULT, false);
     }
     
     /**
@@ -124,7 +136,7 @@ public final class SystemTrigger {
      */
     @Kapi
     public static SystemTrigger delayedInterval(int delay, int period) {
-        return new SystemTrigger(delay, period);
+        return new SystemTrigger(delay, period, TickPhase.DEFAULT, false);
     }
     
     /**
@@ -139,6 +151,68 @@ public final class SystemTrigger {
         return new SystemTrigger(event);
     }
     
+    /**
+     * Creates a copy of this trigger that executes the system in the given phase of the tick.<br>
+     * Triggers execute in {@link TickPhase#SIMULATION} by default,
+     * so systems always run before the object is rendered.<br>
+     * <br>
+     * Example:
+     * <pre><code>
+     *     template.addSystem(SystemTrigger.TICK.inPhase(TickPhase.INPUT), this::readInput);
+     * </code></pre>
+     *
+     * @param phase The phase to execute the system in
+     * @return A new trigger
+     * @throws IllegalStateException if the trigger is an event trigger
+     */
+    @Kapi
+    public SystemTrigger inPhase(TickPhase phase) {
+        if (event != null) {
+            throw new IllegalStateException("Event triggers execute when the event is triggered");
+        }
+        return new SystemTrigger(delay, period, phase, staggered);
+    }
+    
+    /**
+     * Creates a copy of this trigger that is not staggered,
+     * the system is executed exactly after the delay of the trigger.
+     *
+     * @return A new trigger
+     * @throws IllegalStateException if the trigger is an event trigger
+     * @see #interval(int)
+     */
+    @Kapi
+    public SystemTrigger exact() {
+        if (event != null) {
+            throw new IllegalStateException("Event triggers execute when the event is triggered");
+        }
+        return new SystemTrigger(delay, period, phase, false);
+    }
+    
+    /**
+     * Checks if this trigger is staggered, see {@link #interval(int)}.
+     *
+     * @return True if the trigger is staggered, false otherwise
+     */
+    @Kapi
+    public boolean isStaggered() {
+        return staggered;
+    }
+    
+    /**
+     * Gets the phase of the tick this trigger executes in.
+     *
+     * @return The phase
+     * @throws IllegalStateException if the trigger is an event trigger
+     */
+    @Kapi
+    public TickPhase getPhase() {
+        if (event != null) {
+            throw new IllegalStateException("This trigger is an event trigger");
+        }
+        return phase;
+    }
+    
     /**
      * Gets the delay of this trigger.
      *
@@ -49,6 +49,7 @@ import org.bukkit.entity.BlockDisplay;
 import org.bukkit.entity.Display;
 import org.bukkit.util.Transformation;
 import org.bukkit.util.Vector;
+import org.joml.Matrix4fc;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
@@ -126,6 +127,7 @@ public class BlockDisplayRender extends BlockDisplayData implements Renderable {
                     "Cannot despawn a block display that has not been spawned");
         }
         entity.remove();
+        entity = null;
     }
     
     @Kapi
@@ -134,6 +136,13 @@ public class BlockDisplayRender extends BlockDisplayData implements Renderable {
         return entity != null;
     }
     
+    @Kapi
+    @Override
+    public void update(World world, Vector point, Matrix4fc transform, int interpolationDuration) {
+        if (entity == null) return;
+        DisplayTransforms.apply(entity, getTransformation(), point, transform, interpolationDuration);
+    }
+    
     @Kapi
     @Override
     public void setBlock(BlockData block) {
@@ -49,6 +49,7 @@ import org.bukkit.entity.ItemDisplay;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.util.Transformation;
 import org.bukkit.util.Vector;
+import org.joml.Matrix4fc;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
@@ -123,6 +124,7 @@ public class ItemDisplayRender extends ItemDisplayData implements Renderable {
                     "Cannot despawn an item display that has not been spawned");
         }
         entity.remove();
+        entity = null;
     }
     
     @Kapi
@@ -131,6 +133,13 @@ public class ItemDisplayRender extends ItemDisplayData implements Renderable {
         return entity != null;
     }
     
+    @Kapi
+    @Override
+    public void update(World world, Vector point, Matrix4fc transform, int interpolationDuration) {
+        if (entity == null) return;
+        DisplayTransforms.apply(entity, getTransformation(), point, transform, interpolationDuration);
+    }
+    
     @Kapi
     @Override
     public void setTransformation(Transformation transformation) {
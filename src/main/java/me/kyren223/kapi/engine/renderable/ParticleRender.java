@@ -42,6 +42,7 @@ package me.kyren223.kapi.engine.renderable;
 
 import me.kyren223.kapi.annotations.Kapi;
 import me.kyren223.kapi.data.ParticleData;
+import me.kyren223.kapi.utility.Priority;
 import org.bukkit.World;
 import org.bukkit.util.Vector;
 import org.jspecify.annotations.NullMarked;
@@ -73,6 +74,19 @@ public class ParticleRender implements Renderable {
         );
     }
     
+    /**
+     * Renders the particle, thinned according to the given priority.
+     *
+     * @param world    The world to render in
+     * @param point    The point to render at
+     * @param priority The priority of the object that is rendered
+     * @see ParticleData#spawn(World, Vector, Priority)
+     */
+    @Kapi
+    public void render(World world, Vector point, Priority priority) {
+        particle.spawn(world, point, priority);
+    }
+    
     @Override
     public void despawn(World world, Vector point) {
         // Do nothing, particles are automatically despawned after some time
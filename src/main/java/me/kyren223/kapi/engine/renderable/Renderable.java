@@ -44,6 +44,7 @@ import me.kyren223.kapi.annotations.Kapi;
 import me.kyren223.kapi.engine.Object3D;
 import org.bukkit.World;
 import org.bukkit.util.Vector;
+import org.joml.Matrix4fc;
 import org.jspecify.annotations.NullMarked;
 
 /**
@@ -64,6 +65,21 @@ public interface Renderable {
     @Kapi
     boolean isSpawned();
     
+    /**
+     * Moves the spawned entity of this renderable to a new point,
+     * applying the rotation and scale of the object's world transform<br>
+     * Renderables without an entity (such as particles) ignore this.
+     *
+     * @param world                 The world of the object
+     * @param point                 The new point in world space
+     * @param transform             The world transform of the object
+     * @param interpolationDuration The amount of ticks the client interpolates over
+     */
+    @Kapi
+    default void update(World world, Vector point, Matrix4fc transform, int interpolationDuration) {
+        // Nothing to update by default
+    }
+    
     @Kapi
     Renderable clone();
 }
@@ -48,6 +48,7 @@ import org.bukkit.entity.Display;
 import org.bukkit.entity.TextDisplay;
 import org.bukkit.util.Transformation;
 import org.bukkit.util.Vector;
+import org.joml.Matrix4fc;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
@@ -135,6 +136,7 @@ public class TextDisplayRender extends TextDisplayData implements Renderable {
                     "Cannot despawn a text display that has not been spawned");
         }
         entity.remove();
+        entity = null;
     }
     
     @Kapi
@@ -143,6 +145,13 @@ public class TextDisplayRender extends TextDisplayData implements Renderable {
         return entity != null;
     }
     
+    @Kapi
+    @Override
+    public void update(World world, Vector point, Matrix4fc transform, int interpolationDuration) {
+        if (entity == null) return;
+        DisplayTransforms.apply(entity, getTransformation(), point, transform, interpolationDuration);
+    }
+    
     @Override
     @Kapi
     public void setTransformation(Transformation transformation) {
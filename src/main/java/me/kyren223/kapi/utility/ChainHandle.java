@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.utility;
+
+import me.kyren223.kapi.annotations.Kapi;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A chain that was scheduled using {@link TaskChain#schedule()}<br>
+ * Can be used to cancel the whole chain, or to wait for it to end.<br>
+ * <br>
+ * All the steps of the chain, including nested chains,
+ * are driven by this single scheduler entry.
+ */
+@Kapi
+@NullMarked
+public final class ChainHandle extends TimingWheel.Timer {
+    
+    /**
+     * The state of a chain.
+     */
+    @Kapi
+    public enum State {
+        /**
+         * The chain has not ended yet
+         */
+        RUNNING,
+        /**
+         * All the steps of the chain have ended
+         */
+        COMPLETED,
+        /**
+         * The chain was cancelled using {@link ChainHandle#cancel()}
+         */
+        CANCELLED,
+        /**
+         * The timeout of the chain has passed before all the steps have ended
+         */
+        TIMED_OUT,
+        /**
+         * A step of the chain has thrown an exception
+         */
+        FAILED,
+    }
+    
+    private final TaskChain.Plan plan;
+    private final String label;
+    private final CompletableFuture<State> future;
+    private @Nullable Cursor root;
+    private State state;
+    
+    // Package-private
+    ChainHandle(TaskChain.Plan plan, String label) {
+        this.plan = plan;
+        this.label = label;
+        this.future = new CompletableFuture<>();
+        this.root = null;
+        this.state = State.RUNNING;
+    }
+    
+    @Override
+    void run() {
+        if (state != State.RUNNING) return;
+        
+        long now = TimingWheel.getCurrentTick();
+        if (root == null) root = new Cursor(plan, now);
+        
+        long wake;
+        try {
+            wake = advance(root, now);
+        } catch (RuntimeException e) {
+            Log.error("Task chain failed due to an exception");
+            e.printStackTrace();
+            end(State.FAILED);
+            return;
+        }
+        
+        if (state != State.RUNNING) return;
+        if (wake == -1) end(root.state);
+        else TimingWheel.schedule(this, (int) Math.min(wake - now, Integer.MAX_VALUE));
+    }
+    
+    @Override
+    String getLabel() {
+        return label;
+    }
+    
+    /**
+     * Cancels the chain, including all nested chains.<br>
+     * Steps that have not run yet will not run.<br>
+     * <br>
+     * Does nothing if the chain has already ended.
+     */
+    @Kapi
+    public void cancel() {
+        if (state != State.RUNNING) return;
+        end(State.CANCELLED);
+    }
+    
+    /**
+     * @return The current state of the chain
+     */
+    @Kapi
+    public State getState() {
+        return state;
+    }
+    
+    /**
+     * @return true if the chain has not ended yet, false otherwise
+     */
+    @Kapi
+    public boolean isRunning() {
+        return state == State.RUNNING;
+    }
+    
+    /**
+     * Returns a future that is completed with the final state of the chain once it ends.<br>
+     * The future is completed on the main thread,
+     * so dependent actions such as {@link CompletableFuture#thenAccept} run on the main thread.<br>
+     * <br>
+     * Note: never block the main thread waiting for this future, as the chain runs on it.
+     *
+     * @return A future of the final state of the chain
+     */
+    @Kapi
+    public CompletableFuture<State> getFuture() {
+        return future;
+    }
+    
+    private void end(State state) {
+        this.state = state;
+        TimingWheel.cancel(this);
+        future.complete(state);
+    }
+    
+    /**
+     * Advances the cursor as far as it can go in the current tick.
+     *
+     * @return The tick the cursor needs to be advanced at, or -1 if it has ended
+     */
+    private long advance(Cursor cursor, long now) {
+        if (cursor.deadline != -1 && now >= cursor.deadline) {
+            cursor.state = State.TIMED_OUT;
+            if (cursor.onTimeout != null) cursor.onTimeout.run();
+            return -1;
+        }
+        
+        while (cursor.index < cursor.steps.size()) {
+            if (state != State.RUNNING) return -1;
+            
+            TaskChain.Step step = cursor.steps.get(cursor.index);
+            long wake = -1;
+            if (step instanceof TaskChain.Run run) {
+                run.action().accept(this);
+            } else if (step instanceof TaskChain.Delay delay) {
+                if (cursor.wakeTick == -1) cursor.wakeTick = now + delay.ticks();
+                if (now < cursor.wakeTick) wake = cursor.wakeTick;
+            } else if (step instanceof TaskChain.WaitUntil waitUntil) {
+                if (!waitUntil.condition().getAsBoolean()) wake = now + 1;
+            } else if (step instanceof TaskChain.Repeat repeat) {
+                if (cursor.wakeTick == -1 || now >= cursor.wakeTick) {
+                    repeat.action().run();
+                    cursor.count++;
+                    cursor.wakeTick = now + repeat.interval();
+                }
+                if (cursor.count < repeat.times()) wake = cursor.wakeTick;
+            } else if (step instanceof TaskChain.CompiledBranch branch) {
+                wake = advanceBranch(cursor, branch, now);
+            }
+            
+            if (wake != -1) {
+                return cursor.deadline == -1 ? wake : Math.min(wake, cursor.deadline);
+            }
+            cursor.index++;
+            cursor.wakeTick = -1;
+            cursor.count = 0;
+            cursor.children = null;
+        }
+        
+        cursor.state = State.COMPLETED;
+        return -1;
+    }
+    
+    private long advanceBranch(Cursor cursor, TaskChain.CompiledBranch branch, long now) {
+        List<Cursor> children = cursor.children;
+        if (children == null) {
+            children = new ArrayList<>(branch.plans().size());
+            for (TaskChain.Plan plan : branch.plans()) {
+                children.add(new Cursor(plan, now));
+            }
+            cursor.children = children;
+        }
+        
+        long wake = Long.MAX_VALUE;
+        boolean ended = true;
+        for (Cursor child : children) {
+            if (child.state == State.RUNNING) {
+                long childWake = advance(child, now);
+                if (childWake != -1) wake = Math.min(wake, childWake);
+            }
+            if (state != State.RUNNING) return -1;
+            
+            if (branch.race() && child.state == State.COMPLETED) {
+                // The rest of the chains lost the race
+                for (Cursor other : children) {
+                    if (other.state == State.RUNNING) other.state = State.CANCELLED;
+                }
+                return -1;
+            }
+            if (child.state == State.RUNNING) ended = false;
+        }
+        return ended ? -1 : wake;
+    }
+    
+    private static final class Cursor {
+        private final List<TaskChain.Step> steps;
+        private final long deadline;
+        private final @Nullable Runnable onTimeout;
+        private State state;
+        private int index;
+        private long wakeTick;
+        private int count;
+        private @Nullable List<Cursor> children;
+        
+        private Cursor(TaskChain.Plan plan, long now) {
+            this.steps = plan.steps();
+            this.deadline = plan.timeout() == -1 ? -1 : now + plan.timeout();
+            this.onTimeout = plan.onTimeout();
+            this.state = State.RUNNING;
+            this.index = 0;
+            this.wakeTick = -1;
+            this.count = 0;
+            this.children = null;
+        }
+    }
+}
@@ -51,7 +51,10 @@ import java.util.function.Consumer;
 
 /**
  * A utility class that manages configuration files.<br>
- * Allows CRUD operations on documents (.yml configs).
+ * Allows CRUD operations on documents (.yml configs).<br>
+ * Every operation goes to disk on the calling thread,
+ * see {@link ConfigStore} for documents that are accessed often.<br>
+ * Documents can be bound to records or classes with {@link ConfigBinding}.
  */
 @NullMarked
 @Kapi
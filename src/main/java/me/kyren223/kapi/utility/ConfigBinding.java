@@ -0,0 +1,505 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.utility;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.data.Option;
+import me.kyren223.kapi.data.Result;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Binds configuration documents to records or classes,
+ * so hot code reads plain fields instead of looking up string paths.<br>
+ * <br>
+ * Every record component or field is bound to the key with the same name,
+ * supported types are primitives and their wrappers, strings, enums,
+ * {@link ConfigurationSerializable} types, nested records and classes,
+ * and {@link List}, {@link Map} (with string keys) and {@link Option} of those.<br>
+ * The accessors are compiled once per type, an unsupported type fails when the binding is created.<br>
+ * <br>
+ * Values are validated when a document is read, a missing or mistyped value is an error,
+ * except for {@link Option} values, which are empty when missing,
+ * and fields of classes, which keep their initial value when missing.<br>
+ * Records may validate their values in their constructor by throwing an {@link IllegalArgumentException}.<br>
+ * Classes must have a constructor without parameters, static and transient fields are ignored.
+ *
+ * @param <T> The type bound to the documents
+ */
+@Kapi
+@NullMarked
+public final class ConfigBinding<T> {
+    
+    private static final Map<Class<?>,ConfigBinding<?>> bindings = new ConcurrentHashMap<>();
+    private static final MethodType FACTORY = MethodType.methodType(Object.class, Object[].class);
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+    
+    private final Class<T> type;
+    private final Property[] properties;
+    private final MethodHandle constructor;
+    private final boolean record;
+    
+    private ConfigBinding(Class<T> type, Property[] properties, MethodHandle constructor, boolean record) {
+        this.type = type;
+        this.properties = properties;
+        this.constructor = constructor;
+        this.record = record;
+    }
+    
+    /**
+     * Gets the binding of a type, compiling it the first time.
+     *
+     * @param type The record or class to bind
+     * @return The binding
+     * @throws IllegalArgumentException if the type or any of its values can't be bound
+     */
+    @Kapi
+    @SuppressWarnings("unchecked")
+    public static <T> ConfigBinding<T> of(Class<T> type) {
+        ConfigBinding<?> binding = bindings.get(type);
+        if (binding != null) return (ConfigBinding<T>) binding;
+        return compile(type);
+    }
+    
+    /**
+     * @return The type bound to the documents
+     */
+    @Kapi
+    public Class<T> getType() {
+        return type;
+    }
+    
+    /**
+     * Reads and validates a document or a section of a document.
+     *
+     * @param section The section to read
+     * @return The bound object or a message describing the first invalid value
+     */
+    @Kapi
+    public Result<T,String> read(ConfigurationSection section) {
+        try {
+            return Result.ok(read(section::get, ""));
+        } catch (BindException e) {
+            return Result.err(e.getMessage());
+        }
+    }
+    
+    /**
+     * Reads and validates a document from the {@link ConfigStore}.<br>
+     * Call this when the plugin is enabled, so invalid configs are reported at startup.
+     *
+     * @param path The path to the config file (relative to the data folder)
+     * @return The bound object or a message describing the first invalid value
+     */
+    @Kapi
+    public Result<T,String> load(String path) {
+        return read(ConfigStore.get(path)).mapErr(message -> path + ": " + message);
+    }
+    
+    /**
+     * Writes all values of an object to a document or a section of a document.
+     *
+     * @param value   The object to write
+     * @param section The section to write to
+     */
+    @Kapi
+    public void write(T value, ConfigurationSection section) {
+        for (Property property : properties) {
+            @Nullable Object yaml = property.converter.write(property.get(value));
+            if (yaml instanceof Map<?,?> map) section.createSection(property.name, map);
+            else section.set(property.name, yaml);
+        }
+    }
+    
+    /**
+     * Writes all values of an object to a document in the {@link ConfigStore}
+     * and marks it as dirty.
+     *
+     * @param path  The path to the config file (relative to the data folder)
+     * @param value The object to write
+     */
+    @Kapi
+    public void save(String path, T value) {
+        ConfigStore.update(path, config -> write(value, config));
+    }
+    
+    private T read(Function<String,@Nullable Object> source, String prefix) throws BindException {
+        Object[] values = new Object[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            Property property = properties[i];
+            String key = prefix + property.name;
+            @Nullable Object raw = source.apply(property.name);
+            if (raw != null) {
+                values[i] = property.converter.read(raw, key);
+            } else if (property.converter instanceof OptionConverter) {
+                values[i] = Option.none();
+            } else if (record) {
+                throw new BindException("Missing value '" + key + "'");
+            }
+        }
+        
+        try {
+            if (record) return type.cast(constructor.invokeExact(values));
+            Object instance = constructor.invokeExact(values);
+            for (int i = 0; i < properties.length; i++) {
+                if (values[i] != null) properties[i].set(instance, values[i]);
+            }
+            return type.cast(instance);
+        } catch (IllegalArgumentException e) {
+            String section = prefix.isEmpty() ? "" : " in '" + prefix.substring(0, prefix.length() - 1) + "'";
+            throw new BindException("Invalid values" + section + ": " + e.getMessage());
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to create " + type.getName(), e);
+        }
+    }
+    
+    private static synchronized <T> ConfigBinding<T> compile(Class<T> type) {
+        @SuppressWarnings("unchecked")
+        ConfigBinding<T> existing = (ConfigBinding<T>) bindings.get(type);
+        if (existing != null) return existing;
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.getName().startsWith("java.")) {
+            throw new IllegalArgumentException("Cannot bind " + type.getName() + " to a config");
+        }
+        
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<NestedConverter> nested = new ArrayList<>();
+        ConfigBinding<T> binding;
+        try {
+            if (type.isRecord()) {
+                RecordComponent[] components = type.getRecordComponents();
+                Property[] properties = new Property[components.length];
+                Class<?>[] parameters = new Class<?>[components.length];
+                for (int i = 0; i < components.length; i++) {
+                    RecordComponent component = components[i];
+                    Method accessor = component.getAccessor();
+                    accessor.setAccessible(true);
+                    MethodHandle getter = lookup.unreflect(accessor).asType(GETTER);
+                    Converter converter = converter(component.getGenericType(), nested, type);
+                    properties[i] = new Property(component.getName(), converter, getter, null);
+                    parameters[i] = component.getType();
+                }
+                Constructor<T> canonical = type.getDeclaredConstructor(parameters);
+                canonical.setAccessible(true);
+                MethodHandle constructor = lookup.unreflectConstructor(canonical)
+                        .asSpreader(Object[].class, parameters.length)
+                        .asType(FACTORY);
+                binding = new ConfigBinding<>(type, properties, constructor, true);
+            } else {
+                List<Property> properties = new ArrayList<>();
+                for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+                    for (Field field : current.getDeclaredFields()) {
+                        int modifiers = field.getModifiers();
+                        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                            continue;
+                        }
+                        field.setAccessible(true);
+                        Converter converter = converter(field.getGenericType(), nested, type);
+                        properties.add(new Property(field.getName(), converter,
+                                lookup.unreflectGetter(field).asType(GETTER),
+                                lookup.unreflectSetter(field).asType(SETTER)));
+                    }
+                }
+                Constructor<T> empty = type.getDeclaredConstructor();
+                empty.setAccessible(true);
+                // Takes the values array like the record constructor, but ignores it
+                MethodHandle constructor = MethodHandles.dropArguments(
+                        lookup.unreflectConstructor(empty).asType(MethodType.methodType(Object.class)),
+                        0, Object[].class);
+                binding = new ConfigBinding<>(type, properties.toArray(new Property[0]), constructor, false);
+            }
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Cannot bind " + type.getName()
+                    + " to a config, it must be a record or have a constructor without parameters");
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot bind " + type.getName() + " to a config", e);
+        }
+        
+        // Nested types are resolved after caching this one, so types may contain themselves
+        bindings.put(type, binding);
+        try {
+            for (NestedConverter converter : nested) converter.resolve();
+        } catch (IllegalArgumentException e) {
+            bindings.remove(type);
+            throw e;
+        }
+        return binding;
+    }
+    
+    private static Converter converter(Type generic, List<NestedConverter> nested, Class<?> owner) {
+        if (generic instanceof ParameterizedType parameterized && parameterized.getRawType() instanceof Class<?> raw) {
+            Type[] arguments = parameterized.getActualTypeArguments();
+            if (raw == List.class) {
+                return new ListConverter(converter(arguments[0], nested, owner));
+            }
+            if (raw == Option.class) {
+                return new OptionConverter(converter(arguments[0], nested, owner));
+            }
+            if (raw == Map.class && arguments[0] == String.class) {
+                return new MapConverter(converter(arguments[1], nested, owner));
+            }
+        }
+        if (!(generic instanceof Class<?> type)) {
+            throw new IllegalArgumentException("Unsupported config type " + generic.getTypeName()
+                    + " in " + owner.getName());
+        }
+        
+        Class<?> boxed = MethodType.methodType(type).wrap().returnType();
+        if (Number.class.isAssignableFrom(boxed) && boxed.getName().startsWith("java.lang.")) {
+            return new NumberConverter(boxed);
+        }
+        if (boxed == Boolean.class || boxed == String.class) {
+            return new ScalarConverter(boxed);
+        }
+        if (type.isEnum()) {
+            return new EnumConverter(type);
+        }
+        if (ConfigurationSerializable.class.isAssignableFrom(type)) {
+            return new ScalarConverter(type);
+        }
+        NestedConverter converter = new NestedConverter(type);
+        nested.add(converter);
+        return converter;
+    }
+    
+    private static String describe(Object raw) {
+        return raw instanceof ConfigurationSection || raw instanceof Map<?,?> ? "a section"
+                : raw instanceof List<?> ? "a list" : "'" + raw + "'";
+    }
+    
+    private static final class BindException extends Exception {
+        private BindException(String message) {
+            super(message, null, false, false);
+        }
+    }
+    
+    private record Property(String name, Converter converter, MethodHandle getter, @Nullable MethodHandle setter) {
+        private Object get(Object instance) {
+            try {
+                return getter.invokeExact(instance);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to get " + name, e);
+            }
+        }
+        
+        private void set(Object instance, Object value) {
+            try {
+                Objects.requireNonNull(setter).invokeExact(instance, value);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to set " + name, e);
+            }
+        }
+    }
+    
+    private interface Converter {
+        Object read(Object raw, String key) throws BindException;
+        
+        @Nullable Object write(@Nullable Object value);
+    }
+    
+    private record ScalarConverter(Class<?> type) implements Converter {
+        @Override
+        public Object read(Object raw, String key) throws BindException {
+            if (type == String.class && (raw instanceof Number || raw instanceof Boolean)) return raw.toString();
+            if (type.isInstance(raw)) return raw;
+            throw new BindException("Expected " + type.getSimpleName() + " at '" + key + "' but found " + describe(raw));
+        }
+        
+        @Override
+        public @Nullable Object write(@Nullable Object value) {
+            return value;
+        }
+    }
+    
+    private record NumberConverter(Class<?> type) implements Converter {
+        @Override
+        public Object read(Object raw, String key) throws BindException {
+            if (raw instanceof Number number) {
+                boolean integral = number instanceof Integer || number instanceof Long
+                        || number instanceof Short || number instanceof Byte;
+                if (type == Double.class) return number.doubleValue();
+                if (type == Float.class) return number.floatValue();
+                if (integral) {
+                    long value = number.longValue();
+                    if (type == Long.class) return value;
+                    if (type == Integer.class && value == (int) value) return (int) value;
+                    if (type == Short.class && value == (short) value) return (short) value;
+                    if (type == Byte.class && value == (byte) value) return (byte) value;
+                    throw new BindException("Value " + value + " at '" + key + "' is out of range");
+                }
+            }
+            String expected = type == Double.class || type == Float.class ? "a number" : "a whole number";
+            throw new BindException("Expected " + expected + " at '" + key + "' but found " + describe(raw));
+        }
+        
+        @Override
+        public @Nullable Object write(@Nullable Object value) {
+            return value;
+        }
+    }
+    
+    private record EnumConverter(Class<?> type) implements Converter {
+        @Override
+        public Object read(Object raw, String key) throws BindException {
+            if (raw instanceof String name) {
+                for (Object constant : type.getEnumConstants()) {
+                    if (((Enum<?>) constant).name().equalsIgnoreCase(name)) return constant;
+                }
+            }
+            throw new BindException("Expected one of " + Arrays.toString(type.getEnumConstants())
+                    + " at '" + key + "' but found " + describe(raw));
+        }
+        
+        @Override
+        public @Nullable Object write(@Nullable Object value) {
+            return value == null ? null : ((Enum<?>) value).name();
+        }
+    }
+    
+    private record ListConverter(Converter element) implements Converter {
+        @Override
+        public Object read(Object raw, String key) throws BindException {
+            if (!(raw instanceof List<?> list)) {
+                throw new BindException("Expected a list at '" + key + "' but found " + describe(raw));
+            }
+            List<Object> values = new ArrayList<>(list.size());
+            for (int i = 0; i < list.size(); i++) {
+                Object value = list.get(i);
+                if (value == null) throw new BindException("Missing value '" + key + "[" + i + "]'");
+                values.add(element.read(value, key + "[" + i + "]"));
+            }
+            return Collections.unmodifiableList(values);
+        }
+        
+        @Override
+        public @Nullable Object write(@Nullable Object value) {
+            if (value == null) return null;
+            List<@Nullable Object> list = new ArrayList<>();
+            for (Object item : (List<?>) value) list.add(element.write(item));
+            return list;
+        }
+    }
+    
+    private record MapConverter(Converter value) implements Converter {
+        @Override
+        public Object read(Object raw, String key) throws BindException {
+            Map<?,?> map;
+            if (raw instanceof ConfigurationSection section) map = section.getValues(false);
+            else if (raw instanceof Map<?,?> values) map = values;
+            else throw new BindException("Expected a section at '" + key + "' but found " + describe(raw));
+            
+            Map<String,Object> values = new LinkedHashMap<>();
+            for (Map.Entry<?,?> entry : map.entrySet()) {
+                String name = String.valueOf(entry.getKey());
+                if (entry.getValue() == null) throw new BindException("Missing value '" + key + "." + name + "'");
+                values.put(name, value.read(entry.getValue(), key + "." + name));
+            }
+            return Collections.unmodifiableMap(values);
+        }
+        
+        @Override
+        public @Nullable Object write(@Nullable Object map) {
+            if (map == null) return null;
+            Map<String,@Nullable Object> values = new LinkedHashMap<>();
+            for (Map.Entry<?,?> entry : ((Map<?,?>) map).entrySet()) {
+                values.put(String.valueOf(entry.getKey()), value.write(entry.getValue()));
+            }
+            return values;
+        }
+    }
+    
+    private record OptionConverter(Converter value) implements Converter {
+        @Override
+        public Object read(Object raw, String key) throws BindException {
+            return Option.some(value.read(raw, key));
+        }
+        
+        @Override
+        public @Nullable Object write(@Nullable Object option) {
+            return option == null ? null : value.write(((Option<?>) option).get());
+        }
+    }
+    
+    private static final class NestedConverter implements Converter {
+        private final Class<?> type;
+        private @Nullable ConfigBinding<?> binding;
+        
+        private NestedConverter(Class<?> type) {
+            this.type = type;
+        }
+        
+        private void resolve() {
+            binding = of(type);
+        }
+        
+        @Override
+        public Object read(Object raw, String key) throws BindException {
+            ConfigBinding<?> binding = Objects.requireNonNull(this.binding);
+            if (raw instanceof ConfigurationSection section) return binding.read(section::get, key + ".");
+            if (raw instanceof Map<?,?> map) return binding.read(map::get, key + ".");
+            throw new BindException("Expected a section at '" + key + "' but found " + describe(raw));
+        }
+        
+        @Override
+        public @Nullable Object write(@Nullable Object value) {
+            if (value == null) return null;
+            ConfigBinding<?> binding = Objects.requireNonNull(this.binding);
+            Map<String,Object> values = new LinkedHashMap<>();
+            for (Property property : binding.properties) {
+                @Nullable Object yaml = property.converter.write(property.get(value));
+                if (yaml != null) values.put(property.name, yaml);
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,500 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.utility;
+
+import me.kyren223.kapi.annotations.Kapi;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A managed store of configuration files, an alternative to {@link Config}
+ * for documents that are read and written often, such as player data.<br>
+ * <br>
+ * Documents are parsed once and kept in memory, modifications are marked dirty
+ * and written to disk off the main thread, at most once per document every
+ * {@link #getFlushInterval()} ticks.<br>
+ * Files are written to a temporary file first and then renamed,
+ * so a crash while writing never leaves a partially written document.<br>
+ * <br>
+ * Memory is bounded by {@link #getMaxSize()}, the least recently used documents are evicted first,
+ * dirty documents are written before they are evicted.
+ * Use {@link #pin(String)} to keep hot documents in memory.<br>
+ * <br>
+ * Documents must only be accessed from the main thread.
+ * Files edited while the server is running can be reloaded with {@link ConfigWatcher}.
+ * Dirty documents are written when the plugin is disabled, see {@link #close()}.
+ */
+@Kapi
+@NullMarked
+public final class ConfigStore {
+    
+    private static final int SIZE_FACTOR = 8;
+    private static final long MIN_SIZE = 1024;
+    
+    // Access ordered, the least recently used document is first
+    private static final Map<String,Document> documents = new LinkedHashMap<>(16, 0.75f, true);
+    private static final List<Document> dirty = new ArrayList<>();
+    // Documents that were written but may not be on disk yet, so they aren't read back from disk
+    private static final Map<String,Document> writing = new ConcurrentHashMap<>();
+    // Hashes of the files written while the ConfigWatcher is running, so they aren't reloaded
+    private static final Map<String,Integer> written = new ConcurrentHashMap<>();
+    private static final ExecutorService writer = createWriter();
+    private static int flushInterval = 100;
+    private static long maxSize = 64L * 1024 * 1024;
+    private static long size = 0;
+    private static @Nullable ScheduledTask flushTask;
+    
+    private ConfigStore() {
+        throw new AssertionError("ConfigStore should not be instantiated");
+    }
+    
+    /**
+     * Gets a document, parsing it from disk only if it's not in memory.<br>
+     * If the file doesn't exist or any errors occur, an empty document is returned.<br>
+     * <br>
+     * Modifications to the document must be followed by {@link #markDirty(String)},
+     * or use {@link #update(String, Consumer)}.
+     *
+     * @param path The path to the config file (relative to the data folder)
+     * @return The document
+     */
+    @Kapi
+    public static YamlConfiguration get(String path) {
+        return getDocument(path).config;
+    }
+    
+    /**
+     * Marks a document as modified, it will be written to disk in the next flush.<br>
+     * Does nothing if the document is not in memory.
+     *
+     * @param path The path to the config file (relative to the data folder)
+     */
+    @Kapi
+    public static void markDirty(String path) {
+        Document document = documents.get(path);
+        if (document != null) markDirty(document);
+    }
+    
+    /**
+     * Modifies a document and marks it as dirty.<br>
+     * See {@link #get(String)} and {@link #markDirty(String)} for more info
+     *
+     * @param path     The path to the config file (relative to the data folder)
+     * @param consumer The consumer to apply to the document
+     */
+    @Kapi
+    public static void update(String path, Consumer<YamlConfiguration> consumer) {
+        Document document = getDocument(path);
+        consumer.accept(document.config);
+        markDirty(document);
+    }
+    
+    /**
+     * Replaces a document and marks it as dirty.
+     *
+     * @param path   The path to the config file (relative to the data folder)
+     * @param config The new document
+     */
+    @Kapi
+    public static void set(String path, YamlConfiguration config) {
+        Document document = documents.get(path);
+        if (document == null) {
+            document = new Document(path, config, MIN_SIZE);
+            admit(document);
+        } else {
+            document.config = config;
+        }
+        markDirty(document);
+    }
+    
+    /**
+     * @param path The path to the config file (relative to the data folder)
+     * @return True if the document has modifications that weren't flushed yet, false otherwise
+     */
+    @Kapi
+    public static boolean isDirty(String path) {
+        Document document = documents.get(path);
+        return document != null && document.dirty;
+    }
+    
+    /**
+     * Removes a document from memory, writing it first if it's dirty.<br>
+     * Useful for documents that are no longer needed, such as the data of a player that quit.
+     *
+     * @param path The path to the config file (relative to the data folder)
+     */
+    @Kapi
+    public static void unload(String path) {
+        Document document = documents.remove(path);
+        if (document == null) return;
+        document.resident = false;
+        size -= document.size;
+        if (document.dirty) write(document);
+    }
+    
+    /**
+     * Keeps a document in memory until {@link #unpin(String)} is called,
+     * loading it if it's not in memory.<br>
+     * A document that is pinned multiple times must be unpinned the same amount of times.
+     *
+     * @param path The path to the config file (relative to the data folder)
+     */
+    @Kapi
+    public static void pin(String path) {
+        getDocument(path).pins++;
+    }
+    
+    /**
+     * Allows a pinned document to be evicted again, see {@link #pin(String)}.<br>
+     * Does nothing if the document is not pinned.
+     *
+     * @param path The path to the config file (relative to the data folder)
+     */
+    @Kapi
+    public static void unpin(String path) {
+        Document document = documents.get(path);
+        if (document == null || document.pins == 0) return;
+        document.pins--;
+        if (document.pins == 0) evict(null);
+    }
+    
+    /**
+     * @return The estimated memory of all documents in memory in bytes
+     */
+    @Kapi
+    public static long getSize() {
+        return size;
+    }
+    
+    /**
+     * @return The estimated memory documents can use in bytes
+     */
+    @Kapi
+    public static long getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * Sets the estimated memory documents can use,
+     * the least recently used documents that are not pinned are evicted when it's exceeded.<br>
+     * The memory of a document is estimated from the size of its file.<br>
+     * Default value is 64 MB.
+     *
+     * @param bytes The estimated memory in bytes
+     * @throws IllegalArgumentException if bytes is not positive
+     */
+    @Kapi
+    public static void setMaxSize(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Size must be positive");
+        }
+        maxSize = bytes;
+        evict(null);
+    }
+    
+    /**
+     * Writes all dirty documents now instead of waiting for the next flush.<br>
+     * The documents are serialized on the calling thread and written off the main thread.
+     */
+    @Kapi
+    public static void flush() {
+        for (Document document : dirty) {
+            if (document.dirty) write(document);
+        }
+        dirty.clear();
+    }
+    
+    /**
+     * Writes all dirty documents and waits until everything was written to disk.<br>
+     * Called automatically when the plugin is disabled.
+     */
+    @Kapi
+    public static void close() {
+        ConfigWatcher.stop();
+        flush();
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        
+        try {
+            writer.submit(() -> {}).get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            Log.error("Failed to finish writing configs");
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * @return The time between flushes in ticks
+     */
+    @Kapi
+    public static int getFlushInterval() {
+        return flushInterval;
+    }
+    
+    /**
+     * Sets the time between flushes, a dirty document is written at most once per flush.<br>
+     * Default value is 100 ticks (5 seconds).
+     *
+     * @param ticks The time between flushes in ticks
+     * @throws IllegalArgumentException if ticks is less than 1
+     */
+    @Kapi
+    public static void setFlushInterval(int ticks) {
+        if (ticks < 1) {
+            throw new IllegalArgumentException("Interval cannot be less than 1");
+        }
+        flushInterval = ticks;
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        if (!dirty.isEmpty()) startFlushing();
+    }
+    
+    private static Document getDocument(String path) {
+        Document document = documents.get(path);
+        if (document != null) return document;
+        
+        // An evicted document that is still being written is newer than the file
+        document = writing.get(path);
+        if (document == null) {
+            File file = Config.getPath(path);
+            document = new Document(path, YamlConfiguration.loadConfiguration(file), estimate(file.length()));
+        }
+        admit(document);
+        return document;
+    }
+    
+    private static void admit(Document document) {
+        documents.put(document.path, document);
+        document.resident = true;
+        size += document.size;
+        evict(document);
+    }
+    
+    private static void evict(@Nullable Document keep) {
+        if (size <= maxSize) return;
+        Iterator<Document> iterator = documents.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Document document = iterator.next();
+            if (document.pins > 0 || document == keep) continue;
+            iterator.remove();
+            document.resident = false;
+            size -= document.size;
+            if (document.dirty) write(document);
+        }
+    }
+    
+    private static long estimate(long fileSize) {
+        return Math.max(fileSize * SIZE_FACTOR, MIN_SIZE);
+    }
+    
+    private static void markDirty(Document document) {
+        if (document.dirty) return;
+        document.dirty = true;
+        dirty.add(document);
+        if (flushTask == null) startFlushing();
+    }
+    
+    private static void startFlushing() {
+        flushTask = Task.run(ConfigStore::flush)
+                .delay(flushInterval)
+                .interval(flushInterval)
+                .label("Config flush")
+                .schedule();
+    }
+    
+    private static void write(Document document) {
+        // YamlConfiguration is not thread safe, so only the serialized string leaves the main thread
+        document.dirty = false;
+        String data = document.config.saveToString();
+        long estimate = estimate(data.length());
+        if (document.resident) size += estimate - document.size;
+        document.size = estimate;
+        
+        // If a write of this document is still queued, it writes the latest data instead
+        boolean queued = document.pending.getAndSet(data) != null;
+        writing.put(document.path, document);
+        if (queued) return;
+        writer.execute(() -> {
+            String latest = document.pending.getAndSet(null);
+            if (latest == null) return;
+            try {
+                if (ConfigWatcher.isRunning()) {
+                    written.put(ConfigWatcher.normalize(document.path), latest.hashCode());
+                }
+                writeAtomically(Config.getPath(document.path), latest.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                Log.error("Failed to write config " + document.path + ", retrying in the next flush");
+                e.printStackTrace();
+                Task.run(() -> markDirty(document)).schedule();
+            }
+            
+            // Keep it if it was written again in the meantime
+            writing.compute(document.path, (path, current) ->
+                    current == document && document.pending.get() == null ? null : current);
+        });
+    }
+    
+    /**
+     * Replaces the contents of a document that was edited on disk, see {@link ConfigWatcher}.<br>
+     * The contents are copied into the document in memory,
+     * so references returned by {@link #get(String)} stay valid.
+     *
+     * @param path   The path to the config file (relative to the data folder)
+     * @param config The new contents
+     * @return The document in memory, the given one if it's not in memory,
+     *         or null if it has modifications that weren't written yet
+     */
+    // Package-private
+    static @Nullable YamlConfiguration replace(String path, YamlConfiguration config) {
+        if (writing.containsKey(path)) return null;
+        Document document = documents.get(path);
+        if (document == null) return config;
+        if (document.dirty) return null;
+        
+        YamlConfiguration current = document.config;
+        for (String key : current.getKeys(false)) {
+            current.set(key, null);
+        }
+        // Parents come before their children, so sections are created before their values are set
+        for (Map.Entry<String,Object> entry : config.getValues(true).entrySet()) {
+            String key = entry.getKey();
+            if (config.isConfigurationSection(key)) {
+                if (!current.isConfigurationSection(key)) current.createSection(key);
+            } else {
+                current.set(key, entry.getValue());
+            }
+            current.setComments(key, config.getComments(key));
+            current.setInlineComments(key, config.getInlineComments(key));
+        }
+        return current;
+    }
+    
+    /**
+     * @param path The path to the config file (relative to the data folder)
+     * @param data The contents of the file
+     * @return True if the contents were written by the store, false otherwise
+     */
+    // Package-private
+    static boolean isOwnWrite(String path, String data) {
+        return written.remove(path, data.hashCode());
+    }
+    
+    /**
+     * Writes the file to a temporary file next to it and renames it over the original,
+     * readers see either the old or the new contents, never a partially written file.
+     *
+     * @param file The file to write
+     * @param data The contents of the file
+     * @throws IOException If the file couldn't be written
+     */
+    // Package-private
+    static void writeAtomically(File file, byte[] data) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Path parent = target.getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) channel.write(buffer);
+                channel.force(true);
+            }
+            
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    private static ExecutorService createWriter() {
+        // A single thread keeps writes of the same file in order
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "Kapi Config Writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    private static final class Document {
+        private final String path;
+        private final AtomicReference<@Nullable String> pending;
+        private YamlConfiguration config;
+        private boolean dirty;
+        private long size;
+        private int pins;
+        private boolean resident;
+        
+        private Document(String path, YamlConfiguration config, long size) {
+            this.path = path;
+            this.config = config;
+            this.size = size;
+            this.pending = new AtomicReference<>();
+        }
+    }
+}
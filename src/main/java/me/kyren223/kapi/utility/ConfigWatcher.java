@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.utility;
+
+import me.kyren223.kapi.annotations.Kapi;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reloads configs when their files are edited, without a server reload.<br>
+ * <br>
+ * Watches the data folder and its subfolders, only the files that changed are parsed,
+ * on a background thread, a file that fails to parse is reported and ignored.<br>
+ * Parsed documents are copied into the ones in {@link ConfigStore} on the main thread,
+ * so documents that were already retrieved see the new values,
+ * and the listeners of the file are notified, see {@link #listen(String, Consumer)}.<br>
+ * Documents with modifications that weren't flushed yet are not replaced,
+ * so in-game changes are never lost.<br>
+ * <br>
+ * Not started by default, see {@link #start()}.
+ */
+@Kapi
+@NullMarked
+public final class ConfigWatcher {
+    
+    private static final long QUIET_MILLIS = 100;
+    
+    private static final Map<String,List<Consumer<YamlConfiguration>>> listeners = new HashMap<>();
+    private static volatile @Nullable WatchService service;
+    
+    private ConfigWatcher() {
+        throw new AssertionError("ConfigWatcher should not be instantiated");
+    }
+    
+    /**
+     * Starts watching the data folder, does nothing if already started.<br>
+     * Stopped automatically when the plugin is disabled.
+     *
+     * @return True if watching, false if the data folder couldn't be watched
+     */
+    @Kapi
+    public static boolean start() {
+        if (service != null) return true;
+        Path root = Config.getRoot().toPath().toAbsolutePath();
+        try {
+            Files.createDirectories(root);
+            WatchService watchService = root.getFileSystem().newWatchService();
+            Map<WatchKey,Path> directories = new HashMap<>();
+            register(watchService, directories, root);
+            
+            service = watchService;
+            Thread thread = new Thread(() -> watch(watchService, directories, root), "Kapi Config Watcher");
+            thread.setDaemon(true);
+            thread.start();
+            return true;
+        } catch (IOException e) {
+            Log.error("Failed to watch the data folder for config changes");
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Stops watching the data folder, does nothing if not started.
+     */
+    @Kapi
+    public static void stop() {
+        if (service == null) return;
+        try {
+            service.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        service = null;
+    }
+    
+    /**
+     * @return True if the data folder is being watched, false otherwise
+     */
+    @Kapi
+    public static boolean isRunning() {
+        return service != null;
+    }
+    
+    /**
+     * Adds a listener that is called on the main thread with the new document
+     * whenever the file is edited and parsed successfully.
+     *
+     * @param path     The path to the config file (relative to the data folder)
+     * @param listener The listener
+     */
+    @Kapi
+    public static void listen(String path, Consumer<YamlConfiguration> listener) {
+        listeners.computeIfAbsent(normalize(path), p -> new ArrayList<>()).add(listener);
+    }
+    
+    /**
+     * Adds a listener that is called on the main thread with the document bound to a type
+     * whenever the file is edited and is valid, see {@link ConfigBinding}.<br>
+     * Invalid edits are reported and the listener is not called.
+     *
+     * @param path     The path to the config file (relative to the data folder)
+     * @param type     The record or class to bind the document to
+     * @param listener The listener
+     * @throws IllegalArgumentException if the type can't be bound
+     */
+    @Kapi
+    public static <T> void listen(String path, Class<T> type, Consumer<T> listener) {
+        ConfigBinding<T> binding = ConfigBinding.of(type);
+        listen(path, config -> binding.read(config)
+                .inspectErr(error -> Log.error("Failed to reload config " + path + ": " + error))
+                .ifOk(listener));
+    }
+    
+    /**
+     * Removes all the listeners of a file.
+     *
+     * @param path The path to the config file (relative to the data folder)
+     */
+    @Kapi
+    public static void clearListeners(String path) {
+        listeners.remove(normalize(path));
+    }
+    
+    // Package-private
+    static String normalize(String path) {
+        return path.replace('\\', '/');
+    }
+    
+    private static void register(WatchService watchService, Map<WatchKey,Path> directories, Path directory)
+            throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+                WatchKey key = path.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                directories.put(key, path);
+            }
+        }
+    }
+    
+    private static void watch(WatchService watchService, Map<WatchKey,Path> directories, Path root) {
+        try {
+            while (true) {
+                // Editors often write a file in several steps, so wait until it's quiet
+                Set<Path> changed = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                while (key != null) {
+                    collect(watchService, directories, key, changed);
+                    key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                
+                for (Path file : changed) {
+                    reload(root, file);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+    
+    private static void collect(
+            WatchService watchService, Map<WatchKey,Path> directories, WatchKey key, Set<Path> changed
+    ) {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory == null || !(event.context() instanceof Path name)) continue;
+            Path path = directory.resolve(name);
+            if (Files.isDirectory(path)) {
+                try {
+                    register(watchService, directories, path);
+                } catch (IOException e) {
+                    Log.warn("Failed to watch folder " + path);
+                }
+            } else if (name.toString().endsWith(".yml")) {
+                changed.add(path);
+            }
+        }
+        if (!key.reset()) directories.remove(key);
+    }
+    
+    private static void reload(Path root, Path file) {
+        String path = normalize(root.relativize(file).toString());
+        String data;
+        try {
+            data = Files.readString(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            Log.error("Failed to read config " + path);
+            e.printStackTrace();
+            return;
+        }
+        
+        // Files written by the ConfigStore already match the document in memory
+        if (ConfigStore.isOwnWrite(path, data)) return;
+        
+        YamlConfiguration config = new YamlConfiguration();
+        try {
+            config.loadFromString(data);
+        } catch (InvalidConfigurationException e) {
+            Log.error("Failed to reload config " + path + ", keeping the previous version: " + e.getMessage());
+            return;
+        }
+        
+        Task.run(() -> {
+            YamlConfiguration document = ConfigStore.replace(path, config);
+            if (document == null) {
+                Log.warn("Config " + path + " was edited while it has unsaved changes, the edit was ignored");
+                return;
+            }
+            for (Consumer<YamlConfiguration> listener : listeners.getOrDefault(path, List.of())) {
+                listener.accept(document);
+            }
+        }).schedule();
+    }
+}
@@ -0,0 +1,645 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.utility;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.codec.BinaryWriter;
+import me.kyren223.kapi.codec.Codec;
+import me.kyren223.kapi.data.Option;
+import org.jetbrains.annotations.ApiStatus;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An embedded key-value store for large amounts of small records, such as per block or per player data.<br>
+ * <br>
+ * Records are appended to log files in a folder, reads and writes of a single record
+ * never touch the rest of the data, all keys are kept in memory and the values on disk.<br>
+ * Full log files are memory mapped for reads.
+ * Overwritten and deleted records are removed periodically by compaction, off the main thread.<br>
+ * <br>
+ * Every record is checksummed, a record that was partially written during a crash is discarded when opened.<br>
+ * Writes reach the operating system immediately, so they survive the server crashing,
+ * and are synced to the disk every few seconds, see {@link #sync()} to sync immediately.<br>
+ * <br>
+ * Values are bytes, use {@link #get(String, Codec)} and {@link #put(String, Object, Codec)}
+ * to store other types, see {@link me.kyren223.kapi.codec.Codecs}.<br>
+ * Stores are thread safe and closed when the plugin is disabled.
+ */
+@Kapi
+@NullMarked
+public final class KeyValueStore implements AutoCloseable {
+    
+    // Checksum (4), key length (2), value length (4)
+    private static final int HEADER = 10;
+    private static final int TOMBSTONE = -1;
+    private static final int MAX_KEY_SIZE = 0xFFFF;
+    private static final int MAX_VALUE_SIZE = 16 * 1024 * 1024;
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final long MIN_GARBAGE = SEGMENT_SIZE / 4;
+    private static final double GARBAGE_RATIO = 0.5;
+    private static final int MAINTENANCE_INTERVAL = 100;
+    private static final String EXTENSION = ".log";
+    private static final String HEAD = "head";
+    
+    private static final Set<KeyValueStore> stores = ConcurrentHashMap.newKeySet();
+    
+    private final Path directory;
+    private final Map<String,Long> index = new HashMap<>();
+    private final NavigableMap<Integer,Segment> segments = new TreeMap<>();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+    private Segment active;
+    private @Nullable ScheduledTask maintenance;
+    private boolean unsynced;
+    private boolean compacting;
+    private boolean closed;
+    
+    private KeyValueStore(Path directory, Segment active) {
+        this.directory = directory;
+        this.active = active;
+    }
+    
+    /**
+     * Opens a store, creating it if it doesn't exist.<br>
+     * Reads all keys into memory, so large stores should be opened when the plugin is enabled.<br>
+     * If the folder is already open, the same store is returned and closing it closes it for every caller.
+     *
+     * @param path The path to the folder of the store (relative to the data folder)
+     * @return The store
+     * @throws IOException If the store couldn't be opened
+     */
+    @Kapi
+    public static synchronized KeyValueStore open(String path) throws IOException {
+        Path directory = Config.getPath(path).toPath().toAbsolutePath().normalize();
+        // Two instances would append over each other and compact segments the other still indexes
+        for (KeyValueStore store : stores) {
+            if (store.directory.equals(directory)) return store;
+        }
+        Files.createDirectories(directory);
+        
+        // Segments before the head were compacted, but may have failed to be deleted
+        Path headFile = directory.resolve(HEAD);
+        int head = Files.exists(headFile) ? Integer.parseInt(Files.readString(headFile).trim()) : 0;
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(EXTENSION)) continue;
+                int id = Integer.parseInt(name.substring(0, name.length() - EXTENSION.length()));
+                if (id < head) Files.deleteIfExists(file);
+                else ids.add(id);
+            }
+        }
+        Collections.sort(ids);
+        
+        int last = ids.isEmpty() ? head : ids.get(ids.size() - 1);
+        KeyValueStore store = new KeyValueStore(directory, new Segment(last, directory.resolve(last + EXTENSION)));
+        for (int id : ids) {
+            Segment segment = id == last ? store.active : new Segment(id, directory.resolve(id + EXTENSION));
+            store.segments.put(id, segment);
+            store.load(segment, id == last);
+        }
+        if (ids.isEmpty()) {
+            store.active.channel = FileChannel.open(store.active.path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            store.segments.put(last, store.active);
+        }
+        if (store.active.size >= SEGMENT_SIZE) store.roll();
+        
+        store.maintenance = Task.run(store::maintain)
+                .delay(MAINTENANCE_INTERVAL)
+                .interval(MAINTENANCE_INTERVAL)
+                .label("Key-value store maintenance")
+                .schedule();
+        stores.add(store);
+        return store;
+    }
+    
+    /**
+     * Closes all open stores, called automatically when the plugin is disabled.
+     */
+    @ApiStatus.Internal
+    public static void closeAll() {
+        for (KeyValueStore store : stores) {
+            store.close();
+        }
+    }
+    
+    /**
+     * @param key The key
+     * @return The value of the key or none if the key doesn't exist
+     * @throws UncheckedIOException If the value couldn't be read
+     */
+    @Kapi
+    public Option<byte[]> get(String key) {
+        return getBuffer(key).map(buffer -> {
+            byte[] value = new byte[buffer.remaining()];
+            buffer.get(value);
+            return value;
+        });
+    }
+    
+    /**
+     * Gets the value of a key without copying it when possible.<br>
+     * The buffer is a read-only view of the memory mapped file for records in full log files.
+     *
+     * @param key The key
+     * @return The value of the key or none if the key doesn't exist
+     * @throws UncheckedIOException If the value couldn't be read
+     */
+    @Kapi
+    public synchronized Option<ByteBuffer> getBuffer(String key) {
+        ensureOpen();
+        Long location = index.get(key);
+        if (location == null) return Option.none();
+        try {
+            Segment segment = segments.get(segment(location));
+            long offset = offset(location);
+            ByteBuffer header = segment.read(offset + 4, 6);
+            int keySize = header.getShort(0) & 0xFFFF;
+            int valueSize = header.getInt(2);
+            return Option.some(segment.read(offset + HEADER + keySize, valueSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + key, e);
+        }
+    }
+    
+    /**
+     * Gets and decodes the value of a key, decoding directly from the memory mapped file when possible.
+     *
+     * @param key   The key
+     * @param codec The codec of the value
+     * @return The value of the key or none if the key doesn't exist
+     * @throws UncheckedIOException                  If the value couldn't be read
+     * @throws me.kyren223.kapi.codec.CodecException If the value couldn't be decoded
+     */
+    @Kapi
+    public <T> Option<T> get(String key, Codec<T> codec) {
+        return getBuffer(key).map(codec::decode);
+    }
+    
+    /**
+     * @param key The key
+     * @return True if the key exists, false otherwise
+     */
+    @Kapi
+    public synchronized boolean contains(String key) {
+        return index.containsKey(key);
+    }
+    
+    /**
+     * Sets the value of a key, overwriting the previous value.
+     *
+     * @param key   The key
+     * @param value The value
+     * @throws IllegalArgumentException if the key is longer than 65535 bytes or the value is larger than 16 MB
+     * @throws UncheckedIOException     If the value couldn't be written
+     */
+    @Kapi
+    public void put(String key, byte[] value) {
+        put(key, ByteBuffer.wrap(value));
+    }
+    
+    /**
+     * Sets the value of a key to the remaining bytes of a buffer, overwriting the previous value.<br>
+     * The position of the buffer is not changed.
+     *
+     * @param key   The key
+     * @param value The value
+     * @throws IllegalArgumentException if the key is longer than 65535 bytes or the value is larger than 16 MB
+     * @throws UncheckedIOException     If the value couldn't be written
+     */
+    @Kapi
+    public void put(String key, ByteBuffer value) {
+        byte[] bytes = encode(key);
+        if (value.remaining() > MAX_VALUE_SIZE) {
+            throw new IllegalArgumentException("Value cannot be larger than 16 MB");
+        }
+        synchronized (this) {
+            ensureOpen();
+            try {
+                Long previous = index.put(key, append(bytes, value.duplicate()));
+                if (previous != null) discard(previous);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write " + key, e);
+            }
+        }
+    }
+    
+    /**
+     * Encodes and sets the value of a key, overwriting the previous value.
+     *
+     * @param key   The key
+     * @param value The value
+     * @param codec The codec of the value
+     * @throws IllegalArgumentException if the key is longer than 65535 bytes or the value is larger than 16 MB
+     * @throws UncheckedIOException     If the value couldn't be written
+     */
+    @Kapi
+    public <T> void put(String key, T value, Codec<T> codec) {
+        BinaryWriter writer = new BinaryWriter();
+        codec.encode(writer, value);
+        put(key, writer.toBuffer());
+    }
+    
+    /**
+     * @param key The key
+     * @return True if the key was deleted, false if it doesn't exist
+     * @throws UncheckedIOException If the deletion couldn't be written
+     */
+    @Kapi
+    public boolean delete(String key) {
+        byte[] bytes = encode(key);
+        synchronized (this) {
+            ensureOpen();
+            Long previous = index.remove(key);
+            if (previous == null) return false;
+            try {
+                // Deletions are garbage from the start, they only hide older records until those are compacted
+                long location = append(bytes, null);
+                segments.get(segment(location)).garbage += HEADER + bytes.length;
+                discard(previous);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to delete " + key, e);
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * @return The amount of keys
+     */
+    @Kapi
+    public synchronized int size() {
+        return index.size();
+    }
+    
+    /**
+     * @return A copy of all keys
+     */
+    @Kapi
+    public synchronized Set<String> keys() {
+        return new HashSet<>(index.keySet());
+    }
+    
+    /**
+     * @return The size of all log files in bytes
+     */
+    @Kapi
+    public synchronized long getDiskSize() {
+        long size = 0;
+        for (Segment segment : segments.values()) size += segment.size;
+        return size;
+    }
+    
+    /**
+     * Syncs all writes to the disk, so they survive a power loss.<br>
+     * Blocks until the disk has finished writing, should not be called from the main thread.
+     *
+     * @throws UncheckedIOException If the writes couldn't be synced
+     */
+    @Kapi
+    public void sync() {
+        force(false);
+    }
+    
+    /**
+     * Removes all overwritten and deleted records from full log files.<br>
+     * Runs automatically when more than half of them is garbage,
+     * blocks until finished, should not be called from the main thread.
+     *
+     * @throws UncheckedIOException If the log files couldn't be compacted
+     */
+    @Kapi
+    public void compact() {
+        int end;
+        synchronized (this) {
+            if (closed || compacting) return;
+            compacting = true;
+            end = active.id;
+        }
+        try {
+            while (true) {
+                Segment segment;
+                synchronized (this) {
+                    Map.Entry<Integer,Segment> oldest = segments.firstEntry();
+                    if (closed || oldest.getKey() >= end) return;
+                    segment = oldest.getValue();
+                }
+                compact(segment);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact " + directory, e);
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+    
+    /**
+     * Syncs and closes the store, does nothing if already closed.
+     */
+    @Kapi
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        stores.remove(this);
+        if (maintenance != null) maintenance.cancel();
+        try {
+            FileChannel channel = Objects.requireNonNull(active.channel);
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            Log.error("Failed to close key-value store " + directory);
+            e.printStackTrace();
+        }
+        for (Segment segment : segments.values()) segment.mapped = null;
+    }
+    
+    private void force(boolean always) {
+        FileChannel channel;
+        synchronized (this) {
+            if (closed || !(unsynced || always)) return;
+            unsynced = false;
+            channel = Objects.requireNonNull(active.channel);
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            synchronized (this) {
+                // A full log file is synced before it's closed
+                if (!closed && channel == active.channel) {
+                    throw new UncheckedIOException("Failed to sync " + directory, e);
+                }
+            }
+        }
+    }
+    
+    private void load(Segment segment, boolean last) throws IOException {
+        FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long length = channel.size();
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        segment.mapped = map;
+        
+        int offset = 0;
+        while (offset + HEADER <= length) {
+            int checksum = map.getInt(offset);
+            int keySize = map.getShort(offset + 4) & 0xFFFF;
+            int valueSize = map.getInt(offset + 6);
+            if (valueSize < TOMBSTONE || valueSize > MAX_VALUE_SIZE) break;
+            int size = HEADER + keySize + Math.max(valueSize, 0);
+            if (offset + size > length) break;
+            crc.reset();
+            crc.update(map.slice(offset + 4, size - 4));
+            if ((int) crc.getValue() != checksum) break;
+            
+            byte[] key = new byte[keySize];
+            map.get(offset + HEADER, key);
+            String name = new String(key, StandardCharsets.UTF_8);
+            Long previous;
+            if (valueSize == TOMBSTONE) {
+                previous = index.remove(name);
+                segment.garbage += size;
+            } else {
+                previous = index.put(name, location(segment.id, offset));
+            }
+            if (previous != null) discard(previous);
+            offset += size;
+        }
+        segment.size = offset;
+        
+        if (offset < length) {
+            if (last) {
+                Log.warn("Discarded a partially written record in " + segment.path);
+                channel.truncate(offset);
+            } else {
+                Log.warn("Skipped a corrupted part of " + segment.path);
+            }
+        }
+        if (last) {
+            segment.mapped = null;
+            segment.channel = channel;
+        } else {
+            channel.close();
+        }
+    }
+    
+    private void maintain() {
+        if (closed) return;
+        TaskExecutors.BLOCKING.execute(() -> {
+            try {
+                sync();
+                if (shouldCompact()) compact();
+            } catch (UncheckedIOException e) {
+                Log.error("Key-value store maintenance failed for " + directory);
+                e.printStackTrace();
+            }
+        });
+    }
+    
+    private synchronized boolean shouldCompact() {
+        long size = 0;
+        long garbage = 0;
+        for (Segment segment : segments.values()) {
+            if (segment == active) continue;
+            size += segment.size;
+            garbage += segment.garbage;
+        }
+        return garbage >= MIN_GARBAGE && garbage > size * GARBAGE_RATIO;
+    }
+    
+    private void compact(Segment segment) throws IOException {
+        // Full log files never change, so they are read without holding the lock
+        ByteBuffer map = Objects.requireNonNull(segment.mapped);
+        int offset = 0;
+        while (offset < segment.size) {
+            int keySize = map.getShort(offset + 4) & 0xFFFF;
+            int valueSize = map.getInt(offset + 6);
+            int size = HEADER + keySize + Math.max(valueSize, 0);
+            // Deletions are dropped, the oldest log file has no older records for them to hide
+            if (valueSize != TOMBSTONE) {
+                byte[] key = new byte[keySize];
+                map.get(offset + HEADER, key);
+                String name = new String(key, StandardCharsets.UTF_8);
+                long location = location(segment.id, offset);
+                synchronized (this) {
+                    if (closed) return;
+                    Long current = index.get(name);
+                    if (current != null && current == location) {
+                        index.put(name, append(key, map.slice(offset + HEADER + keySize, valueSize)));
+                    }
+                }
+            }
+            offset += size;
+        }
+        
+        // The copies must be on disk before the original is forgotten
+        force(true);
+        ConfigStore.writeAtomically(directory.resolve(HEAD).toFile(),
+                String.valueOf(segment.id + 1).getBytes(StandardCharsets.UTF_8));
+        synchronized (this) {
+            segments.remove(segment.id);
+            segment.mapped = null;
+        }
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            // Still mapped on some systems, deleted the next time the store is opened
+        }
+    }
+    
+    private long append(byte[] key, @Nullable ByteBuffer value) throws IOException {
+        int size = HEADER + key.length + (value == null ? 0 : value.remaining());
+        if (buffer.capacity() < size) buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+        buffer.clear();
+        buffer.position(4);
+        buffer.putShort((short) key.length);
+        buffer.putInt(value == null ? TOMBSTONE : value.remaining());
+        buffer.put(key);
+        if (value != null) buffer.put(value);
+        crc.reset();
+        crc.update(buffer.array(), 4, size - 4);
+        buffer.putInt(0, (int) crc.getValue());
+        buffer.flip();
+        
+        FileChannel channel = Objects.requireNonNull(active.channel);
+        long position = active.size;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+        long location = location(active.id, position);
+        active.size += size;
+        unsynced = true;
+        if (active.size >= SEGMENT_SIZE) roll();
+        return location;
+    }
+    
+    private void roll() throws IOException {
+        FileChannel channel = Objects.requireNonNull(active.channel);
+        channel.force(true);
+        active.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, active.size);
+        active.channel = null;
+        channel.close();
+        unsynced = false;
+        
+        int id = active.id + 1;
+        Segment segment = new Segment(id, directory.resolve(id + EXTENSION));
+        segment.channel = FileChannel.open(segment.path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segments.put(id, segment);
+        active = segment;
+    }
+    
+    private void discard(long location) throws IOException {
+        Segment segment = segments.get(segment(location));
+        ByteBuffer header = segment.read(offset(location) + 4, 6);
+        segment.garbage += HEADER + (header.getShort(0) & 0xFFFF) + Math.max(header.getInt(2), 0);
+    }
+    
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Key-value store " + directory + " is closed");
+        }
+    }
+    
+    private static byte[] encode(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_KEY_SIZE) {
+            throw new IllegalArgumentException("Key cannot be longer than 65535 bytes");
+        }
+        return bytes;
+    }
+    
+    private static long location(int segment, long offset) {
+        return (long) segment << 32 | offset;
+    }
+    
+    private static int segment(long location) {
+        return (int) (location >>> 32);
+    }
+    
+    private static long offset(long location) {
+        return location & 0xFFFFFFFFL;
+    }
+    
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        // Only the active segment is open for writing, full ones are mapped
+        private @Nullable FileChannel channel;
+        private @Nullable MappedByteBuffer mapped;
+        private long size;
+        private long garbage;
+        
+        private Segment(int id, Path path) {
+            this.id = id;
+            this.path = path;
+        }
+        
+        private ByteBuffer read(long offset, int length) throws IOException {
+            if (mapped != null) return mapped.slice((int) offset, length).asReadOnlyBuffer();
+            FileChannel channel = Objects.requireNonNull(this.channel);
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) throw new EOFException();
+            }
+            return buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,486 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.utility;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.commands.CommandBuilder;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.ApiStatus;
+import org.jspecify.annotations.NullMarked;
+
+import java.util.*;
+import java.util.function.IntSupplier;
+
+import static me.kyren223.kapi.commands.builtin.IntegerArgumentType.integer;
+import static me.kyren223.kapi.commands.builtin.LiteralArgumentType.literal;
+
+/**
+ * Optional instrumentation of Kapi tasks and the engine.<br>
+ * <br>
+ * When enabled, the runtime of every task is recorded under its label,
+ * see {@link Task#label(String)}, objects are recorded under the label of their template,
+ * see {@link me.kyren223.kapi.engine.Template3D#setLabel(String)}.<br>
+ * Statistics are collected in windows of {@link #getWindow()} ticks,
+ * the last completed window can be queried using {@link #getWindowStats()}.<br>
+ * <br>
+ * Disabled by default, when disabled the only cost is a single check per tick.<br>
+ * A built-in command can be registered using {@link #registerCommand(String)}.
+ */
+@Kapi
+@NullMarked
+public final class Profiler {
+    
+    private static final int BUCKETS = 24;
+    private static final String ASYNC_LABEL = "Async completions";
+    
+    private static boolean enabled = false;
+    private static int window = 200;
+    private static long overrunThreshold = 5_000_000;
+    private static final Map<String,IntSupplier> counters = new LinkedHashMap<>();
+    private static final Map<String,Stats> current = new HashMap<>();
+    private static final Map<String,Stats> total = new HashMap<>();
+    private static List<Stats> lastWindow = List.of();
+    private static int ticks = 0;
+    private static long tickNanos = 0;
+    private static long maxTickNanos = 0;
+    private static long lastWindowMaxTickNanos = 0;
+    private static long lastWindowAverageTickNanos = 0;
+    
+    private Profiler() {
+        throw new AssertionError("Profiler should not be instantiated");
+    }
+    
+    /**
+     * @return true if the profiler is recording, false otherwise
+     */
+    @Kapi
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Starts or stops recording.<br>
+     * Recorded statistics are kept when the profiler is disabled,
+     * use {@link #reset()} to clear them.
+     *
+     * @param enabled true to start recording, false to stop
+     */
+    @Kapi
+    public static void setEnabled(boolean enabled) {
+        Profiler.enabled = enabled;
+    }
+    
+    /**
+     * @return The length of a window in ticks
+     */
+    @Kapi
+    public static int getWindow() {
+        return window;
+    }
+    
+    /**
+     * Sets the length of a window, statistics are reported per window.<br>
+     * Default value is 200 ticks (10 seconds).
+     *
+     * @param ticks The length of a window in ticks
+     * @throws IllegalArgumentException if ticks is less than 1
+     */
+    @Kapi
+    public static void setWindow(int ticks) {
+        if (ticks < 1) {
+            throw new IllegalArgumentException("Window cannot be less than 1");
+        }
+        Profiler.window = ticks;
+    }
+    
+    /**
+     * @return The overrun threshold in milliseconds
+     */
+    @Kapi
+    public static double getOverrunThreshold() {
+        return overrunThreshold / 1_000_000.0;
+    }
+    
+    /**
+     * Sets the threshold for a single run of a task to be considered an overrun.<br>
+     * Default value is 5 milliseconds.
+     *
+     * @param millis The threshold in milliseconds
+     * @throws IllegalArgumentException if millis is not positive
+     */
+    @Kapi
+    public static void setOverrunThreshold(double millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive");
+        }
+        Profiler.overrunThreshold = (long) (millis * 1_000_000);
+    }
+    
+    /**
+     * Registers a counter that is included in reports, such as the amount of live objects.<br>
+     * Registering a counter with an existing name replaces it.
+     *
+     * @param name    The name of the counter
+     * @param counter A supplier of the current value
+     */
+    @Kapi
+    public static void registerCounter(String name, IntSupplier counter) {
+        counters.put(name, counter);
+    }
+    
+    /**
+     * Gets the current values of all counters, including the built-in ones:
+     * <ul>
+     *     <li>Live tasks - tasks and chains that are scheduled</li>
+     *     <li>Pending async tasks - async runs that have not completed yet</li>
+     * </ul>
+     *
+     * @return A map of counter names to their values, in registration order
+     */
+    @Kapi
+    public static Map<String,Integer> getCounters() {
+        Map<String,Integer> values = new LinkedHashMap<>();
+        values.put("Live tasks", TimingWheel.size());
+        values.put("Pending async tasks", TimingWheel.getPending());
+        counters.forEach((name, counter) -> values.put(name, counter.getAsInt()));
+        return values;
+    }
+    
+    /**
+     * Gets the statistics of the last completed window,
+     * sorted by total runtime, from the most expensive.
+     *
+     * @return An unmodifiable list of statistics per label
+     */
+    @Kapi
+    public static List<Stats> getWindowStats() {
+        return lastWindow;
+    }
+    
+    /**
+     * Gets the most expensive labels of the last completed window.
+     *
+     * @param amount The maximum amount of labels to return
+     * @return An unmodifiable list of statistics per label
+     * @see #getWindowStats()
+     */
+    @Kapi
+    public static List<Stats> getWorstOffenders(int amount) {
+        return lastWindow.subList(0, Math.min(amount, lastWindow.size()));
+    }
+    
+    /**
+     * Gets the statistics since the profiler was enabled or last reset,
+     * sorted by total runtime, from the most expensive.
+     *
+     * @return A list of statistics per label
+     */
+    @Kapi
+    public static List<Stats> getTotalStats() {
+        return sorted(total);
+    }
+    
+    /**
+     * @return The highest time in milliseconds that Kapi tasks took in a single tick,
+     *         in the last completed window
+     */
+    @Kapi
+    public static double getMaxTickTime() {
+        return lastWindowMaxTickNanos / 1_000_000.0;
+    }
+    
+    /**
+     * @return The average time in milliseconds that Kapi tasks took per tick,
+     *         in the last completed window
+     */
+    @Kapi
+    public static double getAverageTickTime() {
+        return lastWindowAverageTickNanos / 1_000_000.0;
+    }
+    
+    /**
+     * Clears all recorded statistics.
+     */
+    @Kapi
+    public static void reset() {
+        current.clear();
+        total.clear();
+        lastWindow = List.of();
+        ticks = 0;
+        tickNanos = 0;
+        maxTickNanos = 0;
+        lastWindowMaxTickNanos = 0;
+        lastWindowAverageTickNanos = 0;
+    }
+    
+    /**
+     * Registers a command for controlling the profiler and viewing reports.<br>
+     * The command must be declared in the plugin.yml,
+     * it's recommended to give it a permission.<br>
+     * <br>
+     * Usage:
+     * <ul>
+     *     <li>/name enable - starts recording</li>
+     *     <li>/name disable - stops recording</li>
+     *     <li>/name reset - clears recorded statistics</li>
+     *     <li>/name report [amount] - shows the worst offenders of the last window</li>
+     * </ul>
+     *
+     * @param name The name of the command
+     */
+    @Kapi
+    public static void registerCommand(String name) {
+        CommandBuilder.create(name)
+            .execute(context -> context.setReturnValue(false))
+            .argument(literal("enable"))
+                .execute(context -> {
+                    setEnabled(true);
+                    Log.success("Profiler enabled, reports are available every "
+                            + window + " ticks", context.getSender());
+                })
+                .build()
+            .argument(literal("disable"))
+                .execute(context -> {
+                    setEnabled(false);
+                    Log.success("Profiler disabled", context.getSender());
+                })
+                .build()
+            .argument(literal("reset"))
+                .execute(context -> {
+                    reset();
+                    Log.success("Profiler statistics cleared", context.getSender());
+                })
+                .build()
+            .argument(literal("report"))
+                .execute(context -> report(context.getSender(), 10))
+                .argument(integer().min(0), "amount")
+                    .execute(context -> report(context.getSender(), context.getInt("amount")))
+                    .build()
+                .build()
+            .build()
+            .autoFailHandler()
+            .register();
+    }
+    
+    private static void report(CommandSender sender, int amount) {
+        if (!enabled && lastWindow.isEmpty()) {
+            Log.warn("Profiler is disabled, nothing was recorded", sender);
+            return;
+        }
+        
+        Log.info(String.format("Kapi tick time: %.2fms average, %.2fms max",
+                getAverageTickTime(), getMaxTickTime()), sender);
+        getCounters().forEach((name, value) -> Log.log(name + ": " + value, sender));
+        for (Stats stats : getWorstOffenders(amount)) {
+            Log.log(String.format("%s: %.2fms total, %d runs, %.3fms avg, %.3fms p99, %.3fms max, %d overruns",
+                    stats.getLabel(), stats.getTotalTime(), stats.getRuns(), stats.getAverageTime(),
+                    stats.getPercentile(0.99), stats.getMaxTime(), stats.getOverruns()
+            ), sender);
+        }
+    }
+    
+    // Package-private
+    static void record(String label, long nanos) {
+        current.computeIfAbsent(label, Stats::new).record(nanos, overrunThreshold);
+        total.computeIfAbsent(label, Stats::new).record(nanos, overrunThreshold);
+    }
+    
+    // Package-private
+    static void recordAsync(long nanos) {
+        record(ASYNC_LABEL, nanos);
+    }
+    
+    // Package-private
+    static void endTick(long nanos) {
+        ticks++;
+        tickNanos += nanos;
+        maxTickNanos = Math.max(maxTickNanos, nanos);
+        if (ticks < window) return;
+        
+        lastWindow = Collections.unmodifiableList(sorted(current));
+        lastWindowMaxTickNanos = maxTickNanos;
+        lastWindowAverageTickNanos = tickNanos / ticks;
+        current.clear();
+        ticks = 0;
+        tickNanos = 0;
+        maxTickNanos = 0;
+    }
+    
+    // Package-private
+    static String describe(Object task) {
+        // Lambdas and method references are named after the class that declared them
+        String name = task.getClass().getName();
+        int lambda = name.indexOf("$$Lambda");
+        if (lambda != -1) name = name.substring(0, lambda);
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+    
+    private static List<Stats> sorted(Map<String,Stats> stats) {
+        List<Stats> list = new ArrayList<>(stats.values());
+        list.sort(Comparator.comparingLong((Stats s) -> s.totalNanos).reversed());
+        return list;
+    }
+    
+    /**
+     * Runtime statistics of a single label.
+     */
+    @Kapi
+    public static final class Stats {
+        private final String label;
+        private final long[] histogram;
+        private long runs;
+        private long totalNanos;
+        private long maxNanos;
+        private long overruns;
+        
+        /**
+         * Creates empty statistics, used by other Kapi instrumentation such as command metrics.
+         *
+         * @param label The label of the statistics
+         */
+        @ApiStatus.Internal
+        public Stats(String label) {
+            this.label = label;
+            this.histogram = new long[BUCKETS];
+        }
+        
+        /**
+         * Records a single run.
+         *
+         * @param nanos            The runtime in nanoseconds
+         * @param overrunThreshold The runtime in nanoseconds from which the run is an overrun
+         */
+        @ApiStatus.Internal
+        public void record(long nanos, long overrunThreshold) {
+            runs++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            if (nanos >= overrunThreshold) overruns++;
+            
+            // Bucket i holds runs of less than 2^i microseconds
+            long micros = nanos / 1000;
+            int bucket = 64 - Long.numberOfLeadingZeros(micros);
+            histogram[Math.min(bucket, BUCKETS - 1)]++;
+        }
+        
+        /**
+         * @return The label of the task or template
+         */
+        @Kapi
+        public String getLabel() {
+            return label;
+        }
+        
+        /**
+         * @return The amount of runs
+         */
+        @Kapi
+        public long getRuns() {
+            return runs;
+        }
+        
+        /**
+         * @return The total runtime in milliseconds
+         */
+        @Kapi
+        public double getTotalTime() {
+            return totalNanos / 1_000_000.0;
+        }
+        
+        /**
+         * @return The average runtime of a single run in milliseconds
+         */
+        @Kapi
+        public double getAverageTime() {
+            return runs == 0 ? 0 : totalNanos / (double) runs / 1_000_000.0;
+        }
+        
+        /**
+         * @return The longest runtime of a single run in milliseconds
+         */
+        @Kapi
+        public double getMaxTime() {
+            return maxNanos / 1_000_000.0;
+        }
+        
+        /**
+         * @return The amount of runs that took longer than the overrun threshold
+         * @see Profiler#setOverrunThreshold(double)
+         */
+        @Kapi
+        public long getOverruns() {
+            return overruns;
+        }
+        
+        /**
+         * Estimates a percentile of the runtime from the histogram.<br>
+         * The estimate is the upper bound of the histogram bucket,
+         * so it's at most twice the actual value.
+         *
+         * @param percentile The percentile, between 0 and 1 (for example 0.99)
+         * @return The estimated runtime in milliseconds
+         */
+        @Kapi
+        public double getPercentile(double percentile) {
+            long target = (long) Math.ceil(runs * percentile);
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += histogram[i];
+                if (count >= target) {
+                    return Math.min((1L << i) / 1000.0, getMaxTime());
+                }
+            }
+            return getMaxTime();
+        }
+        
+        /**
+         * Gets the histogram of runtimes.<br>
+         * Bucket i holds the amount of runs that took less than 2^i microseconds
+         * (and at least 2^(i-1) microseconds), the last bucket holds all longer runs.
+         *
+         * @return A copy of the histogram
+         */
+        @Kapi
+        public long[] getHistogram() {
+            return histogram.clone();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.utility;
+
+import me.kyren223.kapi.annotations.Kapi;
+import org.bukkit.Bukkit;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.reflect.Method;
+
+/**
+ * Lowers the cost of Kapi when the server is struggling,
+ * and restores it once there is headroom again.<br>
+ * <br>
+ * The controller watches the milliseconds per tick (MSPT),
+ * and moves between quality levels, from 0 (full quality) to {@link #getMaxLevel()}.<br>
+ * The level degrades one step after the MSPT stays above the degrade threshold for a second,
+ * and restores one step after it stays below the restore threshold for 5 seconds.<br>
+ * <br>
+ * Each degradation step of an object or task, see {@link Priority}:
+ * <ul>
+ *     <li>Halves the render frequency of {@link me.kyren223.kapi.engine.Object3D}s</li>
+ *     <li>Halves the particle count of {@link me.kyren223.kapi.data.ParticleData}</li>
+ *     <li>From the second step, halves the amount of particle points an object renders</li>
+ *     <li>Defers tasks with a priority, see {@link Task#priority(Priority)}</li>
+ * </ul>
+ * Disabled by default.
+ */
+@Kapi
+@NullMarked
+public final class QualityController {
+    
+    private static final int DEGRADE_TICKS = 20;
+    private static final int RESTORE_TICKS = 100;
+    private static final int LEVELS = Priority.values().length - 1;
+    
+    private static final @Nullable Method averageTickTime = findAverageTickTime();
+    
+    private static boolean enabled = false;
+    private static int level = 0;
+    private static int maxLevel = LEVELS;
+    private static double degradeAbove = averageTickTime != null ? 45 : 55;
+    private static double restoreBelow = averageTickTime != null ? 35 : 51;
+    private static double mspt = 50;
+    private static long lastTick = 0;
+    private static int aboveTicks = 0;
+    private static int belowTicks = 0;
+    private static @Nullable ScheduledTask sampler = null;
+    
+    static {
+        Profiler.registerCounter("Quality level", () -> level);
+    }
+    
+    private QualityController() {
+        throw new AssertionError("QualityController should not be instantiated");
+    }
+    
+    /**
+     * @return true if the controller is adjusting the quality, false otherwise
+     */
+    @Kapi
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Starts or stops the controller.<br>
+     * Stopping the controller restores full quality.
+     *
+     * @param enabled true to start the controller, false to stop it
+     */
+    @Kapi
+    public static void setEnabled(boolean enabled) {
+        if (QualityController.enabled == enabled) return;
+        QualityController.enabled = enabled;
+        level = 0;
+        aboveTicks = 0;
+        belowTicks = 0;
+        if (!enabled) {
+            // Cancelled right away, so re-enabling within the same tick doesn't start a second sampler
+            if (sampler != null) sampler.cancel();
+            sampler = null;
+            return;
+        }
+        
+        lastTick = System.nanoTime();
+        sampler = Task.run(QualityController::sample)
+            .interval()
+            .phase(TickPhase.INPUT)
+            .label("Quality controller")
+            .schedule();
+    }
+    
+    /**
+     * Gets the current MSPT, as seen by the controller.<br>
+     * Servers that report their tick time (such as Paper) are measured precisely,
+     * otherwise the time between ticks is measured, which can't go below 50ms.
+     *
+     * @return The milliseconds per tick
+     * @see #isPrecise()
+     */
+    @Kapi
+    public static double getMspt() {
+        return mspt;
+    }
+    
+    /**
+     * Returns whether the server reports its tick time.<br>
+     * If it doesn't, only ticks that take longer than 50ms can be detected,
+     * so the default thresholds are 55ms to degrade and 51ms to restore,
+     * instead of 45ms and 35ms.
+     *
+     * @return true if the MSPT is measured precisely, false otherwise
+     */
+    @Kapi
+    public static boolean isPrecise() {
+        return averageTickTime != null;
+    }
+    
+    /**
+     * @return The current quality level, 0 is full quality
+     */
+    @Kapi
+    public static int getLevel() {
+        return level;
+    }
+    
+    /**
+     * @return The lowest quality the controller can degrade to
+     */
+    @Kapi
+    public static int getMaxLevel() {
+        return maxLevel;
+    }
+    
+    /**
+     * Sets the lowest quality the controller can degrade to.<br>
+     * Default value is 3, the highest level.
+     *
+     * @param maxLevel The maximum quality level, between 0 and 3
+     * @throws IllegalArgumentException if the level is out of range
+     */
+    @Kapi
+    public static void setMaxLevel(int maxLevel) {
+        if (maxLevel < 0 || maxLevel > LEVELS) {
+            throw new IllegalArgumentException("Max level must be between 0 and " + LEVELS);
+        }
+        QualityController.maxLevel = maxLevel;
+        level = Math.min(level, maxLevel);
+    }
+    
+    /**
+     * Sets the MSPT thresholds of the controller.
+     *
+     * @param degradeAbove The MSPT above which quality is lowered
+     * @param restoreBelow The MSPT below which quality is restored
+     * @throws IllegalArgumentException if restoreBelow is not less than degradeAbove
+     */
+    @Kapi
+    public static void setThresholds(double degradeAbove, double restoreBelow) {
+        if (restoreBelow >= degradeAbove) {
+            throw new IllegalArgumentException("Restore threshold must be less than degrade threshold");
+        }
+        QualityController.degradeAbove = degradeAbove;
+        QualityController.restoreBelow = restoreBelow;
+    }
+    
+    /**
+     * Gets the amount of steps something with the given priority is degraded by.
+     *
+     * @param priority The priority
+     * @return The amount of steps, 0 means full quality
+     */
+    @Kapi
+    public static int getDegradation(Priority priority) {
+        return Math.max(0, level - priority.ordinal());
+    }
+    
+    /**
+     * Thins a particle count by the given degradation, halving it per step.<br>
+     * A count of 0 is kept, as it has a special meaning for some particles,
+     * any other count is kept at least 1.
+     *
+     * @param count       The particle count
+     * @param degradation The amount of steps to degrade by
+     * @return The thinned particle count
+     */
+    @Kapi
+    public static int thin(int count, int degradation) {
+        if (count <= 0 || degradation <= 0) return count;
+        return Math.max(1, count >> degradation);
+    }
+    
+    // Package-private
+    static int getDeferral(Priority priority) {
+        int degradation = getDegradation(priority);
+        return degradation == 0 ? 0 : 1 << degradation;
+    }
+    
+    private static void sample() {
+        long now = System.nanoTime();
+        if (averageTickTime != null) {
+            try {
+                mspt = (double) averageTickTime.invoke(Bukkit.getServer());
+            } catch (ReflectiveOperationException e) {
+                mspt = mspt * 0.9 + (now - lastTick) / 1_000_000.0 * 0.1;
+            }
+        } else {
+            mspt = mspt * 0.9 + (now - lastTick) / 1_000_000.0 * 0.1;
+        }
+        lastTick = now;
+        
+        if (mspt > degradeAbove) {
+            belowTicks = 0;
+            if (++aboveTicks >= DEGRADE_TICKS && level < maxLevel) {
+                level++;
+                aboveTicks = 0;
+            }
+        } else if (mspt < restoreBelow) {
+            aboveTicks = 0;
+            if (++belowTicks >= RESTORE_TICKS && level > 0) {
+                level--;
+                belowTicks = 0;
+            }
+        } else {
+            aboveTicks = 0;
+            belowTicks = 0;
+        }
+    }
+    
+    private static @Nullable Method findAverageTickTime() {
+        // Paper reports the average tick time, Spigot doesn't
+        try {
+            return Bukkit.getServer().getClass().getMethod("getAverageTickTime");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
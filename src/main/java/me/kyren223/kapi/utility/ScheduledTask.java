@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.utility;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.utility.Task.TaskData;
+import me.kyren223.kapi.utility.Task.TaskEndData;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A task that was scheduled using {@link Task#schedule()}<br>
+ * Can be used to cancel the task from outside the task consumer.
+ */
+@Kapi
+@NullMarked
+public final class ScheduledTask extends TimingWheel.Timer {
+    
+    private final Consumer<TaskData> task;
+    private final Object source;
+    private @Nullable String label;
+    private final @Nullable Predicate<TaskData> condition;
+    private final @Nullable Consumer<TaskEndData> onEnd;
+    private final @Nullable Consumer<TaskData> thenSync;
+    private final @Nullable Executor executor;
+    private final TaskData data;
+    private final int interval;
+    private final int times;
+    private final int effectiveDuration;
+    private final int totalDuration;
+    private boolean active;
+    private boolean running;
+    private @Nullable Priority priority;
+    private boolean deferred;
+    
+    ScheduledTask(
+            Consumer<TaskData> task, Object source, @Nullable String label,
+            @Nullable Predicate<TaskData> condition,
+            @Nullable Consumer<TaskEndData> onEnd, @Nullable Consumer<TaskData> thenSync,
+            @Nullable Executor executor, TaskData data,
+            int interval, int times, int effectiveDuration, int totalDuration
+    ) {
+        this.task = task;
+        this.source = source;
+        this.label = label;
+        this.condition = condition;
+        this.onEnd = onEnd;
+        this.thenSync = thenSync;
+        this.executor = executor;
+        this.data = data;
+        this.interval = interval;
+        this.times = times;
+        this.effectiveDuration = effectiveDuration;
+        this.totalDuration = totalDuration;
+        this.active = true;
+    }
+    
+    @Override
+    void run() {
+        if (!active) return;
+        
+        // Deferred once per run, so a struggling server delays the task instead of starving it
+        if (priority != null && !deferred) {
+            int deferral = QualityController.getDeferral(priority);
+            if (deferral > 0) {
+                deferred = true;
+                TimingWheel.schedule(this, deferral);
+                return;
+            }
+        }
+        deferred = false;
+        
+        // Rescheduled before running, so an exception doesn't stop a repeating task
+        if (interval != -1) TimingWheel.schedule(this, interval);
+        
+        // Async runs never overlap, a run is skipped while the previous one is in progress
+        if (running) return;
+        
+        boolean meetsCondition = condition == null || condition.test(data);
+        if (meetsCondition && executor != null) {
+            running = true;
+            TimingWheel.dispatch(executor, () -> task.accept(data), success -> {
+                running = false;
+                complete(true, !success);
+            });
+            return;
+        }
+        
+        if (meetsCondition) {
+            try {
+                task.accept(data);
+            } catch (RuntimeException e) {
+                // Still counts as a run, the wheel logs the exception
+                complete(true, true);
+                throw e;
+            }
+        }
+        complete(meetsCondition, false);
+    }
+    
+    // Package-private
+    void setPriority(@Nullable Priority priority) {
+        this.priority = priority;
+    }
+    
+    @Override
+    String getLabel() {
+        // Only computed when profiling, as it's relatively expensive
+        if (label == null) label = Profiler.describe(source);
+        return label;
+    }
+    
+    private void complete(boolean meetsCondition, boolean failed) {
+        if (!active) return;
+        // A failed run has no result to hand over, but it still advances the task towards its end
+        if (meetsCondition && !failed && thenSync != null) {
+            thenSync.accept(data);
+            if (!active) return;
+        }
+        
+        data.advance();
+        // A task without an interval only runs once, so it ends after its run
+        boolean shouldEnd = interval == -1 || data.shouldEnd(times, effectiveDuration, totalDuration);
+        if (!meetsCondition || data.isCancelled() || shouldEnd) {
+            end(data.isCancelled());
+        }
+    }
+    
+    /**
+     * Cancels the task.<br>
+     * The task will not run again and the onEnd consumer (if exists)
+     * is executed immediately, with the task considered cancelled.<br>
+     * <br>
+     * Does nothing if the task has already ended.
+     */
+    @Kapi
+    public void cancel() {
+        if (!active) return;
+        data.cancel();
+        end(true);
+    }
+    
+    /**
+     * @return true if the task has not ended yet, false otherwise
+     */
+    @Kapi
+    public boolean isActive() {
+        return active;
+    }
+    
+    /**
+     * @return The data of the task, the same instance that is passed to the task consumer
+     */
+    @Kapi
+    public TaskData getData() {
+        return data;
+    }
+    
+    private void end(boolean cancelled) {
+        active = false;
+        TimingWheel.cancel(this);
+        if (onEnd != null) {
+            onEnd.accept(new TaskEndData(data, cancelled));
+        }
+    }
+}
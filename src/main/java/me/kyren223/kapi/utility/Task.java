@@ -41,16 +41,17 @@
 package me.kyren223.kapi.utility;
 
 import me.kyren223.kapi.annotations.Kapi;
-import me.kyren223.kapi.core.Kplugin;
 import me.kyren223.kapi.data.TimeUnit;
-import org.bukkit.scheduler.BukkitScheduler;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * A utility builder class that includes a bunch of useful methods for running tasks.
@@ -60,8 +61,16 @@ import java.util.function.Predicate;
 public class Task {
     
     private final Consumer<TaskData> task;
+    private Object source;
+    private @Nullable String label;
     private @Nullable Consumer<TaskEndData> onEnd;
     private @Nullable Predicate<TaskData> condition;
+    private @Nullable Consumer<TaskData> thenSync;
+    private @Nullable Executor executor;
+    private TickPhase phase;
+    private @Nullable Priority priority;
+    private boolean stagger;
+    private int jitter;
     private int delay;
     private int interval;
     private int effectiveDuration;
@@ -70,8 +79,16 @@ public class Task {
     
     private Task(Consumer<TaskData> task) {
         this.task = task;
+        source = task;
+        label = null;
         condition = null;
         onEnd = null;
+        thenSync = null;
+        executor = null;
+        phase = TickPhase.DEFAULT;
+        priority = null;
+        stagger = false;
+        jitter = 0;
         delay = 1;
         interval = -1;
         effectiveDuration = -1;
@@ -106,7 +123,9 @@ public class Task {
      */
     @Kapi
     public static Task run(Runnable task) {
-        return me.kyren223.kapi.utility.Task.run(t -> task.run());
+        Task builder = me.kyren223.kapi.utility.Task.run(t -> task.run());
+        builder.source = task;
+        return builder;
     }
     
     /**
@@ -239,6 +258,75 @@ public class Task {
         return delay(delay, timeUnit).interval(interval, timeUnit);
     }
     
+    /**
+     * Sets the label of the task, used by the {@link Profiler} to group the runtime of tasks.<br>
+     * Tasks with the same label are reported together.<br>
+     * <br>
+     * Defaults to the name of the class that created the task consumer.
+     *
+     * @param label The label of the task
+     * @return The task builder for chaining
+     */
+    @Kapi
+    public Task label(String label) {
+        this.label = label;
+        return this;
+    }
+    
+    /**
+     * Sets the priority of the task, allowing the {@link QualityController}
+     * to defer it when the server is struggling.<br>
+     * Each degradation step doubles the deferral, starting at 2 ticks,
+     * the task runs once the deferral has passed.<br>
+     * <br>
+     * Tasks without a priority are never deferred, which is the default.
+     *
+     * @param priority The priority of the task
+     * @return The task builder for chaining
+     */
+    @Kapi
+    public Task priority(Priority priority) {
+        this.priority = priority;
+        return this;
+    }
+    
+    /**
+     * Staggers the task, to spread repeating tasks evenly across ticks.<br>
+     * The initial delay is extended by up to one interval,
+     * picking the tick with the least amount of tasks scheduled in it.<br>
+     * <br>
+     * Useful when many tasks with the same interval are scheduled in the same tick,
+     * which would otherwise all run in the same tick every interval.<br>
+     * Has no effect on tasks that don't repeat or that run every tick.
+     *
+     * @return The task builder for chaining
+     * @see #jitter(int)
+     */
+    @Kapi
+    public Task stagger() {
+        this.stagger = true;
+        return this;
+    }
+    
+    /**
+     * Extends the initial delay by a random amount of ticks,
+     * between 0 and {@code maxTicks} (inclusive).<br>
+     * Applied after {@link #stagger()}, if both are set.
+     *
+     * @param maxTicks The maximum amount of ticks to add to the delay
+     * @return The task builder for chaining
+     * @throws IllegalArgumentException if maxTicks is less than 0
+     * @see #stagger()
+     */
+    @Kapi
+    public Task jitter(int maxTicks) {
+        if (maxTicks < 0) {
+            throw new IllegalArgumentException("Jitter cannot be less than 0");
+        }
+        this.jitter = maxTicks;
+        return this;
+    }
+    
     /**
      * Sets the condition for the task.<br>
      * The task will stop running when the condition is false.
@@ -341,6 +429,145 @@ public class Task {
         return this;
     }
     
+    /**
+     * Sets the phase of the tick the task runs in.<br>
+     * Tasks that are due in the same tick run phase by phase,
+     * see {@link TickPhase} for the order.<br>
+     * <br>
+     * Defaults to {@link TickPhase#SIMULATION}
+     *
+     * @param phase The phase to run the task in
+     * @return The task builder for chaining
+     */
+    @Kapi
+    public Task phase(TickPhase phase) {
+        this.phase = phase;
+        return this;
+    }
+    
+    /**
+     * Runs the task consumer on a Kapi worker thread instead of the main thread.<br>
+     * Meant for computation, the amount of worker threads is bounded by the amount of cores.<br>
+     * <br>
+     * Timing, the condition, the duration methods and onEnd work the same as
+     * in a regular task, and are all evaluated on the main thread.<br>
+     * If a run takes longer than the interval, the next run is skipped,
+     * runs of the same task never overlap.<br>
+     * <br>
+     * Note: the task consumer must not use the Bukkit API,
+     * use {@link #thenSync(Consumer)} to continue on the main thread.
+     *
+     * @return The task builder for chaining
+     * @see #blocking()
+     * @see #executor(Executor)
+     */
+    @Kapi
+    public Task async() {
+        return executor(TaskExecutors.ASYNC);
+    }
+    
+    /**
+     * Runs the task consumer on a thread meant for blocking work,
+     * such as database lookups or file access.<br>
+     * Uses virtual threads if the server runs on a Java version that supports them,
+     * otherwise an unbounded pool of threads.<br>
+     * <br>
+     * See {@link #async()} for more info
+     *
+     * @return The task builder for chaining
+     * @see #async()
+     * @see #executor(Executor)
+     */
+    @Kapi
+    public Task blocking() {
+        return executor(TaskExecutors.BLOCKING);
+    }
+    
+    /**
+     * Runs the task consumer using the given executor instead of the main thread.<br>
+     * See {@link #async()} for more info
+     *
+     * @param executor The executor to run the task consumer with
+     * @return The task builder for chaining
+     * @see #async()
+     * @see #blocking()
+     */
+    @Kapi
+    public Task executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+    
+    /**
+     * Sets a consumer that runs on the main thread after every run of the task consumer.<br>
+     * Meant for asynchronous tasks, to hand results back to the main thread.<br>
+     * <br>
+     * Does not run if the task consumer threw an exception,
+     * for regular tasks it runs right after the task consumer.
+     *
+     * @param thenSync The consumer to run on the main thread
+     * @return The task builder for chaining
+     * @see #thenSync(Runnable)
+     */
+    @Kapi
+    public Task thenSync(Consumer<TaskData> thenSync) {
+        this.thenSync = thenSync;
+        return this;
+    }
+    
+    /**
+     * Sets a runnable that runs on the main thread after every run of the task consumer.<br>
+     * See {@link #thenSync(Consumer)} for more info
+     *
+     * @param thenSync The runnable to run on the main thread
+     * @return The task builder for chaining
+     * @see #thenSync(Consumer)
+     */
+    @Kapi
+    public Task thenSync(Runnable thenSync) {
+        this.thenSync = t -> thenSync.run();
+        return this;
+    }
+    
+    /**
+     * Computes a value on a Kapi worker thread.<br>
+     * The returned future is completed on the main thread,
+     * so dependent actions such as {@link CompletableFuture#thenAccept} run on the main thread.
+     *
+     * @param supplier The supplier of the value
+     * @param <T>      The type of the value
+     * @return A future that is completed with the value on the main thread
+     * @see #supplyBlocking(Supplier)
+     */
+    @Kapi
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        return supply(TaskExecutors.ASYNC, supplier);
+    }
+    
+    /**
+     * Computes a value on a thread meant for blocking work.<br>
+     * See {@link #supplyAsync(Supplier)} and {@link #blocking()} for more info
+     *
+     * @param supplier The supplier of the value
+     * @param <T>      The type of the value
+     * @return A future that is completed with the value on the main thread
+     * @see #supplyAsync(Supplier)
+     */
+    @Kapi
+    public static <T> CompletableFuture<T> supplyBlocking(Supplier<T> supplier) {
+        return supply(TaskExecutors.BLOCKING, supplier);
+    }
+    
+    private static <T> CompletableFuture<T> supply(Executor executor, Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(supplier, executor).whenComplete((value, error) ->
+                Task.run(() -> {
+                    if (error != null) future.completeExceptionally(error);
+                    else future.complete(value);
+                }).schedule());
+        return future;
+    }
+    
     /**
      * Sets the effective duration for the task.<br>
      * Effective duration is the duration of the task after the initial delay.<br>
@@ -504,53 +731,36 @@ public class Task {
      * the onEnd consumer (if exists) will be executed,
      * and the task will not run again.<br>
      * <br>
-     * The task uses runTaskTimer if an interval is set,
-     * otherwise it uses runTaskLater.<br>
+     * All Kapi tasks share a single timing wheel that is driven by one server task,
+     * so scheduling and cancelling a task is cheap regardless of the amount of tasks.<br>
+     * The builder can be scheduled multiple times,
+     * changes to the builder after scheduling don't affect scheduled tasks.
+     *
+     * @return The scheduled task, can be used to cancel it
      */
     @Kapi
-    public void schedule() {
+    public ScheduledTask schedule() {
         if (interval == -1 && (times != -1 || effectiveDuration != -1 || totalDuration != -1)) {
             // If the interval is not set, but the duration is set, set the interval to 1 tick
             interval();
         }
         
-        BukkitScheduler scheduler = Kplugin.get().getServer().getScheduler();
-        TaskData data = new TaskData(delay, interval);
-        AtomicInteger taskId = new AtomicInteger();
-        Runnable task = () -> {
-            boolean meetsCondition = condition == null || condition.test(data);
-            if (meetsCondition) {
-                this.task.accept(data);
-            }
-            
-            data.timesRan++;
-            data.effectiveDuration += data.interval;
-            data.totalDuration += data.interval;
-            
-            boolean shouldEnd = shouldEnd(data, times, effectiveDuration, totalDuration);
-            if (!meetsCondition || data.cancel || shouldEnd) {
-                scheduler.cancelTask(taskId.get());
-                if (onEnd != null) {
-                    onEnd.accept(new TaskEndData(data, data.cancel));
-                }
-            }
-        };
-        
-        if (interval == -1) {
-            taskId.set(scheduler.runTaskLater(Kplugin.get(), task, delay).getTaskId());
-        } else {
-            taskId.set(scheduler.runTaskTimer(Kplugin.get(), task, delay, interval).getTaskId());
+        int delay = this.delay;
+        if (stagger && interval > 1) {
+            delay = TimingWheel.getLeastLoadedDelay(Math.max(delay, 1), interval);
         }
-    }
-    
-    private static boolean shouldEnd(
-            TaskData data, int times, int effectiveDuration, int totalDuration
-    ) {
-        boolean repeatEnd = times != -1 && data.timesRan >= times;
-        boolean effectiveDurationEnd =
-                effectiveDuration != -1 && data.effectiveDuration >= effectiveDuration;
-        boolean totalDurationEnd = totalDuration != -1 && data.totalDuration >= totalDuration;
-        return repeatEnd || effectiveDurationEnd || totalDurationEnd;
+        if (jitter > 0) {
+            delay = Math.max(delay, 1) + ThreadLocalRandom.current().nextInt(jitter + 1);
+        }
+        
+        ScheduledTask scheduled = new ScheduledTask(
+                task, source, label, condition, onEnd, thenSync, executor, new TaskData(delay, interval),
+                interval, times, effectiveDuration, totalDuration
+        );
+        scheduled.setPhase(phase);
+        scheduled.setPriority(priority);
+        TimingWheel.schedule(scheduled, delay);
+        return scheduled;
     }
     
     /**
@@ -560,12 +770,12 @@ public class Task {
     public static class TaskData {
         private final int delay;
         private final int interval;
-        private boolean cancel;
+        private volatile boolean cancel;
         private int timesRan;
         private int effectiveDuration;
         private int totalDuration;
         
-        private TaskData(int delay, int interval) {
+        TaskData(int delay, int interval) {
             this.delay = delay;
             this.interval = interval;
             this.effectiveDuration = 0;
@@ -624,6 +834,24 @@ public class Task {
         public void cancel() {
             cancel = true;
         }
+        
+        boolean isCancelled() {
+            return cancel;
+        }
+        
+        void advance() {
+            timesRan++;
+            effectiveDuration += interval;
+            totalDuration += interval;
+        }
+        
+        boolean shouldEnd(int times, int effectiveDuration, int totalDuration) {
+            boolean repeatEnd = times != -1 && timesRan >= times;
+            boolean effectiveDurationEnd =
+                    effectiveDuration != -1 && this.effectiveDuration >= effectiveDuration;
+            boolean totalDurationEnd = totalDuration != -1 && this.totalDuration >= totalDuration;
+            return repeatEnd || effectiveDurationEnd || totalDurationEnd;
+        }
     }
     
     /**
@@ -634,7 +862,7 @@ public class Task {
         private final TaskData taskData;
         private final boolean cancelled;
         
-        private TaskEndData(TaskData taskData, boolean cancelled) {
+        TaskEndData(TaskData taskData, boolean cancelled) {
             this.taskData = taskData;
             this.cancelled = cancelled;
         }
@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.utility;
+
+import me.kyren223.kapi.annotations.Kapi;
+import me.kyren223.kapi.data.TimeUnit;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * A builder for a sequence of steps that run one after another.<br>
+ * Useful for cinematics and other delayed effects, instead of nesting tasks in onEnd callbacks.<br>
+ * <br>
+ * A scheduled chain takes a single entry in the scheduler, no matter how many steps it has,
+ * including the steps of chains nested using {@link #all(TaskChain...)} and {@link #race(TaskChain...)}.<br>
+ * <br>
+ * Example:
+ * <pre><code>
+ * TaskChain.create()
+ *         .then(() -> Log.info("3"))
+ *         .thenAfter(20, () -> Log.info("2"))
+ *         .thenAfter(20, () -> Log.info("1"))
+ *         .all(explosion, TaskChain.create().repeat(5, 4, this::shake))
+ *         .timeout(200)
+ *         .schedule();
+ * </code></pre>
+ */
+@Kapi
+@NullMarked
+public final class TaskChain {
+    
+    private final List<Step> steps;
+    private int timeout;
+    private @Nullable Runnable onTimeout;
+    private TickPhase phase;
+    private String label;
+    
+    private TaskChain() {
+        steps = new ArrayList<>();
+        timeout = -1;
+        onTimeout = null;
+        phase = TickPhase.DEFAULT;
+        label = "Task chain";
+    }
+    
+    /**
+     * Creates a new empty chain.
+     *
+     * @return The chain builder for chaining
+     */
+    @Kapi
+    public static TaskChain create() {
+        return new TaskChain();
+    }
+    
+    /**
+     * Adds a step that runs the given action.<br>
+     * The step runs in the same tick the previous step ended in.
+     *
+     * @param action The action to run
+     * @return The chain builder for chaining
+     * @see #then(Consumer)
+     * @see #thenAfter(int, Runnable)
+     */
+    @Kapi
+    public TaskChain then(Runnable action) {
+        return then(handle -> action.run());
+    }
+    
+    /**
+     * Adds a step that runs the given action.<br>
+     * The step runs in the same tick the previous step ended in.<br>
+     * The action is given the handle of the chain, which can be used to cancel it.
+     *
+     * @param action The action to run
+     * @return The chain builder for chaining
+     * @see #then(Runnable)
+     */
+    @Kapi
+    public TaskChain then(Consumer<ChainHandle> action) {
+        steps.add(new Run(action));
+        return this;
+    }
+    
+    /**
+     * Adds a step that runs the given action after the given amount of ticks.<br>
+     * Identical to calling:
+     * <pre><code>delay(ticks).then(action)</code></pre>
+     *
+     * @param ticks  The delay in ticks
+     * @param action The action to run
+     * @return The chain builder for chaining
+     * @throws IllegalArgumentException if the delay is less than 0
+     * @see #thenAfter(int, TimeUnit, Runnable)
+     */
+    @Kapi
+    public TaskChain thenAfter(int ticks, Runnable action) {
+        return delay(ticks).then(action);
+    }
+    
+    /**
+     * Adds a step that runs the given action after the given delay.<br>
+     * Identical to calling:
+     * <pre><code>delay(delay, timeUnit).then(action)</code></pre>
+     *
+     * @param delay    The delay
+     * @param timeUnit The time unit of the delay
+     * @param action   The action to run
+     * @return The chain builder for chaining
+     * @throws IllegalArgumentException if the delay is less than 0 or more than
+     *                                  {@link Integer#MAX_VALUE} ticks
+     * @see #thenAfter(int, Runnable)
+     */
+    @Kapi
+    public TaskChain thenAfter(int delay, TimeUnit timeUnit, Runnable action) {
+        return delay(delay, timeUnit).then(action);
+    }
+    
+    /**
+     * Adds a step that waits for the given amount of ticks.
+     *
+     * @param ticks The delay in ticks
+     * @return The chain builder for chaining
+     * @throws IllegalArgumentException if the delay is less than 0
+     * @see #delay(int, TimeUnit)
+     */
+    @Kapi
+    public TaskChain delay(int ticks) {
+        if (ticks < 0) {
+            throw new IllegalArgumentException("Delay cannot be less than 0");
+        }
+        steps.add(new Delay(ticks));
+        return this;
+    }
+    
+    /**
+     * Adds a step that waits for the given delay.
+     *
+     * @param delay    The delay
+     * @param timeUnit The time unit of the delay
+     * @return The chain builder for chaining
+     * @throws IllegalArgumentException if the delay is less than 0 or more than
+     *                                  {@link Integer#MAX_VALUE} ticks
+     * @see #delay(int)
+     */
+    @Kapi
+    public TaskChain delay(int delay, TimeUnit timeUnit) {
+        return delay(toTicks(delay, timeUnit, "Delay"));
+    }
+    
+    /**
+     * Adds a step that waits until the given condition is true.<br>
+     * The condition is checked once every tick, starting from the tick the step is reached.<br>
+     * <br>
+     * Note: use {@link #timeout(int)} to avoid waiting forever.
+     *
+     * @param condition The condition to wait for
+     * @return The chain builder for chaining
+     */
+    @Kapi
+    public TaskChain waitUntil(BooleanSupplier condition) {
+        steps.add(new WaitUntil(condition));
+        return this;
+    }
+    
+    /**
+     * Adds a step that runs the given action multiple times.<br>
+     * The first run happens in the tick the step is reached,
+     * and the step ends in the tick of the last run.
+     *
+     * @param interval The interval between runs in ticks
+     * @param times    The amount of times to run the action
+     * @param action   The action to run
+     * @return The chain builder for chaining
+     * @throws IllegalArgumentException if the interval or times are less than 1
+     */
+    @Kapi
+    public TaskChain repeat(int interval, int times, Runnable action) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval cannot be less than 1");
+        }
+        if (times < 1) {
+            throw new IllegalArgumentException("Times cannot be less than 1");
+        }
+        steps.add(new Repeat(action, interval, times));
+        return this;
+    }
+    
+    /**
+     * Adds a step that runs all the given chains in parallel,
+     * the step ends once all of them have ended.<br>
+     * <br>
+     * A chain that times out counts as ended.<br>
+     * The given chains are copied when this chain is scheduled,
+     * so they can be reused.
+     *
+     * @param chains The chains to run
+     * @return The chain builder for chaining
+     * @throws IllegalArgumentException if no chains are given
+     * @see #race(TaskChain...)
+     */
+    @Kapi
+    public TaskChain all(TaskChain... chains) {
+        return branch(chains, false);
+    }
+    
+    /**
+     * Adds a step that runs all the given chains in parallel,
+     * the step ends once one of them has completed, and the rest are cancelled.<br>
+     * <br>
+     * A chain that times out does not win the race,
+     * if all the chains time out, the step ends.<br>
+     * The given chains are copied when this chain is scheduled,
+     * so they can be reused.
+     *
+     * @param chains The chains to run
+     * @return The chain builder for chaining
+     * @throws IllegalArgumentException if no chains are given
+     * @see #all(TaskChain...)
+     */
+    @Kapi
+    public TaskChain race(TaskChain... chains) {
+        return branch(chains, true);
+    }
+    
+    /**
+     * Sets a timeout for the chain.<br>
+     * The chain ends once the given amount of ticks has passed since it started,
+     * even if it still has steps left.<br>
+     * <br>
+     * For a scheduled chain the handle ends with {@link ChainHandle.State#TIMED_OUT},
+     * for a chain nested in {@link #all(TaskChain...)} or {@link #race(TaskChain...)}
+     * the timeout is measured from the start of that step.
+     *
+     * @param ticks The timeout in ticks
+     * @return The chain builder for chaining
+     * @throws IllegalArgumentException if the timeout is less than 1
+     * @see #timeout(int, Runnable)
+     * @see #timeout(int, TimeUnit)
+     */
+    @Kapi
+    public TaskChain timeout(int ticks) {
+        if (ticks < 1) {
+            throw new IllegalArgumentException("Timeout cannot be less than 1");
+        }
+        this.timeout = ticks;
+        return this;
+    }
+    
+    /**
+     * Sets a timeout for the chain, and an action to run if it times out.<br>
+     * See {@link #timeout(int)} for more info
+     *
+     * @param ticks     The timeout in ticks
+     * @param onTimeout The action to run when the chain times out
+     * @return The chain builder for chaining
+     * @throws IllegalArgumentException if the timeout is less than 1
+     * @see #timeout(int)
+     */
+    @Kapi
+    public TaskChain timeout(int ticks, Runnable onTimeout) {
+        this.onTimeout = onTimeout;
+        return timeout(ticks);
+    }
+    
+    /**
+     * Sets a timeout for the chain.<br>
+     * See {@link #timeout(int)} for more info
+     *
+     * @param timeout  The timeout
+     * @param timeUnit The time unit of the timeout
+     * @return The chain builder for chaining
+     * @throws IllegalArgumentException if the timeout is less than 1 or more than
+     *                                  {@link Integer#MAX_VALUE} ticks
+     * @see #timeout(int)
+     */
+    @Kapi
+    public TaskChain timeout(int timeout, TimeUnit timeUnit) {
+        return timeout(toTicks(timeout, timeUnit, "Timeout"));
+    }
+    
+    /**
+     * Sets the phase of the tick the steps of the chain run in.<br>
+     * Only applies to the chain that is scheduled,
+     * chains nested in {@link #all(TaskChain...)} and {@link #race(TaskChain...)}
+     * run in the phase of the chain they're nested in.<br>
+     * <br>
+     * Defaults to {@link TickPhase#SIMULATION}
+     *
+     * @param phase The phase to run the steps in
+     * @return The chain builder for chaining
+     * @see Task#phase(TickPhase)
+     */
+    @Kapi
+    public TaskChain phase(TickPhase phase) {
+        this.phase = phase;
+        return this;
+    }
+    
+    /**
+     * Sets the label of the chain, used by the {@link Profiler}
+     * to group the runtime of the steps of the chain.<br>
+     * Defaults to "Task chain".
+     *
+     * @param label The label of the chain
+     * @return The chain builder for chaining
+     * @see Task#label(String)
+     */
+    @Kapi
+    public TaskChain label(String label) {
+        this.label = label;
+        return this;
+    }
+    
+    /**
+     * Schedules the chain, the first step runs on the next server tick.<br>
+     * The builder is copied, so it can be modified and scheduled again.
+     *
+     * @return A handle that can be used to cancel or wait for the chain
+     */
+    @Kapi
+    public ChainHandle schedule() {
+        ChainHandle handle = new ChainHandle(compile(), label);
+        handle.setPhase(phase);
+        TimingWheel.schedule(handle, 1);
+        return handle;
+    }
+    
+    private TaskChain branch(TaskChain[] chains, boolean race) {
+        if (chains.length == 0) {
+            throw new IllegalArgumentException("At least one chain is required");
+        }
+        List<TaskChain> copy = List.of(chains);
+        steps.add(new Branch(copy, race));
+        return this;
+    }
+    
+    private Plan compile() {
+        List<Step> compiled = new ArrayList<>(steps.size());
+        for (Step step : steps) {
+            if (step instanceof Branch branch) {
+                List<Plan> plans = new ArrayList<>(branch.chains().size());
+                for (TaskChain chain : branch.chains()) {
+                    plans.add(chain.compile());
+                }
+                compiled.add(new CompiledBranch(plans, branch.race()));
+            } else {
+                compiled.add(step);
+            }
+        }
+        return new Plan(List.copyOf(compiled), timeout, onTimeout);
+    }
+    
+    private static int toTicks(int amount, TimeUnit timeUnit, String name) {
+        long ticks = timeUnit.toTicks(amount);
+        if (ticks < 0) {
+            throw new IllegalArgumentException(name + " cannot be less than 0");
+        } else if (ticks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    name + " cannot be more than " + Integer.MAX_VALUE + " ticks");
+        }
+        return (int) ticks;
+    }
+    
+    // Package-private
+    interface Step {}
+    
+    // Package-private
+    record Run(Consumer<ChainHandle> action) implements Step {}
+    
+    // Package-private
+    record Delay(int ticks) implements Step {}
+    
+    // Package-private
+    record WaitUntil(BooleanSupplier condition) implements Step {}
+    
+    // Package-private
+    record Repeat(Runnable action, int interval, int times) implements Step {}
+    
+    private record Branch(List<TaskChain> chains, boolean race) implements Step {}
+    
+    // Package-private
+    record CompiledBranch(List<Plan> plans, boolean race) implements Step {}
+    
+    // Package-private
+    record Plan(List<Step> steps, int timeout, @Nullable Runnable onTimeout) {}
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2024 Kapi Contributors. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted if the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions, the following disclaimer and the list of contributors.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. The buyer of the "Kapi" API is granted the right to use this software
+ *    as a dependency in their own software projects. However, the buyer
+ *    may not resell or distribute the "Kapi" API, in whole or in part, to other parties.
+ *
+ * 4. The buyer may include the "Kapi" API in a "fat jar" along with their own code.
+ *    The license for the "fat jar" is at the buyer's discretion and may allow
+ *    redistribution of the "fat jar", but the "Kapi" API code inside the "fat jar"
+ *    must not be modified.
+ *
+ * 5. Neither the name "Kapi" nor the names of its contributors may be used to endorse
+ *    or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY "Kapi" API, AND ITS CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL "Kapi" API, AND CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Kapi Contributors:
+ * - Kyren223
+ */
+
+package me.kyren223.kapi.utility;
+
+import me.kyren223.kapi.core.Kplugin;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel that runs all Kapi tasks from a single Bukkit timer.<br>
+ * <br>
+ * Each level has 64 slots, a slot of level n covers 64^n ticks.<br>
+ * Timers are placed in the lowest level that can hold their delay,
+ * and cascade down a level whenever the wheel below completes a rotation.<br>
+ * Scheduling and cancelling are O(1), each tick only visits a single slot
+ * (plus the rare cascades).<br>
+ * <br>
+ * The wheel is only accessed from the main thread,
+ * calls from other threads are handed over to the main thread.<br>
+ * Work dispatched to other threads reports back through a queue that is drained
+ * at the start of every tick, the wheel keeps ticking while such work is pending.<br>
+ * <br>
+ * Timers that are due in the same tick run grouped by their {@link TickPhase}.
+ */
+@NullMarked
+final class TimingWheel {
+    
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 6;
+    
+    private static final @Nullable Timer[][] heads = new Timer[LEVELS][SLOTS];
+    private static final @Nullable Timer[][] tails = new Timer[LEVELS][SLOTS];
+    private static final int[] loads = new int[SLOTS];
+    private static long currentTick = 0;
+    private static int size = 0;
+    private static final ConcurrentLinkedQueue<Runnable> completions = new ConcurrentLinkedQueue<>();
+    private static int pending = 0;
+    private static final List<List<Timer>> due = createDueLists();
+    private static @Nullable BukkitTask driver;
+    
+    private TimingWheel() {
+        throw new AssertionError("TimingWheel should not be instantiated");
+    }
+    
+    static long getCurrentTick() {
+        return currentTick;
+    }
+    
+    static int size() {
+        return size;
+    }
+    
+    static int getPending() {
+        return pending;
+    }
+    
+    /**
+     * Finds the delay with the least amount of timers due, to spread timers across ticks.<br>
+     * Only the lowest level is counted, as it holds the timers of the next 64 ticks,
+     * delays beyond it are spread randomly.
+     *
+     * @param delay  The minimum delay
+     * @param window The amount of delays to pick from, starting at the minimum delay
+     * @return A delay between delay and delay + window - 1
+     */
+    static int getLeastLoadedDelay(int delay, int window) {
+        if (delay >= SLOTS) {
+            return delay + ThreadLocalRandom.current().nextInt(window);
+        }
+        
+        int last = delay + window - 1;
+        int best = delay;
+        int bestLoad = Integer.MAX_VALUE;
+        for (int candidate = delay; candidate <= last && candidate < SLOTS; candidate++) {
+            int load = loads[(int) ((currentTick + candidate) & MASK)];
+            if (load < bestLoad) {
+                best = candidate;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+    
+    static void schedule(Timer timer, int delay) {
+        if (!Bukkit.isPrimaryThread()) {
+            Kplugin.get().getServer().getScheduler()
+                   .runTask(Kplugin.get(), () -> schedule(timer, delay));
+            return;
+        }
+        
+        // Tasks cannot run before the next tick
+        timer.deadline = currentTick + Math.max(delay, 1);
+        if (timer.level != -1) unlink(timer);
+        insert(timer);
+        start();
+    }
+    
+    static void dispatch(Executor executor, Runnable work, Consumer<Boolean> onComplete) {
+        executor.execute(() -> {
+            Throwable error = null;
+            try {
+                work.run();
+            } catch (Throwable e) {
+                error = e;
+            }
+            Throwable result = error;
+            completions.add(() -> {
+                if (result != null) {
+                    Log.error("Async task failed due to an exception");
+                    result.printStackTrace();
+                }
+                onComplete.accept(result == null);
+            });
+        });
+        pending++;
+        start();
+    }
+    
+    private static void start() {
+        if (driver != null) return;
+        driver = Kplugin.get().getServer().getScheduler()
+                        .runTaskTimer(Kplugin.get(), TimingWheel::tick, 1, 1);
+    }
+    
+    static void cancel(Timer timer) {
+        if (!Bukkit.isPrimaryThread()) {
+            Kplugin.get().getServer().getScheduler()
+                   .runTask(Kplugin.get(), () -> cancel(timer));
+            return;
+        }
+        if (timer.level != -1) unlink(timer);
+    }
+    
+    private static void tick() {
+        currentTick++;
+        boolean profiling = Profiler.isEnabled();
+        long tickStart = profiling ? System.nanoTime() : 0;
+        
+        Runnable completion;
+        while ((completion = completions.poll()) != null) {
+            pending--;
+            long start = profiling ? System.nanoTime() : 0;
+            try {
+                completion.run();
+            } catch (RuntimeException e) {
+                Log.error("Task failed due to an exception");
+                e.printStackTrace();
+            }
+            if (profiling) Profiler.recordAsync(System.nanoTime() - start);
+        }
+        
+        // Higher levels cascade first, so their timers can fall through to lower levels
+        int level = 0;
+        while (level + 1 < LEVELS && (currentTick & ((1L << (BITS * (level + 1))) - 1)) == 0) {
+            level++;
+        }
+        for (; level > 0; level--) {
+            int slot = (int) ((currentTick >>> (BITS * level)) & MASK);
+            Timer timer;
+            while ((timer = heads[level][slot]) != null) {
+                unlink(timer);
+                insert(timer);
+            }
+        }
+        
+        // Timers can't be scheduled into the current slot, so this always terminates
+        int slot = (int) (currentTick & MASK);
+        Timer timer;
+        while ((timer = heads[0][slot]) != null) {
+            unlink(timer);
+            due.get(timer.phase.ordinal()).add(timer);
+        }
+        
+        for (List<Timer> timers : due) {
+            // Indexed loop, timers can't be added to the current tick while it runs
+            for (int i = 0; i < timers.size(); i++) {
+                Timer dueTimer = timers.get(i);
+                // Rescheduled by an earlier phase, it will run at its new deadline instead
+                if (dueTimer.isScheduled()) continue;
+                long start = profiling ? System.nanoTime() : 0;
+                try {
+                    dueTimer.run();
+                } catch (RuntimeException e) {
+                    Log.error("Task failed due to an exception");
+                    e.printStackTrace();
+                }
+                if (profiling) Profiler.record(dueTimer.getLabel(), System.nanoTime() - start);
+            }
+            timers.clear();
+        }
+        
+        if (profiling) Profiler.endTick(System.nanoTime() - tickStart);
+        
+        if (size == 0 && pending == 0 && driver != null) {
+            driver.cancel();
+            driver = null;
+        }
+    }
+    
+    private static List<List<Timer>> createDueLists() {
+        List<List<Timer>> lists = new ArrayList<>();
+        for (int i = 0; i < TickPhase.values().length; i++) {
+            lists.add(new ArrayList<>());
+        }
+        return lists;
+    }
+    
+    private static void insert(Timer timer) {
+        long delta = timer.deadline - currentTick;
+        int level = 0;
+        while (level + 1 < LEVELS && delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((timer.deadline >>> (BITS * level)) & MASK);
+        
+        timer.level = level;
+        timer.slot = slot;
+        timer.next = null;
+        timer.prev = tails[level][slot];
+        if (timer.prev != null) timer.prev.next = timer;
+        else heads[level][slot] = timer;
+        tails[level][slot] = timer;
+        if (level == 0) loads[slot]++;
+        size++;
+    }
+    
+    private static void unlink(Timer timer) {
+        int level = timer.level;
+        int slot = timer.slot;
+        if (timer.prev != null) timer.prev.next = timer.next;
+        else heads[level][slot] = timer.next;
+        if (timer.next != null) timer.next.prev = timer.prev;
+        else tails[level][slot] = timer.prev;
+        if (level == 0) loads[slot]--;
+        timer.prev = null;
+        timer.next = null;
+        timer.level = -1;
+        size--;
+    }
+    
+    /**
+     * An entry of the wheel, linked into the slot it's scheduled in.
+     */
+    abstract static class Timer {
+        private long deadline;
+        private int level = -1;
+        private int slot;
+        private @Nullable Timer prev;
+        private @Nullable Timer next;
+        private TickPhase phase = TickPhase.DEFAULT;
+        
+        abstract void run();
+        
+        abstract String getLabel();
+        
+        boolean isScheduled() {
+            return level != -1;
+        }
+        
+        void setPhase(TickPhase phase) {
+            this.phase = phase;
+        }
+    }
+}